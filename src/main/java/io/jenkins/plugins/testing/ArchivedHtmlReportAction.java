@@ -0,0 +1,143 @@
+package io.jenkins.plugins.testing;
+
+import hudson.FilePath;
+import hudson.model.Run;
+import java.io.File;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import javax.annotation.CheckForNull;
+import javax.annotation.Nonnull;
+import jenkins.model.RunAction2;
+import org.kohsuke.stapler.HttpResponse;
+import org.kohsuke.stapler.HttpResponses;
+import org.kohsuke.stapler.StaplerRequest;
+import org.kohsuke.stapler.StaplerResponse;
+
+/**
+ * The HTML reports of the DotCover steps of a build, archived gzip compressed in the build directory, listed at
+ * {@code <build>/dotcover-report} and served by a @{@link PrecompressedReport} at {@code <build>/dotcover-report/<n>/}.
+ */
+public class ArchivedHtmlReportAction implements RunAction2 {
+
+    static final String URL_NAME = "dotcover-report";
+    private static final String ARCHIVE_DIR_NAME = "dotcover-html";
+    private final List<Report> reports = new CopyOnWriteArrayList<>(); // the report of position n is in n/
+    private transient Run<?, ?> run;
+
+    /**
+     * Copies the compressed report of a step into the build directory, and attaches the action if it is not attached yet.
+     *
+     * @param run           The build.
+     * @param name          The name of the step execution.
+     * @param archiveDir    The report as copied by a @{@link HtmlReportArchiver}, on any node.
+     * @param indexFileName The name of the main page of the report.
+     * @throws IOException          If the report cannot be copied.
+     * @throws InterruptedException If interrupted while copying.
+     */
+    static void addTo(@Nonnull Run<?, ?> run, @Nonnull String name, @Nonnull FilePath archiveDir, @Nonnull String indexFileName) throws IOException, InterruptedException {
+        synchronized (run) {
+            ArchivedHtmlReportAction action = run.getAction(ArchivedHtmlReportAction.class);
+            boolean attached = action != null;
+            if (action == null) {
+                action = new ArchivedHtmlReportAction();
+            }
+            File reportDir = getReportDir(run, action.reports.size());
+            new FilePath(reportDir).deleteRecursive();
+            archiveDir.copyRecursiveTo(new FilePath(reportDir));
+            action.reports.add(new Report(name, indexFileName));
+            if (!attached) {
+                run.addAction(action);
+            }
+        }
+    }
+
+    private static File getReportDir(Run<?, ?> run, int position) {
+        return new File(new File(run.getRootDir(), ARCHIVE_DIR_NAME), Integer.toString(position));
+    }
+
+    @Override
+    public String getIconFileName() {
+        return "document.png";
+    }
+
+    @Override
+    public String getDisplayName() {
+        return "DotCover HTML report";
+    }
+
+    @Override
+    public String getUrlName() {
+        return URL_NAME;
+    }
+
+    public Run<?, ?> getRun() {
+        return run;
+    }
+
+    /**
+     * @return The reports of the DotCover steps of the build, in the order they finished; the report at position n is
+     * shown at {@code n/}.
+     */
+    public List<Report> getReports() {
+        return Collections.unmodifiableList(reports);
+    }
+
+    /**
+     * @param token The position of the report.
+     * @return The files of the report, or null if there is no such report.
+     */
+    @CheckForNull
+    public HttpResponse getDynamic(@Nonnull String token, StaplerRequest request, StaplerResponse response) {
+        int position = parsePosition(token);
+        if (position < 0) {
+            return null;
+        }
+        run.checkPermission(Run.ARTIFACTS);
+        if (request.getRestOfPath().isEmpty()) {
+            return HttpResponses.redirectTo(token + "/");
+        }
+        return new PrecompressedReport(getReportDir(run, position), reports.get(position).indexFileName);
+    }
+
+    private int parsePosition(String token) {
+        try {
+            int position = Integer.parseInt(token);
+            return position < reports.size() ? position : -1;
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    @Override
+    public void onAttached(Run<?, ?> run) {
+        this.run = run;
+    }
+
+    @Override
+    public void onLoad(Run<?, ?> run) {
+        this.run = run;
+    }
+
+    /**
+     * The archived HTML report of a step execution.
+     */
+    public static final class Report {
+
+        private final String name;
+        private final String indexFileName;
+
+        Report(String name, String indexFileName) {
+            this.name = name;
+            this.indexFileName = indexFileName;
+        }
+
+        /**
+         * @return The name of the step execution.
+         */
+        public String getName() {
+            return name;
+        }
+    }
+}
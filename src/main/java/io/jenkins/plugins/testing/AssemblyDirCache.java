@@ -0,0 +1,151 @@
+package io.jenkins.plugins.testing;
+
+import hudson.Util;
+import hudson.model.Job;
+import hudson.util.AtomicFileWriter;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+import javax.annotation.CheckForNull;
+import javax.annotation.Nonnull;
+
+/**
+ * The directories where the latest @{@link DotCoverStep} of a job with the same assembly filter, excludes and coverage id
+ * found test assemblies.
+ * <p>
+ * Stored next to the job configuration in a file per key, see @{@link #keyOf(String, String, String)}, so that the steps of
+ * a job that look for different test assemblies do not overwrite each other's directories. The file has one workspace
+ * relative directory per line with forward slashes, so that directories found on one agent are also checked first on
+ * another agent. The layout of the project files of the workspace when the
+ * directories were found, and the number of builds that used the directories since, are stored in comment lines: the
+ * directories are not used when the layout changed, and every @{@link #FULL_SCAN_INTERVAL}th build scans the whole
+ * workspace anyway, so that new test projects are found.
+ */
+final class AssemblyDirCache {
+
+    static final String FILE_PREFIX = "dotcover-assembly-dirs-";
+    private static final int KEY_LENGTH = 12;
+    /**
+     * The number of builds that use the cached directories before the whole workspace is scanned again.
+     */
+    static final int FULL_SCAN_INTERVAL = 10;
+    private static final String LAYOUT_PREFIX = "#layout=";
+    private static final String CACHED_BUILDS_PREFIX = "#cachedBuilds=";
+    private static final Object LOCK = new Object();
+
+    private final List<String> dirs;
+    private final String layout;
+    private final int cachedBuilds;
+
+    AssemblyDirCache(@Nonnull List<String> dirs, @CheckForNull String layout, int cachedBuilds) {
+        this.dirs = Collections.unmodifiableList(new ArrayList<>(dirs));
+        this.layout = layout;
+        this.cachedBuilds = cachedBuilds;
+    }
+
+    /**
+     * @return The workspace relative directories, or an empty list if the job did not find test assemblies yet.
+     */
+    List<String> getDirs() {
+        return dirs;
+    }
+
+    /**
+     * @return The layout of the project files when the directories were found, see
+     * @{@link AssemblyScanner#layoutOf(File)}, or null if it is not known.
+     */
+    @CheckForNull
+    String getLayout() {
+        return layout;
+    }
+
+    /**
+     * @return The number of builds that used the directories without scanning the whole workspace.
+     */
+    int getCachedBuilds() {
+        return cachedBuilds;
+    }
+
+    /**
+     * @return Whether the next build scans the whole workspace, since enough builds used the directories.
+     */
+    boolean isFullScanDue() {
+        return cachedBuilds >= FULL_SCAN_INTERVAL;
+    }
+
+    /**
+     * @param assemblyFilter  The glob of the test assemblies of the step.
+     * @param assemblyExclude The directories that the step skips when it looks for test assemblies.
+     * @param coverageId      The coverage id of the step, or null if it has none.
+     * @return The key of the cached directories of the step.
+     */
+    static String keyOf(@CheckForNull String assemblyFilter, @CheckForNull String assemblyExclude, @CheckForNull String coverageId) {
+        String key = Objects.toString(assemblyFilter, "") + "\n" + Objects.toString(assemblyExclude, "") + "\n" + Objects.toString(coverageId, "");
+        return Util.getDigestOf(key).substring(0, KEY_LENGTH);
+    }
+
+    /**
+     * @param job The job.
+     * @param key The key of the step, see @{@link #keyOf(String, String, String)}.
+     * @return The cache of the step, without directories if the step did not find test assemblies yet.
+     * @throws IOException If the cache cannot be read.
+     */
+    static AssemblyDirCache load(@Nonnull Job<?, ?> job, @Nonnull String key) throws IOException {
+        synchronized (LOCK) {
+            File file = getFile(job, key);
+            if (!file.exists()) {
+                return new AssemblyDirCache(Collections.<String>emptyList(), null, 0);
+            }
+            List<String> dirs = new ArrayList<>();
+            String layout = null;
+            int cachedBuilds = 0;
+            for (String line : Files.readAllLines(file.toPath(), StandardCharsets.UTF_8)) {
+                if (line.startsWith(LAYOUT_PREFIX)) {
+                    layout = line.substring(LAYOUT_PREFIX.length());
+                } else if (line.startsWith(CACHED_BUILDS_PREFIX)) {
+                    try {
+                        cachedBuilds = Integer.parseInt(line.substring(CACHED_BUILDS_PREFIX.length()));
+                    } catch (NumberFormatException e) {
+                        cachedBuilds = FULL_SCAN_INTERVAL;
+                    }
+                } else if (!line.isEmpty() && !line.startsWith("#") && !line.startsWith("/") && !line.contains("..")) {
+                    dirs.add(line);
+                }
+            }
+            return new AssemblyDirCache(dirs, layout, cachedBuilds);
+        }
+    }
+
+    /**
+     * @param job   The job.
+     * @param key   The key of the step, see @{@link #keyOf(String, String, String)}.
+     * @param cache The directories where test assemblies were found, with the layout and the number of builds that used them.
+     * @throws IOException If the cache cannot be written.
+     */
+    static void save(@Nonnull Job<?, ?> job, @Nonnull String key, @Nonnull AssemblyDirCache cache) throws IOException {
+        synchronized (LOCK) {
+            AtomicFileWriter writer = new AtomicFileWriter(getFile(job, key).toPath(), StandardCharsets.UTF_8);
+            try {
+                if (cache.layout != null) {
+                    writer.write(LAYOUT_PREFIX + cache.layout + "\n");
+                }
+                writer.write(CACHED_BUILDS_PREFIX + cache.cachedBuilds + "\n");
+                for (String dir : cache.dirs) {
+                    writer.write(dir + "\n");
+                }
+                writer.commit();
+            } finally {
+                writer.abort();
+            }
+        }
+    }
+
+    private static File getFile(Job<?, ?> job, String key) {
+        return new File(job.getRootDir(), FILE_PREFIX + key + ".txt");
+    }
+}
@@ -0,0 +1,191 @@
+package io.jenkins.plugins.testing;
+
+import hudson.Util;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Locale;
+import java.util.TreeSet;
+import javax.annotation.CheckForNull;
+import javax.annotation.Nonnull;
+import org.apache.tools.ant.DirectoryScanner;
+import org.apache.tools.ant.types.selectors.SelectorUtils;
+
+/**
+ * Finds the test assemblies in a workspace, on the agent.
+ * <p>
+ * Exclude globs that end with "/**" prune whole directory trees, which are then not walked at all; the default excludes
+ * prune the package, node_modules, .git and obj trees, where test assemblies never are. A scan can also be limited to the
+ * directories where test assemblies were found before, which lists a handful of directories instead of walking the
+ * workspace. Whether such a limited scan can miss new test projects is told by the layout of the project files near the
+ * top of the workspace.
+ */
+final class AssemblyScanner {
+
+    static final String DEFAULT_EXCLUDES = "**/packages/**,**/node_modules/**,**/.git/**,**/obj/**";
+    private static final String ROOT_DIR = ".";
+    /**
+     * The depth of the directories whose project files make up the layout, 1 for the workspace itself.
+     */
+    private static final int LAYOUT_DEPTH = 4;
+    private static final String[] PROJECT_EXTENSIONS = {".sln", ".csproj", ".vbproj", ".fsproj"};
+    private final String[] includes;
+    private final String[] excludes;
+
+    /**
+     * @param includes The globs of the test assemblies, separated by commas or semicolons.
+     * @param excludes The globs of the files and directories to skip, separated by commas or semicolons, or null for none.
+     */
+    AssemblyScanner(@Nonnull String includes, @CheckForNull String excludes) {
+        this.includes = split(includes);
+        this.excludes = excludes != null ? split(excludes) : new String[0];
+    }
+
+    /**
+     * Walks the workspace, without descending into excluded directories.
+     *
+     * @param workspace The workspace.
+     * @return The test assemblies, ordered by path.
+     */
+    List<File> scan(@Nonnull File workspace) {
+        DirectoryScanner scanner = new DirectoryScanner();
+        scanner.setBasedir(workspace);
+        scanner.setIncludes(includes);
+        scanner.setExcludes(excludes);
+        scanner.addDefaultExcludes();
+        scanner.scan();
+        List<File> assemblies = new ArrayList<>();
+        for (String path : new TreeSet<>(Arrays.asList(scanner.getIncludedFiles()))) {
+            assemblies.add(new File(workspace, path));
+        }
+        return assemblies;
+    }
+
+    /**
+     * Lists only the given directories, without descending into their subdirectories.
+     *
+     * @param workspace The workspace.
+     * @param dirs      The workspace relative paths of the directories, with forward slashes, "." for the workspace.
+     * @return The test assemblies in the directories, ordered by path.
+     */
+    List<File> scan(@Nonnull File workspace, @Nonnull Collection<String> dirs) {
+        TreeSet<String> paths = new TreeSet<>();
+        for (String dir : dirs) {
+            File[] files = new File(workspace, dir).listFiles(File::isFile);
+            if (files == null) {
+                continue;
+            }
+            for (File file : files) {
+                String path = ROOT_DIR.equals(dir) ? file.getName() : dir + "/" + file.getName();
+                if (matches(path)) {
+                    paths.add(path);
+                }
+            }
+        }
+        List<File> assemblies = new ArrayList<>();
+        for (String path : paths) {
+            assemblies.add(new File(workspace, path));
+        }
+        return assemblies;
+    }
+
+    /**
+     * Lists the solution and project files in the top @{@link #LAYOUT_DEPTH} directory levels of the workspace, without
+     * descending into excluded directories. A test project that is added to the workspace adds a project file there, long
+     * before the walk reaches the deep bin directories with the test assemblies.
+     *
+     * @param workspace The workspace.
+     * @return A digest of the workspace relative paths of the project files.
+     */
+    String layoutOf(@Nonnull File workspace) {
+        TreeSet<String> projects = new TreeSet<>();
+        addProjects(workspace, "", 1, projects);
+        return Util.getDigestOf(String.join("\n", projects));
+    }
+
+    private void addProjects(File dir, String path, int depth, Collection<String> projects) {
+        File[] files = dir.listFiles();
+        if (files == null) {
+            return;
+        }
+        for (File file : files) {
+            String filePath = path + file.getName();
+            if (file.isDirectory()) {
+                if (depth < LAYOUT_DEPTH && !file.getName().startsWith(".") && !isExcluded(filePath)) {
+                    addProjects(file, filePath + "/", depth + 1, projects);
+                }
+            } else if (isProject(file.getName())) {
+                projects.add(filePath);
+            }
+        }
+    }
+
+    private static boolean isProject(String fileName) {
+        String lowerCase = fileName.toLowerCase(Locale.ENGLISH);
+        for (String extension : PROJECT_EXTENSIONS) {
+            if (lowerCase.endsWith(extension)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @param path The workspace relative path of a file, with forward slashes.
+     * @return Whether the file matches an include glob and no exclude glob.
+     */
+    boolean matches(@Nonnull String path) {
+        if (isExcluded(path)) {
+            return false;
+        }
+        String localPath = path.replace('/', File.separatorChar);
+        for (String include : includes) {
+            if (SelectorUtils.matchPath(include.replace('/', File.separatorChar).replace('\\', File.separatorChar), localPath)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @param path The workspace relative path of a file or directory, with forward slashes.
+     * @return Whether the file or directory matches an exclude glob.
+     */
+    private boolean isExcluded(String path) {
+        String localPath = path.replace('/', File.separatorChar);
+        for (String exclude : excludes) {
+            if (SelectorUtils.matchPath(exclude.replace('/', File.separatorChar).replace('\\', File.separatorChar), localPath)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @param workspace  The workspace.
+     * @param assemblies The test assemblies.
+     * @return The workspace relative paths of the directories of the test assemblies, with forward slashes and "." for the
+     * workspace, ordered by path.
+     */
+    static List<String> dirsOf(@Nonnull File workspace, @Nonnull List<File> assemblies) {
+        TreeSet<String> dirs = new TreeSet<>();
+        for (File assembly : assemblies) {
+            String path = Sharding.relativePath(workspace.getPath(), assembly.getPath());
+            int slash = path.lastIndexOf('/');
+            dirs.add(slash < 0 ? ROOT_DIR : path.substring(0, slash));
+        }
+        return new ArrayList<>(dirs);
+    }
+
+    private static String[] split(String globs) {
+        List<String> parts = new ArrayList<>();
+        for (String glob : globs.split("[,;]")) {
+            if (!glob.trim().isEmpty()) {
+                parts.add(glob.trim());
+            }
+        }
+        return parts.toArray(new String[0]);
+    }
+}
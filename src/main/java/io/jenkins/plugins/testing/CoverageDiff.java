@@ -0,0 +1,322 @@
+package io.jenkins.plugins.testing;
+
+import hudson.model.Job;
+import hudson.model.Result;
+import hudson.model.Run;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import javax.annotation.CheckForNull;
+import javax.annotation.Nonnull;
+import jenkins.model.Jenkins;
+import org.kohsuke.stapler.export.Exported;
+import org.kohsuke.stapler.export.ExportedBean;
+
+/**
+ * The changes in line coverage of a DotCover step compared with the same step of a reference build.
+ * <p>
+ * The digests of both builds are walked in file name order, and files with the same hash are skipped; only the lines of
+ * the changed files are read from the indexes, so the cost grows with the number of changed files rather than the size of
+ * the code base.
+ */
+@ExportedBean(defaultVisibility = 2)
+public final class CoverageDiff {
+
+    /**
+     * The number of builds to look back for a reference build that has the line coverage of the step.
+     */
+    static final int MAX_REFERENCE_DISTANCE = 20;
+    /**
+     * The number of ranges of newly uncovered lines that are listed per file.
+     */
+    static final int MAX_UNCOVERED_RANGES = 100;
+
+    private final String name;
+    private final String referenceBuild;
+    private final String referenceUrl;
+    private final int unchangedFiles;
+    private final List<FileChange> changes;
+
+    private CoverageDiff(String name, String referenceBuild, String referenceUrl, int unchangedFiles, List<FileChange> changes) {
+        this.name = name;
+        this.referenceBuild = referenceBuild;
+        this.referenceUrl = referenceUrl;
+        this.unchangedFiles = unchangedFiles;
+        this.changes = changes;
+    }
+
+    /**
+     * @param run          The build.
+     * @param name         The name of the step execution.
+     * @param referenceJob The full name of the job of the reference build, or null for the job of the build.
+     * @return The last completed, successful or unstable build with the line coverage of the step, or null if there is none
+     * within @{@link #MAX_REFERENCE_DISTANCE} builds. The line coverage of the step may be ambiguous in the build returned;
+     * see @{@link LineCoverageAction#isAmbiguous(String)}.
+     */
+    @CheckForNull
+    static Run<?, ?> findReference(@Nonnull Run<?, ?> run, @Nonnull String name, @CheckForNull String referenceJob) {
+        Run<?, ?> candidate;
+        if (referenceJob != null) {
+            Job<?, ?> job = Jenkins.get().getItemByFullName(referenceJob, Job.class);
+            candidate = job != null ? job.getLastCompletedBuild() : null;
+        } else {
+            candidate = run.getPreviousCompletedBuild();
+        }
+        for (int distance = 0; candidate != null && distance < MAX_REFERENCE_DISTANCE; distance++) {
+            Result result = candidate.getResult();
+            LineCoverageAction action = candidate.getAction(LineCoverageAction.class);
+            if (candidate != run && result != null && result.isBetterOrEqualTo(Result.UNSTABLE) && action != null && action.hasIndex(name)) {
+                return candidate;
+            }
+            candidate = candidate.getPreviousCompletedBuild();
+        }
+        return null;
+    }
+
+    /**
+     * @param name      The name of the step execution.
+     * @param reference The reference build, in which only one step execution has line coverage with the name.
+     * @param run       The build.
+     * @param position  The position of the line coverage of the step execution in the build.
+     * @return The changes in line coverage of the step.
+     * @throws IOException If the line coverage of a build cannot be read, or is missing or ambiguous in the reference build.
+     */
+    static CoverageDiff compare(@Nonnull String name, @Nonnull Run<?, ?> reference, @Nonnull Run<?, ?> run, int position) throws IOException {
+        LineCoverageAction referenceAction = reference.getAction(LineCoverageAction.class);
+        LineCoverageAction action = run.getAction(LineCoverageAction.class);
+        int referencePosition = referenceAction != null ? referenceAction.findPosition(name) : -1;
+        if (referencePosition < 0 || action == null) {
+            throw new IOException("The line coverage of " + name + " is missing or ambiguous in " + reference.getFullDisplayName() + ", or missing in "
+                    + run.getFullDisplayName());
+        }
+        List<CoverageDigest.Entry> before = referenceAction.readDigest(referencePosition).getEntries();
+        List<CoverageDigest.Entry> after = action.readDigest(position).getEntries();
+        LineCoverageIndex referenceIndex = null;
+        LineCoverageIndex index = null;
+        List<FileChange> changes = new ArrayList<>();
+        int unchanged = 0;
+        int beforeIndex = 0;
+        int afterIndex = 0;
+        while (beforeIndex < before.size() || afterIndex < after.size()) {
+            CoverageDigest.Entry previous = beforeIndex < before.size() ? before.get(beforeIndex) : null;
+            CoverageDigest.Entry current = afterIndex < after.size() ? after.get(afterIndex) : null;
+            int order = previous == null ? 1 : current == null ? -1 : previous.name.compareTo(current.name);
+            if (order == 0) {
+                beforeIndex++;
+                afterIndex++;
+                if (previous.hash == current.hash) {
+                    unchanged++;
+                    continue;
+                }
+            } else if (order < 0) {
+                beforeIndex++;
+                current = null;
+            } else {
+                afterIndex++;
+                previous = null;
+            }
+            if (referenceIndex == null) {
+                referenceIndex = referenceAction.openIndex(referencePosition);
+                index = action.openIndex(position);
+            }
+            List<LineCoverageIndex.LineRange> previousLines = previous != null ? referenceIndex.getLineRanges(previous.position) : Collections.<LineCoverageIndex.LineRange>emptyList();
+            List<LineCoverageIndex.LineRange> currentLines = current != null ? index.getLineRanges(current.position) : Collections.<LineCoverageIndex.LineRange>emptyList();
+            changes.add(new FileChange(previous != null ? previous.name : current.name, previous, current, newlyUncovered(previousLines, currentLines)));
+        }
+        changes.sort(Comparator.comparingDouble(FileChange::getPercentChange).thenComparing(FileChange::getName));
+        return new CoverageDiff(name, reference.getFullDisplayName(), reference.getUrl(), unchanged, changes);
+    }
+
+    /**
+     * @return The lines that are not covered now and had coverage or did not have statements before, as ranges like
+     * "10-12, 15".
+     */
+    private static String newlyUncovered(List<LineCoverageIndex.LineRange> previousLines, List<LineCoverageIndex.LineRange> currentLines) {
+        Map<Integer, LineCoverageIndex.LineState> previousStates = new HashMap<>();
+        for (LineCoverageIndex.LineRange range : previousLines) {
+            for (int line = range.getFirst(); line <= range.getLast(); line++) {
+                previousStates.put(line, range.getState());
+            }
+        }
+        StringBuilder ranges = new StringBuilder();
+        int rangeCount = 0;
+        int first = -1;
+        int last = -1;
+        for (LineCoverageIndex.LineRange range : currentLines) {
+            if (range.getState() != LineCoverageIndex.LineState.UNCOVERED) {
+                continue;
+            }
+            for (int line = range.getFirst(); line <= range.getLast(); line++) {
+                if (previousStates.get(line) == LineCoverageIndex.LineState.UNCOVERED) {
+                    continue;
+                }
+                if (first >= 0 && line == last + 1) {
+                    last = line;
+                    continue;
+                }
+                if (first >= 0 && ++rangeCount <= MAX_UNCOVERED_RANGES) {
+                    appendRange(ranges, first, last);
+                }
+                first = line;
+                last = line;
+            }
+        }
+        if (first >= 0 && ++rangeCount <= MAX_UNCOVERED_RANGES) {
+            appendRange(ranges, first, last);
+        }
+        if (rangeCount > MAX_UNCOVERED_RANGES) {
+            ranges.append(", ...");
+        }
+        return ranges.toString();
+    }
+
+    private static void appendRange(StringBuilder ranges, int first, int last) {
+        if (ranges.length() > 0) {
+            ranges.append(", ");
+        }
+        ranges.append(first);
+        if (last != first) {
+            ranges.append('-').append(last);
+        }
+    }
+
+    /**
+     * @return The name of the step execution.
+     */
+    @Exported
+    public String getName() {
+        return name;
+    }
+
+    @Exported
+    public String getReferenceBuild() {
+        return referenceBuild;
+    }
+
+    /**
+     * @return The URL of the reference build, relative to the root URL of Jenkins.
+     */
+    @Exported
+    public String getReferenceUrl() {
+        return referenceUrl;
+    }
+
+    /**
+     * @return The number of files that were skipped because their line coverage did not change.
+     */
+    @Exported
+    public int getUnchangedFiles() {
+        return unchangedFiles;
+    }
+
+    /**
+     * @return The files whose line coverage changed, the largest decrease in coverage first.
+     */
+    @Exported(inline = true)
+    public List<FileChange> getChanges() {
+        return Collections.unmodifiableList(changes);
+    }
+
+    /**
+     * @return The files whose coverage went down.
+     */
+    public List<FileChange> getDecreases() {
+        List<FileChange> decreases = new ArrayList<>();
+        for (FileChange change : changes) {
+            if (change.isDecreased()) {
+                decreases.add(change);
+            }
+        }
+        return decreases;
+    }
+
+    /**
+     * The change in line coverage of a source file. A file that was added or removed has no lines in the other build.
+     */
+    @ExportedBean(defaultVisibility = 3)
+    public static final class FileChange {
+
+        private final String name;
+        private final int previousLines;
+        private final int previousCoveredLines;
+        private final int lines;
+        private final int coveredLines;
+        private final String newlyUncoveredLines;
+
+        FileChange(@Nonnull String name, @CheckForNull CoverageDigest.Entry previous, @CheckForNull CoverageDigest.Entry current, @Nonnull String newlyUncoveredLines) {
+            this.name = name;
+            this.previousLines = previous != null ? previous.lineCount : 0;
+            this.previousCoveredLines = previous != null ? previous.coveredLines : 0;
+            this.lines = current != null ? current.lineCount : 0;
+            this.coveredLines = current != null ? current.coveredLines : 0;
+            this.newlyUncoveredLines = newlyUncoveredLines;
+        }
+
+        @Exported
+        public String getName() {
+            return name;
+        }
+
+        @Exported
+        public int getPreviousLines() {
+            return previousLines;
+        }
+
+        @Exported
+        public int getPreviousCoveredLines() {
+            return previousCoveredLines;
+        }
+
+        @Exported
+        public int getLines() {
+            return lines;
+        }
+
+        @Exported
+        public int getCoveredLines() {
+            return coveredLines;
+        }
+
+        /**
+         * @return The lines that lost their coverage or were added without coverage, as ranges like "10-12, 15".
+         */
+        @Exported
+        public String getNewlyUncoveredLines() {
+            return newlyUncoveredLines;
+        }
+
+        /**
+         * @return The percentage of fully covered lines in the reference build.
+         */
+        public double getPreviousPercent() {
+            return percent(previousCoveredLines, previousLines);
+        }
+
+        /**
+         * @return The percentage of fully covered lines.
+         */
+        public double getPercent() {
+            return percent(coveredLines, lines);
+        }
+
+        public double getPercentChange() {
+            return Math.round((getPercent() - getPreviousPercent()) * 100) / 100.0;
+        }
+
+        /**
+         * @return Whether the file lost coverage: the percentage of covered lines went down, or lines lost their coverage.
+         */
+        @Exported
+        public boolean isDecreased() {
+            return lines > 0 && (getPercentChange() < 0 || !newlyUncoveredLines.isEmpty());
+        }
+
+        private static double percent(int covered, int total) {
+            return total > 0 ? Math.round(covered * 10000.0 / total) / 100.0 : 0;
+        }
+    }
+}
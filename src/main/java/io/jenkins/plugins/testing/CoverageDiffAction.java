@@ -0,0 +1,81 @@
+package io.jenkins.plugins.testing;
+
+import hudson.model.Api;
+import hudson.model.Run;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import javax.annotation.Nonnull;
+import jenkins.model.RunAction2;
+import org.kohsuke.stapler.export.Exported;
+import org.kohsuke.stapler.export.ExportedBean;
+
+/**
+ * The changes in line coverage of the DotCover steps of a build compared with a reference build, shown at
+ * {@code <build>/dotcover-diff} and served at {@code <build>/dotcover-diff/api/json}.
+ */
+@ExportedBean
+public class CoverageDiffAction implements RunAction2 {
+
+    static final String URL_NAME = "dotcover-diff";
+    private final List<CoverageDiff> diffs = new CopyOnWriteArrayList<>();
+    private transient Run<?, ?> run;
+
+    /**
+     * Adds the changes of a step to the diff action of the build, and attaches the action if it is not attached yet.
+     *
+     * @param run  The build.
+     * @param diff The changes of the step.
+     */
+    static void addTo(@Nonnull Run<?, ?> run, @Nonnull CoverageDiff diff) {
+        synchronized (run) {
+            CoverageDiffAction action = run.getAction(CoverageDiffAction.class);
+            if (action == null) {
+                action = new CoverageDiffAction();
+                run.addAction(action);
+            }
+            action.diffs.add(diff);
+        }
+    }
+
+    @Override
+    public String getIconFileName() {
+        return "document.png";
+    }
+
+    @Override
+    public String getDisplayName() {
+        return "DotCover coverage changes";
+    }
+
+    @Override
+    public String getUrlName() {
+        return URL_NAME;
+    }
+
+    public Api getApi() {
+        return new Api(this);
+    }
+
+    public Run<?, ?> getRun() {
+        return run;
+    }
+
+    /**
+     * @return The changes of the DotCover steps of the build, in the order they finished.
+     */
+    @Exported(inline = true)
+    public List<CoverageDiff> getDiffs() {
+        return Collections.unmodifiableList(diffs);
+    }
+
+    @Override
+    public void onAttached(Run<?, ?> run) {
+        this.run = run;
+    }
+
+    @Override
+    public void onLoad(Run<?, ?> run) {
+        this.run = run;
+    }
+}
@@ -0,0 +1,113 @@
+package io.jenkins.plugins.testing;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import javax.annotation.Nonnull;
+
+/**
+ * The line counts and a hash of the line coverage of every source file of a build, kept next to its
+ * @{@link LineCoverageIndex}.
+ * <p>
+ * Comparing the digests of two builds finds the files whose line coverage changed without reading their lines, so that a
+ * @{@link CoverageDiff} only reads the lines of the changed files.
+ */
+final class CoverageDigest {
+
+    private static final int MAGIC = 0x44434344; // "DCCD"
+    private static final int VERSION = 1;
+
+    private final List<Entry> entries;
+
+    private CoverageDigest(List<Entry> entries) {
+        this.entries = entries;
+    }
+
+    /**
+     * @param index The line coverage index of a build.
+     * @return The digest of the index.
+     */
+    static CoverageDigest of(@Nonnull LineCoverageIndex index) {
+        List<Entry> entries = new ArrayList<>(index.getFileCount());
+        for (LineCoverageIndex.FileCoverage file : index.getFiles()) {
+            entries.add(new Entry(file, index.hashFile(file.getPosition())));
+        }
+        return new CoverageDigest(entries);
+    }
+
+    /**
+     * @param file The digest file.
+     * @return The digest.
+     * @throws IOException If the file cannot be read or is not a digest.
+     */
+    static CoverageDigest read(@Nonnull File file) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file.toPath())))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                throw new IOException(file + " is not a coverage digest of version " + VERSION);
+            }
+            int count = in.readInt();
+            List<Entry> entries = new ArrayList<>();
+            for (int entry = 0; entry < count; entry++) {
+                String name = in.readUTF();
+                entries.add(new Entry(name, in.readInt(), in.readInt(), in.readInt(), in.readInt(), in.readLong()));
+            }
+            return new CoverageDigest(entries);
+        }
+    }
+
+    void write(@Nonnull File file) throws IOException {
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file.toPath())))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(entries.size());
+            for (Entry entry : entries) {
+                out.writeUTF(entry.name);
+                out.writeInt(entry.position);
+                out.writeInt(entry.lineCount);
+                out.writeInt(entry.coveredLines);
+                out.writeInt(entry.partialLines);
+                out.writeLong(entry.hash);
+            }
+        }
+    }
+
+    /**
+     * @return The files, ordered by name like the files of the index.
+     */
+    List<Entry> getEntries() {
+        return Collections.unmodifiableList(entries);
+    }
+
+    /**
+     * The line counts and the hash of the line coverage of a source file.
+     */
+    static final class Entry {
+
+        final String name;
+        final int position;
+        final int lineCount;
+        final int coveredLines;
+        final int partialLines;
+        final long hash;
+
+        Entry(LineCoverageIndex.FileCoverage file, long hash) {
+            this(file.getName(), file.getPosition(), file.getLineCount(), file.getCoveredLines(), file.getPartialLines(), hash);
+        }
+
+        Entry(String name, int position, int lineCount, int coveredLines, int partialLines, long hash) {
+            this.name = name;
+            this.position = position;
+            this.lineCount = lineCount;
+            this.coveredLines = coveredLines;
+            this.partialLines = partialLines;
+            this.hash = hash;
+        }
+    }
+}
@@ -0,0 +1,102 @@
+package io.jenkins.plugins.testing;
+
+import hudson.init.InitMilestone;
+import hudson.init.Initializer;
+import hudson.model.Api;
+import hudson.model.Run;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import javax.annotation.Nonnull;
+import jenkins.model.RunAction2;
+import org.kohsuke.stapler.export.Exported;
+import org.kohsuke.stapler.export.ExportedBean;
+
+/**
+ * The coverage totals of the DotCover steps of a build that generated a DetailedXML report, served at
+ * {@code <build>/dotcover-coverage/api/json}.
+ * <p>
+ * The action is saved in the build.xml and loaded with the build, so it only keeps the totals of the steps and their
+ * assemblies. The totals of the namespaces and types are returned by the step, and the line coverage of every file is in
+ * the @{@link LineCoverageAction}.
+ */
+@ExportedBean
+public class CoverageSummaryAction implements RunAction2 {
+
+    static final String URL_NAME = "dotcover-coverage";
+    /**
+     * The levels of children kept in the action: the assemblies.
+     */
+    static final int STORED_LEVELS = 1;
+    private final List<CoverageTotals> summaries = new CopyOnWriteArrayList<>();
+    private transient Run<?, ?> run;
+
+    /**
+     * Stores the totals as short elements with attributes, since a build can have totals for hundreds of assemblies.
+     */
+    @Initializer(before = InitMilestone.PLUGINS_STARTED)
+    public static void registerAliases() {
+        Run.XSTREAM2.alias("dotcover-totals", CoverageTotals.class);
+        Run.XSTREAM2.useAttributeFor(CoverageTotals.class, "name");
+        Run.XSTREAM2.useAttributeFor(CoverageTotals.class, "covered");
+        Run.XSTREAM2.useAttributeFor(CoverageTotals.class, "total");
+    }
+
+    /**
+     * Adds the totals of a step to the coverage action of the build, and attaches the action if it is not attached yet.
+     *
+     * @param run     The build.
+     * @param summary The totals of the step, named after the step execution; only the totals of its assemblies are kept.
+     */
+    static void addTo(@Nonnull Run<?, ?> run, @Nonnull CoverageTotals summary) {
+        synchronized (run) {
+            CoverageSummaryAction action = run.getAction(CoverageSummaryAction.class);
+            if (action == null) {
+                action = new CoverageSummaryAction();
+                run.addAction(action);
+            }
+            action.summaries.add(summary.truncate(STORED_LEVELS));
+        }
+    }
+
+    @Override
+    public String getIconFileName() {
+        return null;
+    }
+
+    @Override
+    public String getDisplayName() {
+        return "DotCover coverage";
+    }
+
+    @Override
+    public String getUrlName() {
+        return URL_NAME;
+    }
+
+    public Api getApi() {
+        return new Api(this);
+    }
+
+    public Run<?, ?> getRun() {
+        return run;
+    }
+
+    /**
+     * @return The totals of the DotCover steps of the build, in the order they finished.
+     */
+    @Exported(inline = true)
+    public List<CoverageTotals> getSummaries() {
+        return Collections.unmodifiableList(summaries);
+    }
+
+    @Override
+    public void onAttached(Run<?, ?> run) {
+        this.run = run;
+    }
+
+    @Override
+    public void onLoad(Run<?, ?> run) {
+        this.run = run;
+    }
+}
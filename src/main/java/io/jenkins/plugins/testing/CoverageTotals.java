@@ -0,0 +1,123 @@
+package io.jenkins.plugins.testing;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import javax.annotation.Nonnull;
+import org.kohsuke.stapler.export.Exported;
+import org.kohsuke.stapler.export.ExportedBean;
+
+/**
+ * The statement coverage of a DotCover step, an assembly, a namespace or a type, with the totals of its children.
+ * <p>
+ * The totals of a step have the assemblies as children, an assembly has its namespaces, and a namespace has its top level
+ * types. Nested types are counted in the type they are nested in.
+ */
+@ExportedBean(defaultVisibility = 2)
+public final class CoverageTotals implements Serializable {
+
+    private static final long serialVersionUID = -7731260185939466372L;
+    private static final String[] CHILD_KEYS = {"assemblies", "namespaces", "types"};
+    private final String name;
+    private int covered;
+    private int total;
+    private List<CoverageTotals> children; // null when empty, to keep the build action compact
+
+    CoverageTotals(@Nonnull String name) {
+        this.name = name;
+    }
+
+    CoverageTotals(@Nonnull String name, int covered, int total) {
+        this.name = name;
+        this.covered = covered;
+        this.total = total;
+    }
+
+    @Exported
+    public String getName() {
+        return name;
+    }
+
+    @Exported
+    public int getCoveredStatements() {
+        return covered;
+    }
+
+    @Exported
+    public int getTotalStatements() {
+        return total;
+    }
+
+    /**
+     * @return The percentage of covered statements, or 0 if there are no statements.
+     */
+    @Exported
+    public double getCoveragePercent() {
+        return total > 0 ? Math.round(covered * 10000.0 / total) / 100.0 : 0;
+    }
+
+    @Exported(inline = true)
+    public List<CoverageTotals> getChildren() {
+        return children != null ? Collections.unmodifiableList(children) : Collections.<CoverageTotals>emptyList();
+    }
+
+    void addChild(@Nonnull CoverageTotals child) {
+        if (children == null) {
+            children = new ArrayList<>();
+        }
+        children.add(child);
+    }
+
+    /**
+     * @param levels The number of levels of children to keep: 0 for none, 1 for the assemblies of the totals of a step.
+     * @return A copy of the totals without the children below the levels.
+     */
+    CoverageTotals truncate(int levels) {
+        CoverageTotals copy = new CoverageTotals(name, covered, total);
+        if (levels > 0) {
+            for (CoverageTotals child : getChildren()) {
+                copy.addChild(child.truncate(levels - 1));
+            }
+        }
+        return copy;
+    }
+
+    /**
+     * Adds statements that were counted in a child, for totals that DotCover does not report.
+     */
+    void addStatements(int covered, int total) {
+        this.covered += covered;
+        this.total += total;
+    }
+
+    /**
+     * @return The totals as nested maps, as returned by the dotcover step: the statement counts and the coverage
+     * percentage, with the totals of the children by name under "assemblies", "namespaces" or "types".
+     */
+    Map<String, Object> toMap() {
+        return toMap(0);
+    }
+
+    private Map<String, Object> toMap(int level) {
+        Map<String, Object> map = new LinkedHashMap<>();
+        map.put("coveredStatements", covered);
+        map.put("totalStatements", total);
+        map.put("coveragePercent", getCoveragePercent());
+        if (level < CHILD_KEYS.length) {
+            Map<String, Object> childMaps = new LinkedHashMap<>();
+            for (CoverageTotals child : getChildren()) {
+                childMaps.put(child.name, child.toMap(level + 1));
+            }
+            map.put(CHILD_KEYS[level], childMaps);
+        }
+        return map;
+    }
+
+    @Override
+    public String toString() {
+        return covered + " of " + total + " statements (" + getCoveragePercent() + "%)";
+    }
+}
@@ -0,0 +1,182 @@
+package io.jenkins.plugins.testing;
+
+import hudson.remoting.VirtualChannel;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import javax.annotation.CheckForNull;
+import javax.annotation.Nonnull;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import jenkins.MasterToSlaveFileCallable;
+
+/**
+ * Reads the coverage totals from a DotCover DetailedXML report.
+ * <p>
+ * The report is streamed, and only the totals of the assemblies, namespaces and top level types are kept, so a report of
+ * hundreds of megabytes is summarized in little memory. The members and statements are skipped. Types that are not in a
+ * namespace are counted in a namespace with an empty name. The statements are only read into a
+ * {@link LineCoverageIndex.Builder}, when one is given; the builder keeps a byte per source line, so the memory then grows
+ * with the size of the covered code, though not with the size of the report.
+ */
+final class DetailedXmlParser {
+
+    private static final String ASSEMBLY = "Assembly";
+    private static final String NAMESPACE = "Namespace";
+    private static final String TYPE = "Type";
+    private static final String FILE = "File";
+    private static final String STATEMENT = "Statement";
+
+    private DetailedXmlParser() {
+    }
+
+    /**
+     * @param report The DetailedXML report.
+     * @param name   The name of the totals, the name of the step execution that generated the report.
+     * @return The totals of the report, with the totals of its assemblies.
+     * @throws IOException If the report cannot be read or is not a DetailedXML report.
+     */
+    static CoverageTotals parse(@Nonnull InputStream report, @Nonnull String name) throws IOException {
+        return parse(report, name, null);
+    }
+
+    /**
+     * @param report The DetailedXML report.
+     * @param name   The name of the totals, the name of the step execution that generated the report.
+     * @param lines  Where to collect the files and statements of the report, or null to skip them.
+     * @return The totals of the report, with the totals of its assemblies.
+     * @throws IOException If the report cannot be read or is not a DetailedXML report.
+     */
+    static CoverageTotals parse(@Nonnull InputStream report, @Nonnull String name, @CheckForNull LineCoverageIndex.Builder lines) throws IOException {
+        XMLInputFactory factory = XMLInputFactory.newInstance();
+        factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+        try {
+            XMLStreamReader reader = factory.createXMLStreamReader(report);
+            try {
+                return parse(reader, name, lines);
+            } finally {
+                reader.close();
+            }
+        } catch (XMLStreamException e) {
+            throw new IOException("Unable to read the DetailedXML report: " + e.getMessage(), e);
+        }
+    }
+
+    private static CoverageTotals parse(XMLStreamReader reader, String name, LineCoverageIndex.Builder lines) throws XMLStreamException {
+        CoverageTotals root = new CoverageTotals(name);
+        CoverageTotals assembly = null;
+        CoverageTotals namespace = null;
+        CoverageTotals globalNamespace = null;
+        int typeDepth = 0;
+        while (reader.hasNext()) {
+            int event = reader.next();
+            if (event == XMLStreamReader.START_ELEMENT) {
+                String element = reader.getLocalName();
+                if (lines != null && STATEMENT.equals(element)) {
+                    lines.addStatement(readCount(reader, "FileIndex"), readCount(reader, "Line"), readCount(reader, "EndLine"),
+                            "True".equalsIgnoreCase(reader.getAttributeValue(null, "Covered")));
+                } else if (typeDepth > 0) {
+                    if (TYPE.equals(element)) {
+                        typeDepth++;
+                    }
+                } else if (lines != null && FILE.equals(element)) {
+                    String path = reader.getAttributeValue(null, "Name");
+                    if (path != null) {
+                        lines.addFile(readCount(reader, "Index"), path);
+                    }
+                } else if (ASSEMBLY.equals(element)) {
+                    assembly = read(reader);
+                    root.addChild(assembly);
+                    root.addStatements(assembly.getCoveredStatements(), assembly.getTotalStatements());
+                } else if (NAMESPACE.equals(element) && assembly != null) {
+                    namespace = read(reader);
+                    assembly.addChild(namespace);
+                } else if (TYPE.equals(element) && assembly != null) {
+                    CoverageTotals type = read(reader);
+                    CoverageTotals parent = namespace;
+                    if (parent == null) {
+                        if (globalNamespace == null) {
+                            globalNamespace = new CoverageTotals("");
+                            assembly.addChild(globalNamespace);
+                        }
+                        globalNamespace.addStatements(type.getCoveredStatements(), type.getTotalStatements());
+                        parent = globalNamespace;
+                    }
+                    parent.addChild(type);
+                    typeDepth = 1;
+                }
+            } else if (event == XMLStreamReader.END_ELEMENT) {
+                String element = reader.getLocalName();
+                if (typeDepth > 0) {
+                    if (TYPE.equals(element)) {
+                        typeDepth--;
+                    }
+                } else if (NAMESPACE.equals(element)) {
+                    namespace = null;
+                } else if (ASSEMBLY.equals(element)) {
+                    assembly = null;
+                    globalNamespace = null;
+                }
+            }
+        }
+        return root;
+    }
+
+    private static CoverageTotals read(XMLStreamReader reader) throws XMLStreamException {
+        String name = reader.getAttributeValue(null, "Name");
+        return new CoverageTotals(name != null ? name : "", readCount(reader, "CoveredStatements"), readCount(reader, "TotalStatements"));
+    }
+
+    private static int readCount(XMLStreamReader reader, String attribute) throws XMLStreamException {
+        String value = reader.getAttributeValue(null, attribute);
+        if (value == null) {
+            return 0;
+        }
+        try {
+            return Integer.parseInt(value.trim());
+        } catch (NumberFormatException e) {
+            throw new XMLStreamException("Invalid " + attribute + " '" + value + "'", reader.getLocation(), e);
+        }
+    }
+
+    /**
+     * Summarizes a DetailedXML report, and optionally writes its line coverage index next to it. Invoked on the report, so
+     * that only the totals are sent to the controller.
+     */
+    static final class Summarize extends MasterToSlaveFileCallable<CoverageTotals> {
+
+        private static final long serialVersionUID = 2946107345516618903L;
+        private final String name;
+        private final String lineIndex;
+
+        /**
+         * @param name      The name of the totals.
+         * @param lineIndex The remote path of the @{@link LineCoverageIndex} to write, or null to write none.
+         */
+        Summarize(@Nonnull String name, @CheckForNull String lineIndex) {
+            this.name = name;
+            this.lineIndex = lineIndex;
+        }
+
+        @Override
+        public CoverageTotals invoke(File report, VirtualChannel channel) throws IOException {
+            LineCoverageIndex.Builder lines = lineIndex != null ? new LineCoverageIndex.Builder() : null;
+            CoverageTotals totals;
+            try (InputStream in = new BufferedInputStream(Files.newInputStream(report.toPath()), 64 * 1024)) {
+                totals = parse(in, name, lines);
+            }
+            if (lines != null) {
+                try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(new File(lineIndex).toPath()))) {
+                    lines.write(out);
+                }
+            }
+            return totals;
+        }
+    }
+}
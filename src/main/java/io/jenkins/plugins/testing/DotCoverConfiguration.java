@@ -9,8 +9,15 @@ import org.kohsuke.stapler.DataBoundSetter;
 @Extension
 public class DotCoverConfiguration extends GlobalConfiguration implements Serializable {
 
+    public static final int DEFAULT_SNAPSHOT_CACHE_SIZE = 2048;
+    public static final int DEFAULT_SNAPSHOT_STORE_SIZE = 4096;
+    public static final int DEFAULT_HTML_REPORT_CACHE_SIZE = 20;
     private static final long serialVersionUID = 6197163805395054799L;
     private String mandatoryExcludedAssemblies;
+    private int snapshotCacheSize = DEFAULT_SNAPSHOT_CACHE_SIZE;
+    private int snapshotStoreSize = DEFAULT_SNAPSHOT_STORE_SIZE;
+    private int maxConcurrentProcesses;
+    private int htmlReportCacheSize = DEFAULT_HTML_REPORT_CACHE_SIZE;
 
     @DataBoundConstructor
     public DotCoverConfiguration() {
@@ -32,4 +39,57 @@ public class DotCoverConfiguration extends GlobalConfiguration implements Serial
         save();
     }
 
+    /**
+     * @return The maximum size, in megabytes, of the snapshot cache on each agent.
+     */
+    public int getSnapshotCacheSize() {
+        return snapshotCacheSize;
+    }
+
+    @DataBoundSetter
+    public void setSnapshotCacheSize(int snapshotCacheSize) {
+        this.snapshotCacheSize = snapshotCacheSize;
+        save();
+    }
+
+    /**
+     * @return The maximum size, in megabytes, of the compressed snapshots in the snapshot store on the controller.
+     */
+    public int getSnapshotStoreSize() {
+        return snapshotStoreSize;
+    }
+
+    @DataBoundSetter
+    public void setSnapshotStoreSize(int snapshotStoreSize) {
+        this.snapshotStoreSize = snapshotStoreSize;
+        save();
+    }
+
+    /**
+     * @return The maximum number of DotCover processes that run on a node at the same time, or 0 for no limit. A
+     * @{@link DotCoverNodeProperty} overrides it for its node.
+     */
+    public int getMaxConcurrentProcesses() {
+        return maxConcurrentProcesses;
+    }
+
+    @DataBoundSetter
+    public void setMaxConcurrentProcesses(int maxConcurrentProcesses) {
+        this.maxConcurrentProcesses = Math.max(0, maxConcurrentProcesses);
+        save();
+    }
+
+    /**
+     * @return The maximum number of HTML reports that were generated on demand and are kept on the controller.
+     */
+    public int getHtmlReportCacheSize() {
+        return htmlReportCacheSize;
+    }
+
+    @DataBoundSetter
+    public void setHtmlReportCacheSize(int htmlReportCacheSize) {
+        this.htmlReportCacheSize = Math.max(1, htmlReportCacheSize);
+        save();
+    }
+
 }
@@ -1,37 +1,85 @@
 package io.jenkins.plugins.testing;
 
-import com.google.common.base.Strings;
 import hudson.FilePath;
+import hudson.Util;
 import hudson.util.ArgumentListBuilder;
 import java.io.IOException;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 import javax.annotation.Nonnull;
 import org.apache.commons.lang.StringUtils;
 import org.dom4j.Document;
 import org.dom4j.DocumentHelper;
 import org.dom4j.Element;
 
-public class DotCoverConfigurationBuilder {
-
-    private final DotCoverStepExecution execution;
+/**
+ * Builds the dotCover configuration documents of a @{@link DotCoverStepExecution}.
+ * <p>
+ * Everything the documents depend on is resolved when the builder is created, so a builder can be sent to the agent and
+ * build documents there from agent paths.
+ */
+public class DotCoverConfigurationBuilder implements Serializable {
+
+    private static final long serialVersionUID = 8372035117164425402L;
+    private static final int BATCH_HASH_LENGTH = 8;
+    private final transient DotCoverStepExecution execution;
     private final DotCoverStep step;
     private final String vsTestToolPath;
-    private final String outputDirPath;
-    private final String tempDirPath;
+    private final String mandatoryExcludedAssemblies;
+    private transient String outputDirPath;
+    private transient String tempDirPath;
+    private Element filters;
+    private Element processFilters;
 
     public DotCoverConfigurationBuilder(@Nonnull DotCoverStepExecution execution) throws IOException, InterruptedException {
         this.execution = execution;
         this.step = execution.dotCoverStep;
         this.vsTestToolPath = execution.getVsTestToolPath();
-        this.outputDirPath = execution.toAgentPath(execution.outputDir);
-        this.tempDirPath = execution.toAgentPath(execution.tempDir);
-
+        this.mandatoryExcludedAssemblies = DotCoverConfiguration.getInstance().getMandatoryExcludedAssemblies();
     }
 
     public Document buildXmlDocument(FilePath assemblyPath) throws IOException, InterruptedException {
+        return buildXmlDocument(Collections.singletonList(assemblyPath));
+    }
+
+    /**
+     * Builds the dotCover configuration that covers a batch of test assemblies in one vstest run.
+     *
+     * @param batch The test assemblies to pass to vstest.
+     * @return The dotCover configuration, producing one snapshot for the whole batch.
+     * @throws IOException          If the agent paths cannot be resolved.
+     * @throws InterruptedException If interrupted while resolving the agent paths.
+     */
+    public Document buildXmlDocument(@Nonnull List<FilePath> batch) throws IOException, InterruptedException {
+        if (outputDirPath == null) {
+            outputDirPath = execution.toAgentPath(execution.outputDir);
+            tempDirPath = execution.toAgentPath(execution.tempDir);
+        }
+        List<String> assemblyPaths = new ArrayList<>();
+        for (FilePath assemblyPath : batch) {
+            assemblyPaths.add(execution.toAgentPath(assemblyPath));
+        }
+        return buildXmlDocument(assemblyPaths, execution.toAgentPath(getSnapshot(batch)), outputDirPath, tempDirPath);
+    }
+
+    /**
+     * Builds the dotCover configuration for a batch of test assemblies from agent paths, without any remote calls.
+     *
+     * @param assemblyPaths The agent paths of the test assemblies to pass to vstest.
+     * @param snapshotPath  The agent path of the snapshot of the batch.
+     * @param outputDirPath The agent path of the output directory.
+     * @param tempDirPath   The agent path of the temp directory.
+     * @return The dotCover configuration.
+     */
+    Document buildXmlDocument(@Nonnull List<String> assemblyPaths, @Nonnull String snapshotPath, @Nonnull String outputDirPath, @Nonnull String tempDirPath) {
         ArgumentListBuilder vsTestArgsBuilder = new ArgumentListBuilder();
         vsTestArgsBuilder.add("/platform:" + step.getVsTestPlatform());
         vsTestArgsBuilder.add("/logger:trx");
-        vsTestArgsBuilder.add(execution.toAgentPath(assemblyPath));
+        for (String assemblyPath : assemblyPaths) {
+            vsTestArgsBuilder.add(assemblyPath);
+        }
 
         if (StringUtils.isNotBlank(step.getVsTestCaseFilter())) {
             vsTestArgsBuilder.add("/testCaseFilter:" + step.getVsTestCaseFilter());
@@ -55,89 +103,45 @@ public class DotCoverConfigurationBuilder {
         Element tempDir = analyseParams.addElement("TempDir");
         tempDir.addText(tempDirPath);
 
-        String snapshotName = assemblyPath.getName() + DotCoverStep.SNAPSHOT_MERGE_SUFFIX;
-        String snapshotPath = execution.toAgentPath(execution.tempDir.child(snapshotName));
         Element output = analyseParams.addElement("Output");
         output.addText(snapshotPath);
-        Element filters = analyseParams.addElement("Filters");
-        Element processFilters = analyseParams.addElement("ProcessFilters");
-
-        Element includeFilters = filters.addElement("IncludeFilters");
-        Element excludeFilters = filters.addElement("ExcludeFilters");
-
-        boolean isProcessIncludeSet = StringUtils.isNotBlank(step.getProcessInclude());
-        boolean isProcessExcludeSet = StringUtils.isNotBlank(step.getProcessExclude());
-
-        if (isProcessIncludeSet || isProcessExcludeSet) {
-
-            if (isProcessIncludeSet) {
-                processFilter(processFilters.addElement("IncludeFilters"), step.getProcessInclude());
-            }
-            if (isProcessExcludeSet) {
-                processFilter(processFilters.addElement("ExcludeFilters"), step.getProcessExclude());
-            }
-        }
-
-        if (StringUtils.isNotBlank(step.getCoverageAssemblyInclude())) {
-            for (String assemblyName : step.getCoverageAssemblyInclude().split(";")) {
-                if (StringUtils.isNotBlank(assemblyName)) {
-                    Element filterEntry = includeFilters.addElement("FilterEntry");
-                    filterEntry.addElement("ModuleMask").addText(assemblyName);
-                    filterEntry.addElement("ClassMask").addText("*");
-                    filterEntry.addElement("FunctionMask").addText("*");
-                }
-            }
-        }
-
-        if (StringUtils.isNotBlank(step.getCoverageClassInclude())) {
-            for (String className : step.getCoverageClassInclude().split(";")) {
-                if (StringUtils.isNotBlank(className)) {
-                    Element filterEntry = includeFilters.addElement("FilterEntry");
-                    filterEntry.addElement("ModuleMask").addText("*");
-                    filterEntry.addElement("ClassMask").addText(className);
-                    filterEntry.addElement("FunctionMask").addText("*");
-                }
-            }
-        }
+        compileFilters();
+        analyseParams.add(filters.createCopy());
+        analyseParams.add(processFilters.createCopy());
+        return document;
+    }
 
-        if (StringUtils.isNotBlank(step.getCoverageFunctionInclude())) {
-            for (String method : step.getCoverageFunctionInclude().split(";")) {
-                if (StringUtils.isNotBlank(method)) {
-                    Element filterEntry = includeFilters.addElement("FilterEntry");
-                    filterEntry.addElement("ModuleMask").addText("*");
-                    filterEntry.addElement("ClassMask").addText("*");
-                    filterEntry.addElement("FunctionMask").addText(method);
-                }
-            }
-        }
+    /**
+     * @param batch The test assemblies that are covered together.
+     * @return Where dotCover writes the coverage snapshot for the batch.
+     */
+    public FilePath getSnapshot(@Nonnull List<FilePath> batch) {
+        return execution.tempDir.child(getBatchName(batch) + DotCoverStep.SNAPSHOT_MERGE_SUFFIX);
+    }
 
-        String mandatoryExcludedAssemblies = DotCoverConfiguration.getInstance().getMandatoryExcludedAssemblies();
-        if (StringUtils.isNotBlank(mandatoryExcludedAssemblies) || StringUtils.isNotBlank(step.getCoverageExclude())) {
-            String stepExcludedAssemblies = step.getCoverageExclude();
-            String excludedAssemblies = "";
-            if (StringUtils.isNotBlank(stepExcludedAssemblies)) {
-                excludedAssemblies += stepExcludedAssemblies;
-            }
-            if (StringUtils.isNotBlank(mandatoryExcludedAssemblies)) {
-                excludedAssemblies += mandatoryExcludedAssemblies;
-            }
-
-            for (String assembly : excludedAssemblies.split(";")) {
-                if (StringUtils.isNotBlank(assembly)) {
-                    Element filterEntry = excludeFilters.addElement("FilterEntry");
-                    filterEntry.addElement("ModuleMask").addText(assembly);
-                }
-            }
+    /**
+     * @param batch The test assemblies that are covered together.
+     * @return The file name of the only test assembly, or the file name of the first one followed by the number of other ones,
+     * followed by a short hash of the full paths of the assemblies, since test projects in different directories often build
+     * assemblies with the same file name.
+     */
+    public static String getBatchName(@Nonnull List<FilePath> batch) {
+        String firstAssemblyName = batch.get(0).getName();
+        List<String> paths = new ArrayList<>();
+        for (FilePath assembly : batch) {
+            paths.add(assembly.getRemote());
         }
-        return document;
+        String hash = Util.getDigestOf(String.join("\n", paths)).substring(0, BATCH_HASH_LENGTH);
+        return (batch.size() == 1 ? firstAssemblyName : firstAssemblyName + "+" + (batch.size() - 1)) + "-" + hash;
     }
 
-    private void processFilter(Element parentElement, String input) {
-        if (Strings.isNullOrEmpty(input)) return;
-        for (String token : input.split(";")) {
-            if (StringUtils.isNotBlank(token)) {
-                parentElement.addElement("ProcessMask").addText(token);
-            }
+    /**
+     * Compiles the filters of the step on first use, so that every document only copies them.
+     */
+    private void compileFilters() {
+        if (filters == null) {
+            filters = FilterCompiler.compileFilters(step, mandatoryExcludedAssemblies);
+            processFilters = FilterCompiler.compileProcessFilters(step);
         }
     }
 }
@@ -0,0 +1,211 @@
+package io.jenkins.plugins.testing;
+
+import edu.umd.cs.findbugs.annotations.NonNull;
+import hudson.EnvVars;
+import hudson.Extension;
+import hudson.FilePath;
+import hudson.Launcher;
+import hudson.Util;
+import hudson.model.TaskListener;
+import java.io.IOException;
+import java.io.Serializable;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import org.jenkinsci.Symbol;
+import org.jenkinsci.plugins.workflow.steps.Step;
+import org.jenkinsci.plugins.workflow.steps.StepContext;
+import org.jenkinsci.plugins.workflow.steps.StepDescriptor;
+import org.jenkinsci.plugins.workflow.steps.StepExecution;
+import org.kohsuke.stapler.DataBoundConstructor;
+import org.kohsuke.stapler.DataBoundSetter;
+
+/**
+ * Merges the shard snapshots of sharded @{@link DotCoverStep}s and generates the reports from the merged snapshot.
+ */
+public class DotCoverMergeStep extends Step implements Serializable {
+
+    private static final long serialVersionUID = -6630713787702447163L;
+    private static final String JENKINS_FUNCTION_NAME = "dotcoverMerge";
+    private String snapshotFilter = DescriptorImpl.DEFAULT_SNAPSHOT_FILTER;
+    private String outputDir = DotCoverStep.DescriptorImpl.DEFAULT_OUTPUT_DIR;
+    private String htmlReportPath = DotCoverStep.DescriptorImpl.DEFAULT_HTML_REPORT_PATH;
+    private String nDependXmlReportPath = DotCoverStep.DescriptorImpl.DEFAULT_NDEPEND_REPORT_PATH;
+    private String detailedXMLReportPath = DotCoverStep.DescriptorImpl.DEFAULT_DETAILED_REPORT_PATH;
+    private int mergeFanIn = DotCoverStep.DescriptorImpl.DEFAULT_MERGE_FAN_IN;
+    private int mergeParallelism = DotCoverStep.DescriptorImpl.DEFAULT_MERGE_PARALLELISM;
+    private boolean storeSnapshot;
+    private boolean lazyHtmlReport;
+    private boolean archiveHtmlReport;
+    private boolean lineCoverage;
+    private String coverageReferenceJob;
+    private String coverageId;
+
+    @DataBoundConstructor
+    public DotCoverMergeStep() {
+    }
+
+    @Override
+    public StepExecution start(StepContext stepContext) throws IOException, InterruptedException {
+        DotCoverStep reportStep = new DotCoverStep();
+        reportStep.setOutputDir(outputDir);
+        reportStep.setHtmlReportPath(htmlReportPath);
+        reportStep.setNDependXmlReportPath(nDependXmlReportPath);
+        reportStep.setDetailedXMLReportPath(detailedXMLReportPath);
+        reportStep.setMergeFanIn(mergeFanIn);
+        reportStep.setMergeParallelism(mergeParallelism);
+        reportStep.setStoreSnapshot(storeSnapshot);
+        reportStep.setLazyHtmlReport(lazyHtmlReport);
+        reportStep.setArchiveHtmlReport(archiveHtmlReport);
+        reportStep.setLineCoverage(lineCoverage);
+        reportStep.setCoverageReferenceJob(coverageReferenceJob);
+        reportStep.setCoverageId(coverageId);
+        return new DotCoverStepExecution(stepContext, reportStep, snapshotFilter);
+    }
+
+    public String getSnapshotFilter() {
+        return snapshotFilter;
+    }
+
+    @DataBoundSetter
+    public void setSnapshotFilter(String snapshotFilter) {
+        this.snapshotFilter = Util.fixEmptyAndTrim(snapshotFilter);
+    }
+
+    public String getOutputDir() {
+        return outputDir;
+    }
+
+    @DataBoundSetter
+    public void setOutputDir(String outputDir) {
+        this.outputDir = Util.fixEmptyAndTrim(outputDir);
+    }
+
+    public String getHtmlReportPath() {
+        return htmlReportPath;
+    }
+
+    @DataBoundSetter
+    public void setHtmlReportPath(String htmlReportPath) {
+        this.htmlReportPath = Util.fixEmptyAndTrim(htmlReportPath);
+    }
+
+    public String getNDependXmlReportPath() {
+        return nDependXmlReportPath;
+    }
+
+    @DataBoundSetter
+    public void setNDependXmlReportPath(String nDependXmlReportPath) {
+        this.nDependXmlReportPath = Util.fixEmptyAndTrim(nDependXmlReportPath);
+    }
+
+    public String getDetailedXMLReportPath() {
+        return detailedXMLReportPath;
+    }
+
+    @DataBoundSetter
+    public void setDetailedXMLReportPath(String detailedXMLReportPath) {
+        this.detailedXMLReportPath = Util.fixEmptyAndTrim(detailedXMLReportPath);
+    }
+
+    public int getMergeFanIn() {
+        return mergeFanIn;
+    }
+
+    @DataBoundSetter
+    public void setMergeFanIn(int mergeFanIn) {
+        this.mergeFanIn = Math.max(2, mergeFanIn);
+    }
+
+    public int getMergeParallelism() {
+        return mergeParallelism;
+    }
+
+    @DataBoundSetter
+    public void setMergeParallelism(int mergeParallelism) {
+        this.mergeParallelism = Math.max(1, mergeParallelism);
+    }
+
+    public boolean isLineCoverage() {
+        return lineCoverage;
+    }
+
+    @DataBoundSetter
+    public void setLineCoverage(boolean lineCoverage) {
+        this.lineCoverage = lineCoverage;
+    }
+
+    public String getCoverageReferenceJob() {
+        return coverageReferenceJob;
+    }
+
+    @DataBoundSetter
+    public void setCoverageReferenceJob(String coverageReferenceJob) {
+        this.coverageReferenceJob = Util.fixEmptyAndTrim(coverageReferenceJob);
+    }
+
+    public String getCoverageId() {
+        return coverageId;
+    }
+
+    @DataBoundSetter
+    public void setCoverageId(String coverageId) {
+        this.coverageId = Util.fixEmptyAndTrim(coverageId);
+    }
+
+    public boolean isStoreSnapshot() {
+        return storeSnapshot;
+    }
+
+    @DataBoundSetter
+    public void setStoreSnapshot(boolean storeSnapshot) {
+        this.storeSnapshot = storeSnapshot;
+    }
+
+    public boolean isLazyHtmlReport() {
+        return lazyHtmlReport;
+    }
+
+    @DataBoundSetter
+    public void setLazyHtmlReport(boolean lazyHtmlReport) {
+        this.lazyHtmlReport = lazyHtmlReport;
+    }
+
+    public boolean isArchiveHtmlReport() {
+        return archiveHtmlReport;
+    }
+
+    @DataBoundSetter
+    public void setArchiveHtmlReport(boolean archiveHtmlReport) {
+        this.archiveHtmlReport = archiveHtmlReport;
+    }
+
+    @Extension
+    @Symbol("dotCoverMerge")
+    public static class DescriptorImpl extends StepDescriptor {
+
+        public static final String DEFAULT_SNAPSHOT_FILTER = "**/" + Sharding.SHARD_SNAPSHOT_PREFIX + "*" + DotCoverStep.SNAPSHOT_MERGE_SUFFIX;
+
+        @Override
+        @NonNull
+        public String getFunctionName() {
+            return JENKINS_FUNCTION_NAME;
+        }
+
+        @Override
+        @NonNull
+        public String getDisplayName() {
+            return "Merge sharded code coverage data and generate report(s)";
+        }
+
+        @Override
+        public Set<? extends Class<?>> getRequiredContext() {
+            Set<Class<?>> contexts = new HashSet<>();
+            contexts.add(TaskListener.class);
+            contexts.add(Launcher.class);
+            contexts.add(FilePath.class);
+            contexts.add(EnvVars.class);
+            return Collections.unmodifiableSet(contexts);
+        }
+    }
+}
@@ -0,0 +1,39 @@
+package io.jenkins.plugins.testing;
+
+import edu.umd.cs.findbugs.annotations.NonNull;
+import hudson.Extension;
+import hudson.model.Node;
+import hudson.slaves.NodeProperty;
+import hudson.slaves.NodePropertyDescriptor;
+import org.kohsuke.stapler.DataBoundConstructor;
+
+/**
+ * Overrides the global DotCover settings for one node.
+ */
+public class DotCoverNodeProperty extends NodeProperty<Node> {
+
+    private final int maxConcurrentProcesses;
+
+    /**
+     * @param maxConcurrentProcesses The maximum number of DotCover processes that run on the node at the same time, or 0
+     *                               for no limit.
+     */
+    @DataBoundConstructor
+    public DotCoverNodeProperty(int maxConcurrentProcesses) {
+        this.maxConcurrentProcesses = Math.max(0, maxConcurrentProcesses);
+    }
+
+    public int getMaxConcurrentProcesses() {
+        return maxConcurrentProcesses;
+    }
+
+    @Extension
+    public static class DescriptorImpl extends NodePropertyDescriptor {
+
+        @Override
+        @NonNull
+        public String getDisplayName() {
+            return "DotCover";
+        }
+    }
+}
@@ -3,11 +3,13 @@ package io.jenkins.plugins.testing;
 import edu.umd.cs.findbugs.annotations.NonNull;
 import hudson.*;
 import hudson.model.TaskListener;
+import hudson.util.FormValidation;
 import java.io.IOException;
 import java.io.Serializable;
 import java.util.Collections;
 import java.util.HashSet;
 import java.util.Set;
+import org.apache.commons.lang.StringUtils;
 import org.jenkinsci.Symbol;
 import org.jenkinsci.plugins.workflow.steps.Step;
 import org.jenkinsci.plugins.workflow.steps.StepContext;
@@ -15,6 +17,7 @@ import org.jenkinsci.plugins.workflow.steps.StepDescriptor;
 import org.jenkinsci.plugins.workflow.steps.StepExecution;
 import org.kohsuke.stapler.DataBoundConstructor;
 import org.kohsuke.stapler.DataBoundSetter;
+import org.kohsuke.stapler.QueryParameter;
 
 public class DotCoverStep extends Step implements Serializable {
 
@@ -39,6 +42,27 @@ public class DotCoverStep extends Step implements Serializable {
     private String nDependXmlReportPath = DescriptorImpl.DEFAULT_NDEPEND_REPORT_PATH;
     private String detailedXMLReportPath = DescriptorImpl.DEFAULT_DETAILED_REPORT_PATH;
     private String snapsnotPath = "snapshot.cov";
+    private String parallelism = DescriptorImpl.DEFAULT_PARALLELISM;
+    private boolean snapshotCache;
+    private int batchSize = DescriptorImpl.DEFAULT_BATCH_SIZE;
+    private int mergeFanIn = DescriptorImpl.DEFAULT_MERGE_FAN_IN;
+    private int mergeParallelism = DescriptorImpl.DEFAULT_MERGE_PARALLELISM;
+    private boolean pipelinedMerge;
+    private int shardCount = DescriptorImpl.DEFAULT_SHARD_COUNT;
+    private int shardIndex;
+    private int coverTimeout;
+    private int coverRetries;
+    private boolean quietConsole;
+    private int failureTailLines = DescriptorImpl.DEFAULT_FAILURE_TAIL_LINES;
+    private boolean archiveLogs;
+    private boolean storeSnapshot;
+    private boolean lazyHtmlReport;
+    private boolean archiveHtmlReport;
+    private boolean lineCoverage;
+    private String coverageReferenceJob;
+    private String coverageId;
+    private String assemblyExclude = DescriptorImpl.DEFAULT_ASSEMBLY_EXCLUDE;
+    private boolean assemblyDirCache;
 
     @DataBoundConstructor
     public DotCoverStep() {
@@ -179,16 +203,220 @@ public class DotCoverStep extends Step implements Serializable {
         return snapsnotPath;
     }
 
+    public String getParallelism() {
+        return parallelism;
+    }
+
+    @DataBoundSetter
+    public void setParallelism(String parallelism) {
+        this.parallelism = Util.fixEmptyAndTrim(parallelism);
+    }
+
+    public boolean isSnapshotCache() {
+        return snapshotCache;
+    }
+
+    @DataBoundSetter
+    public void setSnapshotCache(boolean snapshotCache) {
+        this.snapshotCache = snapshotCache;
+    }
+
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    @DataBoundSetter
+    public void setBatchSize(int batchSize) {
+        this.batchSize = Math.max(1, batchSize);
+    }
+
+    public int getMergeFanIn() {
+        return mergeFanIn;
+    }
+
+    @DataBoundSetter
+    public void setMergeFanIn(int mergeFanIn) {
+        this.mergeFanIn = Math.max(2, mergeFanIn);
+    }
+
+    public int getMergeParallelism() {
+        return mergeParallelism;
+    }
+
+    @DataBoundSetter
+    public void setMergeParallelism(int mergeParallelism) {
+        this.mergeParallelism = Math.max(1, mergeParallelism);
+    }
+
+    public boolean isPipelinedMerge() {
+        return pipelinedMerge;
+    }
+
+    @DataBoundSetter
+    public void setPipelinedMerge(boolean pipelinedMerge) {
+        this.pipelinedMerge = pipelinedMerge;
+    }
+
+    public int getCoverTimeout() {
+        return coverTimeout;
+    }
+
+    @DataBoundSetter
+    public void setCoverTimeout(int coverTimeout) {
+        this.coverTimeout = Math.max(0, coverTimeout);
+    }
+
+    public int getCoverRetries() {
+        return coverRetries;
+    }
+
+    @DataBoundSetter
+    public void setCoverRetries(int coverRetries) {
+        this.coverRetries = Math.max(0, coverRetries);
+    }
+
+    public boolean isQuietConsole() {
+        return quietConsole;
+    }
+
+    @DataBoundSetter
+    public void setQuietConsole(boolean quietConsole) {
+        this.quietConsole = quietConsole;
+    }
+
+    public int getFailureTailLines() {
+        return failureTailLines;
+    }
+
+    @DataBoundSetter
+    public void setFailureTailLines(int failureTailLines) {
+        this.failureTailLines = Math.max(0, failureTailLines);
+    }
+
+    public boolean isArchiveLogs() {
+        return archiveLogs;
+    }
+
+    @DataBoundSetter
+    public void setArchiveLogs(boolean archiveLogs) {
+        this.archiveLogs = archiveLogs;
+    }
+
+    public String getAssemblyExclude() {
+        return assemblyExclude;
+    }
+
+    @DataBoundSetter
+    public void setAssemblyExclude(String assemblyExclude) {
+        this.assemblyExclude = Util.fixEmptyAndTrim(assemblyExclude);
+    }
+
+    public boolean isAssemblyDirCache() {
+        return assemblyDirCache;
+    }
+
+    @DataBoundSetter
+    public void setAssemblyDirCache(boolean assemblyDirCache) {
+        this.assemblyDirCache = assemblyDirCache;
+    }
+
+    public boolean isLineCoverage() {
+        return lineCoverage;
+    }
+
+    @DataBoundSetter
+    public void setLineCoverage(boolean lineCoverage) {
+        this.lineCoverage = lineCoverage;
+    }
+
+    public String getCoverageReferenceJob() {
+        return coverageReferenceJob;
+    }
+
+    @DataBoundSetter
+    public void setCoverageReferenceJob(String coverageReferenceJob) {
+        this.coverageReferenceJob = Util.fixEmptyAndTrim(coverageReferenceJob);
+    }
+
+    public String getCoverageId() {
+        return coverageId;
+    }
+
+    @DataBoundSetter
+    public void setCoverageId(String coverageId) {
+        this.coverageId = Util.fixEmptyAndTrim(coverageId);
+    }
+
+    public boolean isStoreSnapshot() {
+        return storeSnapshot;
+    }
+
+    @DataBoundSetter
+    public void setStoreSnapshot(boolean storeSnapshot) {
+        this.storeSnapshot = storeSnapshot;
+    }
+
+    public boolean isLazyHtmlReport() {
+        return lazyHtmlReport;
+    }
+
+    @DataBoundSetter
+    public void setLazyHtmlReport(boolean lazyHtmlReport) {
+        this.lazyHtmlReport = lazyHtmlReport;
+    }
+
+    public boolean isArchiveHtmlReport() {
+        return archiveHtmlReport;
+    }
+
+    @DataBoundSetter
+    public void setArchiveHtmlReport(boolean archiveHtmlReport) {
+        this.archiveHtmlReport = archiveHtmlReport;
+    }
+
+    public int getShardCount() {
+        return shardCount;
+    }
+
+    @DataBoundSetter
+    public void setShardCount(int shardCount) {
+        this.shardCount = Math.max(1, shardCount);
+    }
+
+    public int getShardIndex() {
+        return shardIndex;
+    }
+
+    @DataBoundSetter
+    public void setShardIndex(int shardIndex) {
+        this.shardIndex = Math.max(0, shardIndex);
+    }
+
+    /**
+     * @return Whether this step covers only its share of the test assemblies, for a @{@link DotCoverMergeStep} to merge.
+     */
+    public boolean isSharded() {
+        return shardCount > 1;
+    }
+
     @Extension
     @Symbol("dotCover")
     public static class DescriptorImpl extends StepDescriptor {
 
         public static final String DEFAULT_TEST_ASSEMBLIES_GLOB = "**/*Test/bin/**/Release/*Test.dll";
+        public static final String DEFAULT_ASSEMBLY_EXCLUDE = AssemblyScanner.DEFAULT_EXCLUDES;
         public static final String DEFAULT_TEST_PLATFORM = "x64";
         public static final String DEFAULT_OUTPUT_DIR = "coverage";
         public static final String DEFAULT_HTML_REPORT_PATH = "index.html";
         public static final String DEFAULT_DETAILED_REPORT_PATH = "detailed-report.xml";
         public static final String DEFAULT_NDEPEND_REPORT_PATH = "ndepend-report.xml";
+        public static final String DEFAULT_PARALLELISM = "1";
+        public static final String PARALLELISM_AUTO = "auto";
+        public static final int DEFAULT_BATCH_SIZE = 1;
+        public static final int DEFAULT_MERGE_FAN_IN = 32;
+        public static final int DEFAULT_MERGE_PARALLELISM = 2;
+        public static final int DEFAULT_SHARD_COUNT = 1;
+        public static final int DEFAULT_FAILURE_TAIL_LINES = 50;
 
         @Override
         @NonNull
@@ -211,6 +439,20 @@ public class DotCoverStep extends Step implements Serializable {
             contexts.add(EnvVars.class);
             return Collections.unmodifiableSet(contexts);
         }
+
+        public FormValidation doCheckParallelism(@QueryParameter String value) {
+            if (StringUtils.isBlank(value) || PARALLELISM_AUTO.equalsIgnoreCase(value.trim())) {
+                return FormValidation.ok();
+            }
+            try {
+                if (Integer.parseInt(value.trim()) > 0) {
+                    return FormValidation.ok();
+                }
+            } catch (NumberFormatException e) {
+                // reported below
+            }
+            return FormValidation.error("Must be a positive number or '" + PARALLELISM_AUTO + "'.");
+        }
     }
 
 }
@@ -4,78 +4,165 @@ import com.google.common.base.Strings;
 import hudson.EnvVars;
 import hudson.FilePath;
 import hudson.Launcher;
+import hudson.Util;
 import hudson.model.Computer;
 import hudson.model.Node;
+import hudson.model.Run;
+import hudson.model.StreamBuildListener;
 import hudson.model.TaskListener;
 import hudson.util.ArgumentListBuilder;
 import java.io.IOException;
 import java.io.OutputStream;
 import java.io.PrintStream;
 import java.io.Serializable;
-import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.regex.Pattern;
+import javax.annotation.CheckForNull;
 import javax.annotation.Nonnull;
 import jenkins.model.Jenkins;
+import jenkins.security.MasterToSlaveCallable;
+import jenkins.util.Timer;
 import org.apache.commons.lang.StringUtils;
 import org.dom4j.Document;
 import org.dom4j.io.OutputFormat;
 import org.dom4j.io.XMLWriter;
+import org.jenkinsci.plugins.durabletask.Controller;
 import org.jenkinsci.plugins.vstest_runner.VsTestInstallation;
 import org.jenkinsci.plugins.workflow.steps.StepContext;
-import org.jenkinsci.plugins.workflow.steps.SynchronousNonBlockingStepExecution;
+import org.jenkinsci.plugins.workflow.steps.StepExecution;
 
 /**
  * Represents one execution of a @{@link DotCoverStep} in a @{@link hudson.model.Run}.
+ * <p>
+ * The execution is asynchronous: every DotCover process runs on the agent as a @{@link DurableProcess} that is polled with
+ * the Jenkins timer, and each phase starts the next one when its processes complete. No controller thread waits while
+ * DotCover runs, and stopping the step kills the running processes on the agent.
  */
-public final class DotCoverStepExecution extends SynchronousNonBlockingStepExecution<DotCoverStep> implements Serializable {
+public final class DotCoverStepExecution extends StepExecution implements Serializable {
 
     private static final long serialVersionUID = -1431093121789817171L;
-    final FilePath tempDir;
+    private static final String REPORT_TYPE_HTML = "HTML";
+    private static final String REPORT_TYPE_DETAILED_XML = "DetailedXML";
+    /**
+     * Whether a dotCover installation, keyed by node name and tool path, accepts several report types in one pass.
+     */
+    private static final Map<String, Boolean> MULTI_REPORT_SUPPORT = new ConcurrentHashMap<>();
+    /**
+     * The number of last lines of the output of a Report run that are searched for the error of a dotCover that does not
+     * accept several report types.
+     */
+    private static final int REPORT_TYPE_CHECK_LINES = 20;
+    private static final Pattern REPORT_TYPE_PARAMETER = Pattern.compile("report ?type");
+    private static final Pattern REPORT_TYPE_REJECTED = Pattern.compile("invalid|unknown|unsupported|not supported|unrecognized");
+    static final String LOG_DIR_NAME = "logs";
+    static final String TEMP_DIR_NAME = "temp";
+    static final String LOG_ARTIFACTS_DIR = "dotcover-logs";
+    private static final Logger LOGGER = Logger.getLogger(DotCoverStepExecution.class.getName());
+    /**
+     * Plans every execution on the controller one remote call at a time, as earlier versions did, instead of in one call on
+     * the agent.
+     */
+    private static final boolean PLAN_PER_CALL = Boolean.getBoolean(DotCoverStepExecution.class.getName() + ".planPerCall");
+    /**
+     * The unit of the cover timeout of the step; tests use seconds, so that they do not wait for minutes.
+     */
+    static TimeUnit coverTimeoutUnit = TimeUnit.MINUTES;
+    /**
+     * The temp directory of this execution; replaced by a fresh one when a resumed execution cannot tell whether the
+     * processes it lost still write to the old one.
+     */
+    volatile FilePath tempDir;
     final FilePath outputDir;
     final DotCoverStep dotCoverStep;
-    private final transient PrintStream buildConsole;
-    private final transient Launcher launcher;
+    private transient TaskListener listener;
+    private transient volatile PrintStream buildConsole;
+    private transient Launcher launcher;
     private final FilePath workspace;
-    private final String dotCoverToolPath;
-    private final String agentHtmlReportPath;
-    private final String combinedSnapshotPath;
-    private final String agentNDependReportPath;
-    private final String agentDetailedReportPath;
     private final EnvVars envVars;
+    private final String shardSnapshotFilter;
+    private ExecutionPlan plan;
+    private transient DotCoverTimingAction.StepTiming timing;
+    /**
+     * The artifact directory of the logs of this execution, below the log artifacts directory for a shard or a merge.
+     */
+    private transient String logArtifactDir;
+    private final AtomicInteger logSequence = new AtomicInteger();
+    private static final long MIN_POLL_INTERVAL = 250;
+    private static final long MAX_POLL_INTERVAL = TimeUnit.SECONDS.toMillis(10);
+    private static final int MAX_OUTPUT_PER_POLL = 1024 * 1024;
+    /**
+     * The time in milliseconds that a resumed execution waits for a process it killed to exit.
+     */
+    private static final long KILL_WAIT = TimeUnit.SECONDS.toMillis(10);
+    private final AtomicBoolean completed = new AtomicBoolean();
+    private transient volatile Throwable stopCause;
+    private transient Set<RunningProcess> runningProcesses = ConcurrentHashMap.newKeySet();
+    /**
+     * The snapshots of the batches that were covered, by the workspace relative paths of their test assemblies, kept so that
+     * a resumed execution only covers the remaining batches.
+     */
+    private final Map<String, String> completedSnapshots = new ConcurrentHashMap<>();
+    /**
+     * The durable tasks of the DotCover processes that are running on the agent, by the remote paths of their log files,
+     * kept so that a resumed execution can kill the processes it lost track of.
+     */
+    private final Map<String, Controller> runningTasks = new ConcurrentHashMap<>();
+    /**
+     * The temp directories that were given up after a restart, deleted with the temp directory of this execution.
+     */
+    private final List<String> abandonedTempDirs = new CopyOnWriteArrayList<>();
+    /**
+     * The coverage totals of the DetailedXML report, returned by the step; null if no DetailedXML report was generated.
+     */
+    private volatile CoverageTotals coverageSummary;
+    /**
+     * The hash of the merged snapshot in the @{@link SnapshotStore}; null if the snapshot was not stored.
+     */
+    private volatile String snapshotHash;
 
     public DotCoverStepExecution(@Nonnull StepContext context, @Nonnull DotCoverStep dotCoverStep) throws IOException, InterruptedException {
+        this(context, dotCoverStep, null);
+    }
+
+    /**
+     * @param context             The context of the step.
+     * @param dotCoverStep        The step.
+     * @param shardSnapshotFilter A glob of shard snapshots in the workspace to merge and report on, instead of covering
+     *                            test assemblies; or null to cover the test assemblies of the step.
+     */
+    DotCoverStepExecution(@Nonnull StepContext context, @Nonnull DotCoverStep dotCoverStep, @CheckForNull String shardSnapshotFilter) throws IOException, InterruptedException {
         super(context);
-        TaskListener listener = context.get(TaskListener.class);
+        this.shardSnapshotFilter = shardSnapshotFilter;
+        this.listener = context.get(TaskListener.class);
         this.buildConsole = listener.getLogger();
         this.workspace = context.get(FilePath.class);
         this.launcher = context.get(Launcher.class);
         this.dotCoverStep = dotCoverStep;
         this.envVars = context.get(EnvVars.class);
-        Node node = workspaceToNode(workspace);
-        DotCoverInstallation dotCover = DotCoverInstallation.getDefaultInstallation().forNode(node, listener);
-        this.dotCoverToolPath = toAgentPath(workspace.child(dotCover.getHome()));
-        createDirIfNeeded(workspace);
-        this.tempDir = workspace.child("temp");
+        this.tempDir = workspace.child(TEMP_DIR_NAME).child(UUID.randomUUID().toString()); // not shared with concurrent steps
         this.outputDir = workspace.child(dotCoverStep.getOutputDir());
-        createDirIfNeeded(tempDir, outputDir);
-        if (StringUtils.isNotBlank(dotCoverStep.getHtmlReportPath())) {
-            agentHtmlReportPath = toAgentPath(outputDir.child(dotCoverStep.getHtmlReportPath()));
-        } else {
-            agentHtmlReportPath = null;
-        }
-        if (StringUtils.isNotBlank(dotCoverStep.getNDependXmlReportPath())) {
-            agentNDependReportPath = toAgentPath(outputDir.child(dotCoverStep.getNDependXmlReportPath()));
-        } else {
-            agentNDependReportPath = null;
-        }
-        if (StringUtils.isNotBlank(dotCoverStep.getDetailedXMLReportPath())) {
-            agentDetailedReportPath = toAgentPath(outputDir.child(dotCoverStep.getDetailedXMLReportPath()));
-        } else {
-            agentDetailedReportPath = null;
-        }
-        combinedSnapshotPath = toAgentPath(outputDir.child(dotCoverStep.getSnapshotPath()));
     }
 
     /**
@@ -91,105 +178,1045 @@ public final class DotCoverStepExecution extends SynchronousNonBlockingStepExecu
         return (node != null) ? node : Jenkins.get();
     }
 
+    private Object readResolve() {
+        runningProcesses = ConcurrentHashMap.newKeySet();
+        return this;
+    }
+
     @Override
-    protected DotCoverStep run() throws Exception {
-        FilePath[] assemblies = workspace.list(dotCoverStep.getVsTestAssemblyFilter());
-        if (assemblies.length == 0) {
-            return dotCoverStep;
+    public boolean start() {
+        Computer.threadPoolForRemoting.submit(() -> {
+            try {
+                run(false);
+            } catch (IOException | InterruptedException | RuntimeException e) {
+                complete(e);
+            }
+        });
+        return false;
+    }
+
+    @Override
+    public void stop(@Nonnull Throwable cause) {
+        stopCause = cause;
+        for (RunningProcess process : runningProcesses) {
+            try {
+                process.kill();
+            } catch (IOException | InterruptedException e) {
+                PrintStream console = buildConsole; // not set yet while a resumed execution is stopped before onResume
+                if (console != null) {
+                    console.println("Failed to kill DotCover " + process.name + ": " + e);
+                } else {
+                    LOGGER.log(Level.WARNING, "Failed to kill DotCover " + process.name, e);
+                }
+            }
+        }
+        complete(cause);
+    }
+
+    /**
+     * Continues the execution after a restart of Jenkins. The batches that were covered before the restart are not covered
+     * again, as long as their snapshots are still on the agent. The other batches are covered again in the same temp
+     * directory if the processes that covered them are known to have exited, and in a fresh temp directory otherwise.
+     */
+    @Override
+    public void onResume() {
+        Computer.threadPoolForRemoting.submit(() -> {
+            try {
+                listener = getContext().get(TaskListener.class);
+                buildConsole = listener.getLogger();
+                launcher = getContext().get(Launcher.class);
+                buildConsole.println("Resuming DotCover after a restart of Jenkins, " + completedSnapshots.size() + " batch(es) were covered before.");
+                if (!killLostProcesses()) {
+                    abandonedTempDirs.add(tempDir.getRemote());
+                    tempDir = workspace.child(TEMP_DIR_NAME).child(UUID.randomUUID().toString());
+                    buildConsole.println("Some DotCover processes from before the restart may still run, covering the remaining batches in " + tempDir.getRemote() + ".");
+                }
+                run(true);
+            } catch (IOException | InterruptedException | RuntimeException e) {
+                complete(e);
+            }
+        });
+    }
+
+    /**
+     * Kills the DotCover processes that were running before the restart, so that they do not write the snapshots of batches
+     * that are covered again.
+     *
+     * @return Whether all of them are known to have exited, from the exit status of their durable tasks.
+     */
+    private boolean killLostProcesses() throws InterruptedException {
+        boolean exited = true;
+        for (Map.Entry<String, Controller> process : runningTasks.entrySet()) {
+            Controller controller = process.getValue();
+            try {
+                controller.stop(workspace, launcher);
+                Integer exitStatus = controller.exitStatus(workspace, launcher, listener);
+                for (long waited = 0; exitStatus == null && waited < KILL_WAIT; waited += MIN_POLL_INTERVAL) {
+                    Thread.sleep(MIN_POLL_INTERVAL);
+                    exitStatus = controller.exitStatus(workspace, launcher, listener);
+                }
+                if (exitStatus == null) {
+                    buildConsole.println("Could not confirm that the DotCover process that wrote " + process.getKey() + " exited.");
+                    exited = false;
+                } else {
+                    controller.cleanup(workspace);
+                }
+            } catch (IOException e) {
+                buildConsole.println("Failed to kill the DotCover process that wrote " + process.getKey() + ": " + e);
+                exited = false;
+            }
+        }
+        runningTasks.clear();
+        return exited;
+    }
+
+    @Override
+    public String getStatus() {
+        List<String> names = new ArrayList<>();
+        for (RunningProcess process : runningProcesses) {
+            names.add(process.name);
+        }
+        Collections.sort(names);
+        return names.isEmpty() ? "not waiting for DotCover" : "waiting for DotCover " + String.join(", ", names);
+    }
+
+    /**
+     * Starts the phases of the execution, and completes the step when the last phase completes.
+     *
+     * @param resumed Whether the execution continues after a restart of Jenkins.
+     */
+    private void run(boolean resumed) throws IOException, InterruptedException {
+        Sharding sharding = createSharding();
+        String stepName = shardSnapshotFilter != null ? "dotcoverMerge" : sharding != null ? "dotcover (" + sharding + ")" : "dotcover";
+        timing = new DotCoverTimingAction.StepTiming(resumed ? stepName + " (resumed)" : stepName);
+        FilePath logDir = tempDir.child(LOG_DIR_NAME);
+        String prefix = shardSnapshotFilter != null ? "merge" : sharding != null ? sharding.getName() : null;
+        logArtifactDir = prefix != null ? LOG_ARTIFACTS_DIR + "/" + prefix : LOG_ARTIFACTS_DIR;
+        Futures.call(() -> execute(sharding)).whenComplete((result, failure) -> {
+            try {
+                if (dotCoverStep.isQuietConsole() && dotCoverStep.isArchiveLogs()) {
+                    archiveLogs(logDir);
+                }
+                deleteTempDir();
+                timing.finish();
+                timing.print(buildConsole);
+                Run<?, ?> run = getContext().get(Run.class);
+                if (run != null) {
+                    DotCoverTimingAction.addTo(run, timing);
+                }
+            } catch (IOException | InterruptedException | RuntimeException e) {
+                if (failure == null) {
+                    complete(e);
+                    return;
+                }
+                failure.addSuppressed(e);
+            }
+            complete(failure != null ? Futures.unwrap(failure) : null);
+        });
+    }
+
+    /**
+     * Completes the step, unless it was completed before.
+     *
+     * @param failure The failure of the step, or null if it succeeded.
+     */
+    private void complete(@CheckForNull Throwable failure) {
+        if (!completed.compareAndSet(false, true)) {
+            return;
+        }
+        if (failure != null) {
+            getContext().onFailure(failure);
+        } else {
+            getContext().onSuccess(coverageSummary != null ? coverageSummary.toMap() : new LinkedHashMap<String, Object>());
+        }
+    }
+
+    /**
+     * Archives the DotCover logs of this execution as build artifacts. Failures are only reported, so that they do not hide
+     * the outcome of the execution.
+     *
+     * @param logDir The directory with the logs, which are archived in the @{@link #logArtifactDir}.
+     */
+    private void archiveLogs(@Nonnull FilePath logDir) throws InterruptedException {
+        try {
+            Run<?, ?> run = getContext().get(Run.class);
+            if (run == null) {
+                return;
+            }
+            Map<String, String> artifacts = new LinkedHashMap<>();
+            for (FilePath log : logDir.list("*.log")) {
+                artifacts.put(logArtifactDir + "/" + log.getName(), Sharding.relativePath(workspace.getRemote(), log.getRemote()));
+            }
+            if (!artifacts.isEmpty()) {
+                run.pickArtifactManager().archive(workspace, launcher, new StreamBuildListener(buildConsole, StandardCharsets.UTF_8), artifacts);
+                buildConsole.println("Archived " + artifacts.size() + " DotCover log(s) in " + LOG_ARTIFACTS_DIR + ".");
+            }
+        } catch (IOException e) {
+            buildConsole.println("Failed to archive the DotCover logs: " + e);
+        }
+    }
+
+    /**
+     * Deletes the temp directory of this execution, with the snapshots of its batches, and the temp directories it gave up
+     * after a restart. Failures are only reported, so that they do not hide the outcome of the execution.
+     */
+    private void deleteTempDir() throws InterruptedException {
+        List<FilePath> tempDirs = new ArrayList<>();
+        tempDirs.add(tempDir);
+        for (String abandonedTempDir : abandonedTempDirs) {
+            tempDirs.add(workspace.child(abandonedTempDir));
+        }
+        for (FilePath dir : tempDirs) {
+            try {
+                dir.deleteRecursive();
+            } catch (IOException e) {
+                buildConsole.println("Failed to delete the DotCover temp directory " + dir.getRemote() + ": " + e);
+            }
+        }
+    }
+
+    private CompletableFuture<Void> execute(@CheckForNull Sharding sharding) throws IOException, InterruptedException {
+        plan = createPlan(sharding);
+        if (shardSnapshotFilter != null) {
+            return mergeShardSnapshots();
+        }
+        if (plan.getBatches().isEmpty()) {
+            return CompletableFuture.completedFuture(null);
+        }
+        FilePath mergedSnapshot = outputDir.child(sharding != null ? sharding.getSnapshotName() : dotCoverStep.getSnapshotPath());
+        String mergedSnapshotPath = sharding != null ? toAgentPath(mergedSnapshot) : plan.getCombinedSnapshotPath();
+        if (sharding != null) {
+            buildConsole.println("Covering " + plan.getBatches().size() + " batch(es) of test assemblies as " + sharding + ".");
+        }
+        PipelinedMerger pipelinedMerger = dotCoverStep.isPipelinedMerge() ? new PipelinedMerger(this, dotCoverStep.getMergeFanIn(), tempDir, buildConsole) : null;
+        CompletableFuture<List<FilePath>> covered = createCoverageSnapshots(buildConsole, pipelinedMerger);
+        if (pipelinedMerger != null) {
+            covered = awaitBackgroundMerge(covered, pipelinedMerger);
+        }
+        return covered
+                .thenCompose(Futures.compose(snapshots -> {
+                    long mergeStart = System.currentTimeMillis();
+                    return mergeSnapshots(pipelinedMerger, snapshots, mergedSnapshotPath)
+                            .thenRun(() -> timing.end(pipelinedMerger != null ? "Merge (final)" : "Merge", mergeStart));
+                }))
+                .thenCompose(Futures.compose(merged -> {
+                    storeSnapshot(mergedSnapshot);
+                    if (sharding != null) {
+                        buildConsole.println("Wrote the coverage of " + sharding + " to " + mergedSnapshotPath + ". Merge it with the other shards with the dotcoverMerge step.");
+                        return CompletableFuture.completedFuture(null);
+                    }
+                    return createReports();
+                }));
+    }
+
+    /**
+     * When covering fails, lets the background merge that still runs complete before the failure is passed on, so that the
+     * temp directory is not deleted while dotCover writes to it.
+     */
+    private static CompletableFuture<List<FilePath>> awaitBackgroundMerge(@Nonnull CompletableFuture<List<FilePath>> covered, @Nonnull PipelinedMerger pipelinedMerger) {
+        return covered.handle((snapshots, failure) -> failure == null ? covered
+                : pipelinedMerger.finish().handle((remaining, mergeFailure) -> null).thenCompose(ignored -> covered)).thenCompose(Function.identity());
+    }
+
+    /**
+     * Keeps the merged snapshot in the @{@link SnapshotStore} on the controller, if the step asks for it or generates the
+     * HTML report when it is first opened.
+     */
+    private void storeSnapshot(@Nonnull FilePath snapshot) throws IOException, InterruptedException {
+        if (!dotCoverStep.isStoreSnapshot() && !dotCoverStep.isLazyHtmlReport()) {
+            return;
+        }
+        long start = System.currentTimeMillis();
+        String hash = SnapshotStore.get().store(snapshot);
+        snapshotHash = hash;
+        long duration = timing.end("Snapshot store", start);
+        buildConsole.println("Kept the merged snapshot in the snapshot store as " + hash + ", in " + Util.getTimeSpanString(duration) + ".");
+        Run<?, ?> run = getContext().get(Run.class);
+        if (run != null) {
+            StoredSnapshotsAction.addTo(run, timing.getName(), hash);
         }
-        createCoverageSnapshots(assemblies, buildConsole);
-        mergeSnapshots();
-        createHTMLReport();
-        createNDependReport();
-        createDetailedXmlReport();
-        return dotCoverStep;
     }
 
-    private void createCoverageSnapshots(@Nonnull FilePath[] assemblies, @Nonnull PrintStream buildConsole) throws IOException, InterruptedException {
+    /**
+     * @return The sharding of the step, or null if the step is not sharded.
+     */
+    @CheckForNull
+    private Sharding createSharding() throws IOException, InterruptedException {
+        if (shardSnapshotFilter != null || !dotCoverStep.isSharded()) {
+            return null;
+        }
+        Run<?, ?> run = getContext().get(Run.class);
+        Map<String, Long> durations = run != null ? ShardingAction.getDurations(run) : Collections.<String, Long>emptyMap();
+        return new Sharding(dotCoverStep.getShardCount(), dotCoverStep.getShardIndex(), durations);
+    }
+
+    /**
+     * Merges the shard snapshots that were brought into the workspace, and generates the reports.
+     */
+    private CompletableFuture<Void> mergeShardSnapshots() throws IOException, InterruptedException {
+        List<FilePath> shardSnapshots = Arrays.asList(workspace.list(shardSnapshotFilter));
+        if (shardSnapshots.isEmpty()) {
+            buildConsole.println("No shard snapshots match " + shardSnapshotFilter + ", skipping DotCover merging and reporting.");
+            return CompletableFuture.completedFuture(null);
+        }
+        buildConsole.println("Merging " + shardSnapshots.size() + " shard snapshot(s).");
+        long start = System.currentTimeMillis();
+        return new SnapshotMerger(this, dotCoverStep.getMergeFanIn(), dotCoverStep.getMergeParallelism(), tempDir)
+                .merge(shardSnapshots, plan.getCombinedSnapshotPath(), buildConsole)
+                .thenCompose(Futures.compose(merged -> {
+                    timing.end("Merge", start);
+                    storeSnapshot(outputDir.child(dotCoverStep.getSnapshotPath()));
+                    return createReports();
+                }));
+    }
+
+    /**
+     * Creates the directories, finds the test assemblies, and writes the dotCover configuration of every batch.
+     *
+     * @return The plan of this execution.
+     */
+    private ExecutionPlan createPlan(@CheckForNull Sharding sharding) throws IOException, InterruptedException {
+        DotCoverInstallation dotCover = DotCoverInstallation.getDefaultInstallation().forNode(workspaceToNode(workspace), listener);
+        FilePath dotCoverTool = workspace.child(dotCover.getHome());
+        FilePath combinedSnapshot = outputDir.child(dotCoverStep.getSnapshotPath());
+        FilePath htmlReport = reportFile(dotCoverStep.getHtmlReportPath());
+        FilePath nDependReport = reportFile(dotCoverStep.getNDependXmlReportPath());
+        FilePath detailedReport = reportFile(dotCoverStep.getDetailedXMLReportPath());
         DotCoverConfigurationBuilder builder = new DotCoverConfigurationBuilder(this);
-        for (FilePath assembly : assemblies) {
-            Document config = builder.buildXmlDocument(assembly);
-            String assemblyName = assembly.getName();
-            String configXmlPath = toAgentPath(outputDir.child(assemblyName + DotCoverStep.CONFIG_XML_NAME));
+        long start = System.currentTimeMillis();
+        ExecutionPlan executionPlan;
+        if (PLAN_PER_CALL) {
+            executionPlan = createPlanPerCall(dotCoverTool, combinedSnapshot, htmlReport, nDependReport, detailedReport, builder, sharding);
+        } else {
+            executionPlan = planOnAgent(dotCoverTool, combinedSnapshot, htmlReport, nDependReport, detailedReport, builder, sharding);
+        }
+        long duration = System.currentTimeMillis() - start;
+        timing.add("Plan: scan for test assemblies", executionPlan.getScanMillis());
+        timing.add("Plan: write DotCover config xml", executionPlan.getConfigWriteMillis());
+        timing.add("Plan: other", Math.max(0, duration - executionPlan.getScanMillis() - executionPlan.getConfigWriteMillis()));
+        return executionPlan;
+    }
+
+    private ExecutionPlan planOnAgent(FilePath dotCoverTool, FilePath combinedSnapshot, @CheckForNull FilePath htmlReport, @CheckForNull FilePath nDependReport,
+                                      @CheckForNull FilePath detailedReport, DotCoverConfigurationBuilder builder, @CheckForNull Sharding sharding) throws IOException, InterruptedException {
+        AssemblyDirCache cache = loadAssemblyDirs();
+        List<String> cachedDirs = cache == null ? null : cache.isFullScanDue() ? Collections.<String>emptyList() : cache.getDirs();
+        ExecutionPlan executionPlan = workspace.act(new ExecutionPlanner(launcher.isUnix(), dotCoverTool.getRemote(), tempDir.getRemote(), outputDir.getRemote(),
+                combinedSnapshot.getRemote(), remoteOrNull(htmlReport), remoteOrNull(nDependReport), remoteOrNull(detailedReport),
+                getAssemblyFilter(), dotCoverStep.getAssemblyExclude(), cachedDirs, cache != null ? cache.getLayout() : null, sharding,
+                dotCoverStep.getBatchSize(), builder, dotCoverStep.isSnapshotCache()));
+        if (cache != null) {
+            saveAssemblyDirs(executionPlan, cache);
+        }
+        for (ExecutionPlan.Batch batch : executionPlan.getBatches()) {
+            buildConsole.println("Wrote DotCover config xml to " + batch.getConfigXmlPath());
+        }
+        return executionPlan;
+    }
+
+    /**
+     * @return The directories where the previous build found test assemblies, or null if the step does not cache them.
+     */
+    @CheckForNull
+    private AssemblyDirCache loadAssemblyDirs() throws IOException, InterruptedException {
+        Run<?, ?> run = getContext().get(Run.class);
+        if (!dotCoverStep.isAssemblyDirCache() || getAssemblyFilter() == null || run == null) {
+            return null;
+        }
+        return AssemblyDirCache.load(run.getParent(), getAssemblyDirCacheKey());
+    }
+
+    private String getAssemblyDirCacheKey() {
+        return AssemblyDirCache.keyOf(getAssemblyFilter(), dotCoverStep.getAssemblyExclude(), dotCoverStep.getCoverageId());
+    }
+
+    /**
+     * Reports whether the cached directories of the test assemblies were used, and caches the directories of this build.
+     *
+     * @param cache The cache that was loaded before the plan was created.
+     */
+    private void saveAssemblyDirs(@Nonnull ExecutionPlan executionPlan, @Nonnull AssemblyDirCache cache) throws IOException, InterruptedException {
+        Run<?, ?> run = getContext().get(Run.class);
+        if (run == null) {
+            return;
+        }
+        List<String> dirs = executionPlan.getAssemblyDirs();
+        if (executionPlan.isCachedScan()) {
+            int cachedBuilds = cache.getCachedBuilds() + 1;
+            AssemblyDirCache.save(run.getParent(), getAssemblyDirCacheKey(), new AssemblyDirCache(dirs, executionPlan.getLayout(), cachedBuilds));
+            buildConsole.println("Found the test assemblies in " + dirs.size() + " directory(ies) cached from an earlier build, without scanning the workspace. "
+                    + "The whole workspace is scanned again in " + Math.max(1, AssemblyDirCache.FULL_SCAN_INTERVAL - cachedBuilds + 1)
+                    + " build(s), or as soon as a project file is added, moved or removed.");
+            return;
+        }
+        if (!cache.getDirs().isEmpty()) {
+            if (cache.isFullScanDue()) {
+                buildConsole.println("Not using the cached test assembly directories: every " + AssemblyDirCache.FULL_SCAN_INTERVAL
+                        + "th build scans the whole workspace for new test projects.");
+            } else if (!Objects.equals(cache.getLayout(), executionPlan.getLayout())) {
+                buildConsole.println("Not using the cached test assembly directories: project files were added, moved or removed since they were cached.");
+            } else {
+                buildConsole.println("Not using the cached test assembly directories: no test assemblies were found in them.");
+            }
+        }
+        if (!dirs.isEmpty()) {
+            AssemblyDirCache.save(run.getParent(), getAssemblyDirCacheKey(), new AssemblyDirCache(dirs, executionPlan.getLayout(), 0));
+            buildConsole.println("Scanned the workspace for test assemblies, and cached the " + dirs.size() + " directory(ies) they are in.");
+        }
+    }
+
+    /**
+     * Creates the same plan as the @{@link ExecutionPlanner}, with one remote call per file. Does not use the cached
+     * directories of the test assemblies.
+     */
+    private ExecutionPlan createPlanPerCall(FilePath dotCoverTool, FilePath combinedSnapshot, @CheckForNull FilePath htmlReport, @CheckForNull FilePath nDependReport,
+                                            @CheckForNull FilePath detailedReport, DotCoverConfigurationBuilder builder, @CheckForNull Sharding sharding) throws IOException, InterruptedException {
+        createDirIfNeeded(workspace);
+        createDirIfNeeded(tempDir, outputDir);
+        String dotCoverToolPath = toAgentPath(dotCoverTool);
+        ExecutionPlan executionPlan = new ExecutionPlan(null, dotCoverToolPath, toAgentPath(combinedSnapshot),
+                agentPathOrNull(htmlReport), agentPathOrNull(nDependReport), agentPathOrNull(detailedReport));
+        long scanStart = System.currentTimeMillis();
+        String assemblyFilter = getAssemblyFilter();
+        FilePath[] assemblies = assemblyFilter != null ? workspace.list(assemblyFilter, dotCoverStep.getAssemblyExclude()) : new FilePath[0];
+        if (sharding != null) {
+            assemblies = sharding.select(workspace.getRemote(), assemblies);
+        }
+        long configStart = System.currentTimeMillis();
+        for (List<FilePath> batch : toBatches(assemblies, dotCoverStep.getBatchSize())) {
+            Document config = builder.buildXmlDocument(batch);
+            String batchName = DotCoverConfigurationBuilder.getBatchName(batch);
+            String configXmlPath = toAgentPath(tempDir.child(batchName + DotCoverStep.CONFIG_XML_NAME));
             buildConsole.println("---------------------------------------------------------------------------------------");
             buildConsole.println("Generating DotCover config xml and writing it to " + configXmlPath);
             buildConsole.println("---------------------------------------------------------------------------------------");
             writeConfig(config, configXmlPath);
-            buildConsole.println("---------------------------------------------------------------------------------------");
-            buildConsole.println("Running DotCover testing for test assembly: " + assemblyName);
-            buildConsole.println("---------------------------------------------------------------------------------------");
-            launchDotCover("Cover", configXmlPath); // Generate coverage information
+            String cacheKey = dotCoverStep.isSnapshotCache() ? SnapshotCache.computeKey(batch, config, dotCoverToolPath) : null;
+            List<String> remotePaths = new ArrayList<>();
+            for (FilePath assembly : batch) {
+                remotePaths.add(assembly.getRemote());
+            }
+            executionPlan.addBatch(new ExecutionPlan.Batch(remotePaths, batchName, configXmlPath, builder.getSnapshot(batch).getRemote(), cacheKey));
         }
+        executionPlan.setTimings(configStart - scanStart, System.currentTimeMillis() - configStart);
+        return executionPlan;
+    }
+
+    /**
+     * @return The glob of the test assemblies to cover, or null if this execution only merges shard snapshots.
+     */
+    @CheckForNull
+    private String getAssemblyFilter() {
+        return shardSnapshotFilter == null ? dotCoverStep.getVsTestAssemblyFilter() : null;
+    }
+
+    @CheckForNull
+    private FilePath reportFile(@CheckForNull String reportPath) {
+        return StringUtils.isNotBlank(reportPath) ? outputDir.child(reportPath) : null;
+    }
+
+    @CheckForNull
+    private static String remoteOrNull(@CheckForNull FilePath file) {
+        return file == null ? null : file.getRemote();
+    }
+
+    @CheckForNull
+    private String agentPathOrNull(@CheckForNull FilePath file) throws IOException, InterruptedException {
+        return file == null ? null : toAgentPath(file);
+    }
+
+    /**
+     * Covers the test assemblies of every batch that is not in the snapshot cache.
+     *
+     * @return A future with the snapshots of the batches that were covered or restored from the cache, without the ones
+     * that were dropped because they timed out.
+     */
+    private CompletableFuture<List<FilePath>> createCoverageSnapshots(@Nonnull PrintStream buildConsole, @CheckForNull PipelinedMerger pipelinedMerger) throws IOException, InterruptedException {
+        SnapshotCache cache = dotCoverStep.isSnapshotCache() ? createSnapshotCache() : null;
+        Run<?, ?> run = getContext().get(Run.class);
+        Map<String, Long> history = run != null ? DurationHistory.load(run.getParent()) : Collections.<String, Long>emptyMap();
+        long averageDuration = DurationHistory.average(history);
+        List<WorkerPool.Task> coverRuns = new ArrayList<>();
+        Map<String, Long> durations = new ConcurrentHashMap<>();
+        AtomicLong predictedTotal = new AtomicLong();
+        AtomicLong actualTotal = new AtomicLong();
+        List<FilePath> snapshots = Collections.synchronizedList(new ArrayList<>());
+        List<String> droppedAssemblies = Collections.synchronizedList(new ArrayList<>());
+        int cacheHits = 0;
+        for (ExecutionPlan.Batch batch : orderLongestFirst(plan.getBatches(), history, averageDuration)) {
+            List<FilePath> assemblies = batch.getAssemblies(workspace);
+            List<String> paths = relativePaths(assemblies);
+            String assemblyNames = assemblyNames(assemblies);
+            FilePath snapshot = batch.getSnapshot(workspace);
+            String cacheKey = batch.getCacheKey();
+            String batchKey = String.join(";", paths);
+            String completedSnapshot = completedSnapshots.get(batchKey);
+            if (completedSnapshot != null && workspace.child(completedSnapshot).exists()) {
+                // possibly in a temp directory that was given up, which still holds the finished snapshots
+                buildConsole.println("Test assembly " + assemblyNames + " was covered before the restart, skipping DotCover testing.");
+                snapshots.add(workspace.child(completedSnapshot));
+                if (pipelinedMerger != null) {
+                    pipelinedMerger.add(workspace.child(completedSnapshot));
+                }
+                continue;
+            }
+            if (cache != null && cacheKey != null) {
+                long restoreStart = System.currentTimeMillis();
+                boolean restored = cache.restore(cacheKey, snapshot);
+                timing.end("Snapshot cache lookup " + batch.getName(), restoreStart);
+                if (restored) {
+                    buildConsole.println("Snapshot cache hit for test assembly " + assemblyNames + ", skipping DotCover testing.");
+                    cacheHits++;
+                    completedSnapshots.put(batchKey, snapshot.getRemote());
+                    snapshots.add(snapshot);
+                    if (pipelinedMerger != null) {
+                        pipelinedMerger.add(snapshot);
+                    }
+                    continue;
+                }
+                buildConsole.println("Snapshot cache miss for test assembly " + assemblyNames + ".");
+            }
+            String configXmlPath = batch.getConfigXmlPath();
+            coverRuns.add(console -> {
+                console.println("---------------------------------------------------------------------------------------");
+                console.println("Running DotCover testing for test assembly: " + assemblyNames);
+                console.println("---------------------------------------------------------------------------------------");
+                long start = System.currentTimeMillis();
+                return cover(console, configXmlPath, snapshot, assemblyNames, 0).thenCompose(Futures.compose(covered -> {
+                    if (!covered) {
+                        timing.end("Cover " + batch.getName() + " (dropped)", start);
+                        droppedAssemblies.addAll(paths);
+                        return CompletableFuture.completedFuture(null);
+                    }
+                    long duration = timing.end("Cover " + batch.getName(), start);
+                    for (String path : paths) {
+                        durations.put(path, duration / paths.size());
+                    }
+                    actualTotal.addAndGet(duration);
+                    if (!history.isEmpty()) {
+                        long predicted = DurationHistory.predict(history, paths, averageDuration);
+                        predictedTotal.addAndGet(predicted);
+                        console.println("Covered " + assemblyNames + " in " + Util.getTimeSpanString(duration) + ", predicted " + Util.getTimeSpanString(predicted) + ".");
+                    } else {
+                        console.println("Covered " + assemblyNames + " in " + Util.getTimeSpanString(duration) + ".");
+                    }
+                    if (cache != null && cacheKey != null) {
+                        cache.store(cacheKey, snapshot);
+                    }
+                    completedSnapshots.put(batchKey, snapshot.getRemote());
+                    snapshots.add(snapshot);
+                    if (pipelinedMerger != null) {
+                        pipelinedMerger.add(snapshot);
+                    }
+                    return CompletableFuture.completedFuture(null);
+                }));
+            });
+        }
+        if (cache != null) {
+            buildConsole.println("Snapshot cache: " + cacheHits + " hit(s), " + coverRuns.size() + " miss(es).");
+        }
+        int parallelism = resolveParallelism();
+        if (parallelism > 1) {
+            buildConsole.println("Running DotCover " + coverRuns.size() + " time(s), " + parallelism + " at a time.");
+        }
+        return new WorkerPool(parallelism, buildConsole).runAll(coverRuns).thenCompose(Futures.compose(covered -> {
+            if (!coverRuns.isEmpty() && !history.isEmpty()) {
+                buildConsole.println("DotCover testing took " + Util.getTimeSpanString(actualTotal.get()) + " in total, predicted "
+                        + Util.getTimeSpanString(predictedTotal.get()) + ".");
+            }
+            if (run != null) {
+                DurationHistory.record(run.getParent(), durations);
+            }
+            if (!droppedAssemblies.isEmpty()) {
+                buildConsole.println("---------------------------------------------------------------------------------------");
+                buildConsole.println("The following test assemblies timed out and were DROPPED from the merged coverage:");
+                for (String droppedAssembly : droppedAssemblies) {
+                    buildConsole.println("  " + droppedAssembly);
+                }
+                buildConsole.println("---------------------------------------------------------------------------------------");
+                if (snapshots.isEmpty()) {
+                    throw new IllegalStateException("All test assemblies timed out, there is no coverage to merge.");
+                }
+            }
+            return CompletableFuture.completedFuture(new ArrayList<>(snapshots));
+        }));
+    }
+
+    /**
+     * Covers the test assemblies of a batch, and covers them again if DotCover times out, as often as the step allows.
+     *
+     * @param attempt The number of times the batch timed out before.
+     * @return A future that is true if the batch was covered, false if it timed out every time.
+     */
+    private CompletableFuture<Boolean> cover(@Nonnull PrintStream console, @Nonnull String configXmlPath, @Nonnull FilePath snapshot, @Nonnull String assemblyNames, int attempt) {
+        long timeout = coverTimeoutUnit.toMillis(dotCoverStep.getCoverTimeout());
+        return launchDotCover(console, timeout, "Cover", configXmlPath).handle((exitCode, failure) -> { // Generate coverage information
+            if (failure == null) {
+                return CompletableFuture.completedFuture(true);
+            }
+            Throwable cause = Futures.unwrap(failure);
+            if (!(cause instanceof TimeoutException)) {
+                return Futures.<Boolean>failed(cause);
+            }
+            try {
+                snapshot.delete(); // a killed DotCover may leave an incomplete snapshot behind
+            } catch (IOException | InterruptedException e) {
+                return Futures.<Boolean>failed(e);
+            }
+            if (attempt >= dotCoverStep.getCoverRetries()) {
+                console.println(cause.getMessage() + " Dropping " + assemblyNames + " from the merged coverage.");
+                return CompletableFuture.completedFuture(false);
+            }
+            console.println(cause.getMessage() + " Retrying " + assemblyNames + " (retry " + (attempt + 1) + " of " + dotCoverStep.getCoverRetries() + ").");
+            return cover(console, configXmlPath, snapshot, assemblyNames, attempt + 1);
+        }).thenCompose(Function.identity());
+    }
+
+    /**
+     * Orders the batches by their predicted duration, longest first, so that a long batch does not run alone at the end
+     * while the other workers are idle. Without any known durations, the batches keep their order.
+     */
+    private List<ExecutionPlan.Batch> orderLongestFirst(@Nonnull List<ExecutionPlan.Batch> batches, @Nonnull Map<String, Long> history, long averageDuration) {
+        List<ExecutionPlan.Batch> ordered = new ArrayList<>(batches);
+        if (history.isEmpty()) {
+            return ordered;
+        }
+        Map<ExecutionPlan.Batch, Long> predictions = new HashMap<>();
+        for (ExecutionPlan.Batch batch : ordered) {
+            predictions.put(batch, DurationHistory.predict(history, relativePaths(batch.getAssemblies(workspace)), averageDuration));
+        }
+        ordered.sort((first, second) -> Long.compare(predictions.get(second), predictions.get(first)));
+        return ordered;
+    }
+
+    private List<String> relativePaths(@Nonnull List<FilePath> assemblies) {
+        List<String> paths = new ArrayList<>();
+        for (FilePath assembly : assemblies) {
+            paths.add(Sharding.relativePath(workspace.getRemote(), assembly.getRemote()));
+        }
+        return paths;
+    }
+
+    /**
+     * Splits the test assemblies into batches that are covered by one dotCover process each.
+     *
+     * @param assemblies The test assemblies.
+     * @param batchSize  The maximum number of test assemblies in a batch.
+     * @return The batches, in the order of the test assemblies.
+     */
+    static List<List<FilePath>> toBatches(@Nonnull FilePath[] assemblies, int batchSize) {
+        List<List<FilePath>> batches = new ArrayList<>();
+        int size = Math.max(1, batchSize);
+        for (int start = 0; start < assemblies.length; start += size) {
+            batches.add(new ArrayList<>(Arrays.asList(assemblies).subList(start, Math.min(start + size, assemblies.length))));
+        }
+        return batches;
+    }
+
+    private static String assemblyNames(@Nonnull List<FilePath> batch) {
+        List<String> names = new ArrayList<>();
+        for (FilePath assembly : batch) {
+            names.add(assembly.getName());
+        }
+        return String.join(", ", names);
+    }
+
+    @CheckForNull
+    private SnapshotCache createSnapshotCache() {
+        FilePath nodeRoot = workspaceToNode(workspace).getRootPath();
+        if (nodeRoot == null) {
+            buildConsole.println("The node of the workspace is offline, not using the snapshot cache.");
+            return null;
+        }
+        long maxSizeInBytes = DotCoverConfiguration.getInstance().getSnapshotCacheSize() * 1024L * 1024L;
+        return new SnapshotCache(nodeRoot.child(SnapshotCache.CACHE_DIR_NAME), maxSizeInBytes);
+    }
+
+    /**
+     * Resolves the parallelism of the step to a number of concurrent dotCover processes.
+     *
+     * @return The number of test assemblies to cover at the same time.
+     * @throws IOException          If the number of processors on the agent cannot be read.
+     * @throws InterruptedException If interrupted while reading the number of processors on the agent.
+     */
+    int resolveParallelism() throws IOException, InterruptedException {
+        String parallelism = dotCoverStep.getParallelism();
+        if (StringUtils.isBlank(parallelism)) {
+            return 1;
+        }
+        if (DotCoverStep.DescriptorImpl.PARALLELISM_AUTO.equalsIgnoreCase(parallelism)) {
+            return workspace.act(new AvailableProcessors());
+        }
+        try {
+            int value = Integer.parseInt(parallelism);
+            if (value > 0) {
+                return value;
+            }
+        } catch (NumberFormatException e) {
+            // reported below
+        }
+        throw new IllegalArgumentException("Invalid parallelism '" + parallelism + "'. Must be a positive number or '" + DotCoverStep.DescriptorImpl.PARALLELISM_AUTO + "'.");
     }
 
     private void writeConfig(Document config, String configXmlPath) throws IOException, InterruptedException {
         FilePath destination = workspace.child(configXmlPath);
         try (OutputStream out = destination.write()) {
-            OutputFormat format = OutputFormat.createPrettyPrint();
-            XMLWriter writer = new XMLWriter(out, format);
-            writer.write(config);
-            writer.close();
+            writeConfig(config, out);
         }
     }
 
-    private void mergeSnapshots() throws IOException, InterruptedException {
-        FilePath[] snapshotsToMerge = tempDir.list("**/*" + DotCoverStep.SNAPSHOT_MERGE_SUFFIX);
-        List<String> snapshotPaths = new ArrayList<>();
-        for (FilePath filePath : snapshotsToMerge) {
-            snapshotPaths.add(toAgentPath(filePath));
-        }
-        String mergedSnapshotPaths = String.join(";", snapshotPaths);
-        if (!Strings.isNullOrEmpty(mergedSnapshotPaths)) {
-            launchDotCover("Merge", "/Source=" + mergedSnapshotPaths, "/Output=" + combinedSnapshotPath);
+    static void writeConfig(@Nonnull Document config, @Nonnull OutputStream out) throws IOException {
+        OutputFormat format = OutputFormat.createPrettyPrint();
+        XMLWriter writer = new XMLWriter(out, format);
+        writer.write(config);
+        writer.flush();
+    }
+
+    private CompletableFuture<Void> mergeSnapshots(@CheckForNull PipelinedMerger pipelinedMerger, @Nonnull List<FilePath> snapshots, @Nonnull String mergedSnapshotPath) {
+        CompletableFuture<List<FilePath>> snapshotsToMerge = pipelinedMerger != null ? pipelinedMerger.finish() : CompletableFuture.completedFuture(snapshots);
+        SnapshotMerger merger = new SnapshotMerger(this, dotCoverStep.getMergeFanIn(), dotCoverStep.getMergeParallelism(), tempDir);
+        return snapshotsToMerge.thenCompose(toMerge -> Futures.andFinally(merger.merge(toMerge, mergedSnapshotPath, buildConsole), () -> {
+            for (FilePath snapshot : toMerge) {
+                if (snapshot.getName().endsWith(SnapshotMerger.INTERMEDIATE_SNAPSHOT_SUFFIX)) {
+                    snapshot.delete();
+                }
+            }
+        }));
+    }
+
+    /**
+     * Records the stored snapshot in the @{@link LazyHtmlReportAction} of the build instead of generating the HTML report,
+     * which is then generated on the node of the workspace when it is first opened.
+     */
+    private void addLazyHtmlReport(@Nonnull String hash) throws IOException, InterruptedException {
+        Run<?, ?> run = getContext().get(Run.class);
+        if (run != null) {
+            LazyHtmlReportAction.addTo(run, timing.getName(), hash, workspaceToNode(workspace).getNodeName());
+            buildConsole.println("The HTML report is generated when it is first opened from " + LazyHtmlReportAction.URL_NAME + " of the build.");
         }
     }
 
-    private void createDetailedXmlReport() throws IOException, InterruptedException {
+    /**
+     * Generates the requested reports from the merged snapshot. Several reports are generated in one dotCover pass when the
+     * installed dotCover accepts several report types at once, and concurrently in separate passes otherwise.
+     */
+    private CompletableFuture<Void> createReports() throws IOException, InterruptedException {
+        Map<String, String> reports = new LinkedHashMap<>(); // report type -> agent path of the report
+        if (dotCoverStep.isLazyHtmlReport() && snapshotHash != null) {
+            addLazyHtmlReport(snapshotHash);
+        } else if (!Strings.isNullOrEmpty(dotCoverStep.getHtmlReportPath())) {
+            reports.put(REPORT_TYPE_HTML, plan.getHtmlReportPath());
+        }
+        if (!Strings.isNullOrEmpty(dotCoverStep.getNDependXmlReportPath())) {
+            reports.put("NDependXML", plan.getNDependReportPath());
+        }
         if (!Strings.isNullOrEmpty(dotCoverStep.getDetailedXMLReportPath())) {
-            launchDotCover("Report", "/ReportType=DetailedXML", "/Source=" + combinedSnapshotPath, "/Output=" + agentDetailedReportPath);
+            reports.put(REPORT_TYPE_DETAILED_XML, plan.getDetailedReportPath());
+        }
+        if (reports.isEmpty()) {
+            return CompletableFuture.completedFuture(null);
         }
+
+        CompletableFuture<Boolean> onePass = reports.size() == 1 ? CompletableFuture.completedFuture(false) : createReportsInOnePass(reports);
+        return onePass.thenCompose(generated -> {
+            if (generated) {
+                return CompletableFuture.<Void>completedFuture(null);
+            }
+            List<WorkerPool.Task> reportRuns = new ArrayList<>();
+            for (Map.Entry<String, String> report : reports.entrySet()) {
+                reportRuns.add(console -> {
+                    long start = System.currentTimeMillis();
+                    return launchDotCover(console, "Report", "/ReportType=" + report.getKey(), "/Source=" + plan.getCombinedSnapshotPath(), "/Output=" + report.getValue())
+                            .thenApply(exitCode -> {
+                                long duration = timing.end("Report " + report.getKey(), start);
+                                console.println("Generated the " + report.getKey() + " report in " + Util.getTimeSpanString(duration) + ".");
+                                return null;
+                            });
+                });
+            }
+            return new WorkerPool(reportRuns.size(), buildConsole).runAll(reportRuns);
+        }).thenCompose(Futures.compose(generated -> {
+            if (reports.containsKey(REPORT_TYPE_HTML) && dotCoverStep.isArchiveHtmlReport()) {
+                archiveHtmlReport(plan.getHtmlReportPath());
+            } else if (reports.containsKey(REPORT_TYPE_HTML)) {
+                relaxJavaScriptSecurity(plan.getHtmlReportPath());
+            }
+            if (reports.containsKey(REPORT_TYPE_DETAILED_XML)) {
+                summarizeDetailedXmlReport();
+            }
+            return CompletableFuture.completedFuture(null);
+        }));
     }
 
-    private void createNDependReport() throws IOException, InterruptedException {
-        if (!Strings.isNullOrEmpty(dotCoverStep.getNDependXmlReportPath())) {
-            launchDotCover("Report", "/ReportType=NDependXML", "/Source=" + combinedSnapshotPath, "/Output=" + agentNDependReportPath);
+    /**
+     * Reads the coverage totals, and the line coverage index if the step asks for it, from the DetailedXML report on the
+     * agent, prints the totals and attaches both to the build.
+     */
+    private void summarizeDetailedXmlReport() throws IOException, InterruptedException {
+        long start = System.currentTimeMillis();
+        FilePath report = outputDir.child(dotCoverStep.getDetailedXMLReportPath());
+        FilePath lineIndex = dotCoverStep.isLineCoverage() ? tempDir.child("line-coverage.idx") : null;
+        CoverageTotals summary = report.act(new DetailedXmlParser.Summarize(timing.getName(), lineIndex != null ? lineIndex.getRemote() : null));
+        timing.end("Summarize DetailedXML", start);
+        buildConsole.println("Covered " + summary + ".");
+        for (CoverageTotals assembly : summary.getChildren()) {
+            buildConsole.println("  " + assembly.getName() + ": " + assembly);
         }
+        Run<?, ?> run = getContext().get(Run.class);
+        if (run != null) {
+            CoverageSummaryAction.addTo(run, summary);
+            if (lineIndex != null) {
+                String coverageId = getCoverageId();
+                compareCoverage(run, coverageId, LineCoverageAction.addTo(run, coverageId, lineIndex));
+            }
+        }
+        coverageSummary = summary;
+    }
+
+    /**
+     * @return The id that tells the line coverage of this step apart from the other steps of the build: the coverage id of
+     * the step, or the name of the step execution if it has none.
+     */
+    private String getCoverageId() {
+        return dotCoverStep.getCoverageId() != null ? dotCoverStep.getCoverageId() : timing.getName();
     }
 
-    public int launchDotCover(String... arguments) throws IOException, InterruptedException {
+    /**
+     * Compares the line coverage with the same step of the reference build, prints the files that lost coverage and attaches
+     * the changes to the build. The comparison is skipped when several steps of either build have the coverage id, since
+     * it is not known which of them is the same step.
+     *
+     * @param coverageId The id of the line coverage of the step.
+     * @param position   The position of the line coverage of the step in the build.
+     */
+    private void compareCoverage(@Nonnull Run<?, ?> run, @Nonnull String coverageId, int position) {
+        LineCoverageAction action = run.getAction(LineCoverageAction.class);
+        if (action != null && action.isAmbiguous(coverageId)) {
+            buildConsole.println("Not comparing the coverage: several DotCover steps of this build have the coverage id '" + coverageId
+                    + "'. Give every step its own coverageId to compare their coverage.");
+            return;
+        }
+        Run<?, ?> reference = CoverageDiff.findReference(run, coverageId, dotCoverStep.getCoverageReferenceJob());
+        if (reference == null) {
+            buildConsole.println("No earlier build with the line coverage of " + coverageId + " to compare the coverage with.");
+            return;
+        }
+        LineCoverageAction referenceAction = reference.getAction(LineCoverageAction.class);
+        if (referenceAction != null && referenceAction.isAmbiguous(coverageId)) {
+            buildConsole.println("Not comparing the coverage: several DotCover steps of " + reference.getFullDisplayName() + " have the coverage id '"
+                    + coverageId + "'. Give every step its own coverageId to compare their coverage.");
+            return;
+        }
+        long start = System.currentTimeMillis();
+        CoverageDiff diff;
+        try {
+            diff = CoverageDiff.compare(coverageId, reference, run, position);
+        } catch (IOException e) {
+            buildConsole.println("Not comparing the coverage with " + reference.getFullDisplayName() + ", its line coverage cannot be read: " + e);
+            return;
+        }
+        timing.end("Coverage diff", start);
+        List<CoverageDiff.FileChange> decreases = diff.getDecreases();
+        buildConsole.println("Compared the coverage with " + diff.getReferenceBuild() + ": coverage went down in " + decreases.size() + " file(s), "
+                + diff.getChanges().size() + " file(s) changed and " + diff.getUnchangedFiles() + " file(s) did not change.");
+        for (CoverageDiff.FileChange decrease : decreases) {
+            buildConsole.println("  " + decrease.getName() + ": " + decrease.getPreviousPercent() + "% -> " + decrease.getPercent() + "%");
+        }
+        CoverageDiffAction.addTo(run, diff);
+    }
+
+    /**
+     * Generates all reports in one dotCover pass, unless the installed dotCover is known to only accept one report type at a
+     * time.
+     *
+     * @return A future that is true if the reports were generated, false if dotCover does not accept several report types
+     * at once.
+     */
+    private CompletableFuture<Boolean> createReportsInOnePass(@Nonnull Map<String, String> reports) {
+        String installationKey = workspaceToNode(workspace).getNodeName() + "|" + plan.getDotCoverToolPath();
+        if (Boolean.FALSE.equals(MULTI_REPORT_SUPPORT.get(installationKey))) {
+            return CompletableFuture.completedFuture(false);
+        }
+        String reportTypes = String.join(",", reports.keySet());
+        long start = System.currentTimeMillis();
+        int tailLines = Math.max(dotCoverStep.getFailureTailLines(), REPORT_TYPE_CHECK_LINES);
+        return runDotCover(buildConsole, 0, tailLines, "Report", "/ReportType=" + reportTypes, "/Source=" + plan.getCombinedSnapshotPath(),
+                "/Output=" + String.join(";", reports.values()))
+                .thenApply(status -> {
+                    int exitCode = status.getExitCode();
+                    if (exitCode != 0) {
+                        if (!isReportTypeRejected(status.getTail(), reportTypes)) {
+                            throw new IllegalStateException("The launcher exited with a non-zero exit code. Exit code: " + exitCode);
+                        }
+                        MULTI_REPORT_SUPPORT.put(installationKey, Boolean.FALSE);
+                        buildConsole.println("DotCover did not accept several report types in one pass, generating the reports separately.");
+                        return false;
+                    }
+                    MULTI_REPORT_SUPPORT.put(installationKey, Boolean.TRUE);
+                    long duration = timing.end("Report " + reportTypes, start);
+                    buildConsole.println("Generated the " + reportTypes + " reports in one pass in " + Util.getTimeSpanString(duration) + ".");
+                    return true;
+                });
+    }
+
+    /**
+     * @param output      The last lines of the output of a failed Report run.
+     * @param reportTypes The report types that were passed to the run, separated by commas.
+     * @return Whether dotCover failed because it does not accept the report types in one run, and not for another reason,
+     * such as a missing or corrupt snapshot or a full disk. Only a line that rejects the report type parameter or value counts;
+     * lines that echo the command line name the report types whatever went wrong, so they are skipped.
+     */
+    static boolean isReportTypeRejected(@Nonnull List<String> output, @Nonnull String reportTypes) {
+        for (String line : output) {
+            String lowerCase = line.toLowerCase(Locale.ENGLISH);
+            if (lowerCase.contains("/reporttype=")) {
+                continue;
+            }
+            if ((REPORT_TYPE_PARAMETER.matcher(lowerCase).find() || line.contains(reportTypes)) && REPORT_TYPE_REJECTED.matcher(lowerCase).find()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public CompletableFuture<Integer> launchDotCover(String... arguments) {
+        return launchDotCover(buildConsole, arguments);
+    }
+
+    public CompletableFuture<Integer> launchDotCover(@Nonnull PrintStream console, String... arguments) {
+        return launchDotCover(console, 0, arguments);
+    }
+
+    /**
+     * @param timeout The time in milliseconds after which DotCover is killed, or 0 to wait as long as it takes.
+     * @return A future with the exit code, which fails with a @{@link TimeoutException} if DotCover did not finish in time and
+     * was killed, with all processes it started.
+     */
+    private CompletableFuture<Integer> launchDotCover(@Nonnull PrintStream console, long timeout, String... arguments) {
+        int tailLines = dotCoverStep.isQuietConsole() ? dotCoverStep.getFailureTailLines() : 0;
+        return runDotCover(console, timeout, tailLines, arguments).thenApply(status -> {
+            int exitCode = status.getExitCode();
+            if (exitCode != 0) {
+                throw new IllegalStateException("The launcher exited with a non-zero exit code. Exit code: " + exitCode);
+            }
+            return exitCode;
+        });
+    }
+
+    /**
+     * Runs DotCover once a permit of the @{@link ProcessLimiter} of the node is granted, and releases the permit when
+     * DotCover exits.
+     *
+     * @param tailLines The number of last lines of the output to return with the exit code.
+     */
+    private CompletableFuture<DurableProcess.Status> runDotCover(@Nonnull PrintStream console, long timeout, int tailLines, String... arguments) {
+        Node node = workspaceToNode(workspace);
+        String nodeName = StringUtils.defaultIfEmpty(node.getNodeName(), "the built-in node");
+        ProcessLimiter limiter = ProcessLimiter.forNode(node.getNodeName());
+        int limit = getProcessLimit(node);
+        long waitStart = System.currentTimeMillis();
+        CompletableFuture<Void> permit = limiter.acquire(limit);
+        boolean waiting = !permit.isDone();
+        if (waiting) {
+            console.println("Waiting for one of the " + limit + " DotCover process slot(s) of " + nodeName + ".");
+        }
+        return permit.thenCompose(granted -> {
+            if (waiting) {
+                long waited = System.currentTimeMillis() - waitStart;
+                console.println("Waited " + Util.getTimeSpanString(waited) + " for a DotCover process slot of " + nodeName + ".");
+            }
+            return startDotCover(console, timeout, tailLines, arguments);
+        }).whenComplete((status, failure) -> limiter.release(getProcessLimit(node)));
+    }
+
+    /**
+     * @return The maximum number of DotCover processes that run on the node at the same time, or 0 for no limit.
+     */
+    static int getProcessLimit(@Nonnull Node node) {
+        DotCoverNodeProperty property = node.getNodeProperty(DotCoverNodeProperty.class);
+        return property != null ? property.getMaxConcurrentProcesses() : DotCoverConfiguration.getInstance().getMaxConcurrentProcesses();
+    }
+
+    /**
+     * Starts DotCover on the agent and polls it until it exits. Unless the console is quiet, the output is copied to the
+     * console as it is polled; otherwise it stays in a log file on the agent, and only a summary line is printed, followed
+     * by the last lines of the output if DotCover fails or times out.
+     */
+    private CompletableFuture<DurableProcess.Status> startDotCover(@Nonnull PrintStream console, long timeout, int tailLines, String... arguments) {
+        Throwable cause = stopCause;
+        if (cause != null) {
+            return Futures.failed(cause);
+        }
         ArgumentListBuilder builder = new ArgumentListBuilder();
-        builder.add(dotCoverToolPath);
+        builder.add(plan.getDotCoverToolPath());
         builder.add(arguments);
+        String logName = logNameOf(arguments);
+        boolean quiet = dotCoverStep.isQuietConsole();
+        FilePath logFile = quiet ? tempDir.child(LOG_DIR_NAME).child(logName + ".log") : tempDir.child(logName + ".log");
+        try {
+            FilePath logDir = logFile.getParent();
+            if (logDir != null) {
+                logDir.mkdirs();
+            }
+            Controller controller = DurableProcess.task(builder.toList(), logFile.getRemote(), launcher.isUnix()).launch(envVars, workspace, launcher, listener);
+            RunningProcess process = new RunningProcess(controller, logName, logFile, console, timeout, quiet, tailLines);
+            runningProcesses.add(process);
+            runningTasks.put(logFile.getRemote(), controller);
+            if (stopCause != null) {
+                process.kill(); // stopped while starting
+            }
+            process.schedulePoll(MIN_POLL_INTERVAL);
+            return process.result.whenComplete((status, failure) -> {
+                runningProcesses.remove(process);
+                runningTasks.remove(logFile.getRemote());
+            });
+        } catch (IOException | InterruptedException | RuntimeException e) {
+            return Futures.failed(e);
+        }
+    }
 
-        int exitCode = launcher
-                .launch()
-                .cmds(builder)
-                .envs(envVars)
-                .stdout(buildConsole)
-                .stderr(buildConsole)
-                .pwd(workspace)
-                .start()
-                .join();
-
-        if (exitCode != 0) {
-            throw new IllegalStateException("The launcher exited with a non-zero exit code. Exit code: " + exitCode);
+    /**
+     * @return The name of the log file of a DotCover run: the batch name for a Cover run, a sequence number otherwise.
+     */
+    private String logNameOf(String... arguments) {
+        String command = arguments[0];
+        if ("Cover".equals(command) && arguments.length > 1) {
+            String configXmlPath = arguments[1];
+            String configXmlName = configXmlPath.substring(configXmlPath.lastIndexOf('/') + 1);
+            return command + "-" + StringUtils.removeEnd(configXmlName, DotCoverStep.CONFIG_XML_NAME);
         }
-        return exitCode;
+        return command + "-" + logSequence.incrementAndGet();
     }
 
-    private void createHTMLReport() throws IOException, InterruptedException {
-        if (!Strings.isNullOrEmpty(dotCoverStep.getHtmlReportPath())) {
-            launchDotCover("Report", "/ReportType=HTML", "/Source=" + combinedSnapshotPath, "/Output=" + agentHtmlReportPath);
-            relaxJavaScriptSecurity(agentHtmlReportPath);
+    /**
+     * Copies the HTML report gzip compressed into the build, where the @{@link ArchivedHtmlReportAction} serves it with the
+     * iframe sandbox applied, so the report files in the workspace are not rewritten.
+     */
+    private void archiveHtmlReport(@Nonnull String htmlReportPath) throws IOException, InterruptedException {
+        FilePath report = workspace.child(htmlReportPath);
+        FilePath reportDir = report.getParent();
+        Run<?, ?> run = getContext().get(Run.class);
+        if (reportDir == null || run == null) {
+            return;
         }
+        long start = System.currentTimeMillis();
+        FilePath archiveDir = tempDir.child("html-report");
+        int files = reportDir.act(new HtmlReportArchiver(archiveDir.getRemote(), report.getName()));
+        ArchivedHtmlReportAction.addTo(run, timing.getName(), archiveDir, report.getName());
+        long duration = timing.end("HTML archive", start);
+        buildConsole.println("Archived " + files + " HTML report file(s) in the build in " + Util.getTimeSpanString(duration) + ", served at "
+                + ArchivedHtmlReportAction.URL_NAME + " of the build.");
     }
 
     private void relaxJavaScriptSecurity(@Nonnull String htmlReportPath) throws IOException, InterruptedException {
-        Charset utf8 = StandardCharsets.UTF_8;
-        FilePath report = workspace.child(htmlReportPath);
-        String content = report.readToString();
-        content = content.replaceAll(DotCoverStep.IFRAME_NO_JAVASCRIPT, DotCoverStep.IFRAME_ALLOW_JAVASCRIPT);
-        report.write(content, utf8.toString());
+        FilePath reportDir = workspace.child(htmlReportPath).getParent();
+        if (reportDir == null) {
+            return;
+        }
+        long start = System.currentTimeMillis();
+        int rewrittenFiles = reportDir.act(new IframeSandboxRewriter());
+        timing.end("HTML rewrite", start);
+        buildConsole.println("Allowed JavaScript in the source code view of " + rewrittenFiles + " HTML report file(s).");
     }
 
     final String getVsTestToolPath() throws IOException, InterruptedException {
@@ -216,8 +1243,122 @@ public final class DotCoverStepExecution extends SynchronousNonBlockingStepExecu
     final String toAgentPath(@Nonnull FilePath filePath) throws IOException, InterruptedException {
         if (launcher.isUnix()) {
             return filePath.getRemote();
-        } else {
-            return filePath.toURI().getPath().substring(1).replace("\\", "/");
+        }
+        String workspacePath = plan != null ? plan.getWorkspacePath() : null;
+        String workspaceRemote = workspace.getRemote();
+        String remote = filePath.getRemote();
+        if (workspacePath != null && remote.length() > workspaceRemote.length() && remote.startsWith(workspaceRemote)
+                && (remote.charAt(workspaceRemote.length()) == '\\' || remote.charAt(workspaceRemote.length()) == '/')) {
+            // Files in the workspace are resolved locally against the workspace path that the planner resolved on the agent.
+            return StringUtils.removeEnd(workspacePath, "/") + remote.substring(workspaceRemote.length()).replace("\\", "/");
+        }
+        return filePath.toURI().getPath().substring(1).replace("\\", "/");
+    }
+
+    /**
+     * A DotCover process on the agent that is polled until it exits. Every poll runs on a remoting thread, scheduled by the
+     * Jenkins timer, and polls less often while the process prints nothing.
+     */
+    private final class RunningProcess {
+
+        private final Controller controller;
+        private final String name;
+        private final FilePath logFile;
+        private final PrintStream console;
+        private final long timeout;
+        private final boolean quiet;
+        private final int tailLines;
+        private final long start = System.currentTimeMillis();
+        private final CompletableFuture<DurableProcess.Status> result = new CompletableFuture<>();
+        private long offset;
+        private long interval = MIN_POLL_INTERVAL;
+        private volatile boolean timedOut;
+
+        RunningProcess(Controller controller, String name, FilePath logFile, PrintStream console, long timeout, boolean quiet, int tailLines) {
+            this.controller = controller;
+            this.name = name;
+            this.logFile = logFile;
+            this.console = console;
+            this.timeout = timeout;
+            this.quiet = quiet;
+            this.tailLines = tailLines;
+        }
+
+        void schedulePoll(long delay) {
+            Timer.get().schedule(() -> Computer.threadPoolForRemoting.submit(this::poll), delay, TimeUnit.MILLISECONDS);
+        }
+
+        /**
+         * Kills the process with all processes it started; it is still polled until it exited.
+         */
+        void kill() throws IOException, InterruptedException {
+            controller.stop(workspace, launcher);
+        }
+
+        private void poll() {
+            try {
+                if (timeout > 0 && !timedOut && System.currentTimeMillis() - start >= timeout) {
+                    timedOut = true;
+                    kill();
+                }
+                Integer exitCode = controller.exitStatus(workspace, launcher, listener);
+                DurableProcess.Status status = logFile.act(new DurableProcess.Poll(exitCode, offset, quiet ? 0 : MAX_OUTPUT_PER_POLL, tailLines, !quiet));
+                byte[] output = status.getOutput();
+                if (output.length > 0) {
+                    console.write(output, 0, output.length);
+                    console.flush();
+                }
+                offset = status.getOffset();
+                if (status.isFinished()) {
+                    controller.cleanup(workspace);
+                    finish(status);
+                    return;
+                }
+                interval = output.length > 0 ? MIN_POLL_INTERVAL : Math.min(MAX_POLL_INTERVAL, interval * 2);
+                schedulePoll(output.length >= MAX_OUTPUT_PER_POLL ? 0 : interval);
+            } catch (IOException | InterruptedException | RuntimeException e) {
+                result.completeExceptionally(e);
+            }
+        }
+
+        private void finish(DurableProcess.Status status) {
+            if (quiet) {
+                String outcome = timedOut ? "was killed after the timeout" : "exited with code " + status.getExitCode();
+                // the log file is in the temp directory, which is deleted when the step finishes
+                String log = dotCoverStep.isArchiveLogs() ? "archived as " + logArtifactDir + "/" + logFile.getName() + " when the step finishes"
+                        : "in " + logFile.getRemote() + " until the step finishes";
+                console.println("DotCover " + name + " " + outcome + " after " + Util.getTimeSpanString(System.currentTimeMillis() - start) + ", "
+                        + status.getLineCount() + " line(s) of output " + log);
+                if (timedOut || status.getExitCode() != 0) {
+                    List<String> tail = status.getTail();
+                    tail = tail.subList(Math.max(0, tail.size() - dotCoverStep.getFailureTailLines()), tail.size());
+                    console.println("Last " + tail.size() + " line(s) of the output:");
+                    for (String line : tail) {
+                        console.println("  " + line);
+                    }
+                }
+            }
+            Throwable cause = stopCause;
+            if (cause != null) {
+                result.completeExceptionally(cause);
+            } else if (timedOut) {
+                result.completeExceptionally(new TimeoutException("DotCover did not finish within " + Util.getTimeSpanString(timeout) + " and was killed."));
+            } else {
+                result.complete(status);
+            }
+        }
+    }
+
+    /**
+     * Reads the number of processors available on the agent.
+     */
+    private static final class AvailableProcessors extends MasterToSlaveCallable<Integer, RuntimeException> {
+
+        private static final long serialVersionUID = 5330207391645178402L;
+
+        @Override
+        public Integer call() {
+            return Runtime.getRuntime().availableProcessors();
         }
     }
 
@@ -0,0 +1,182 @@
+package io.jenkins.plugins.testing;
+
+import hudson.Util;
+import hudson.model.Api;
+import hudson.model.Run;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import javax.annotation.Nonnull;
+import jenkins.model.RunAction2;
+import org.kohsuke.stapler.export.Exported;
+import org.kohsuke.stapler.export.ExportedBean;
+
+/**
+ * The phase timings of the DotCover steps of a build, served at {@code <build>/dotcover/api/json}.
+ */
+@ExportedBean
+public class DotCoverTimingAction implements RunAction2 {
+
+    static final String URL_NAME = "dotcover";
+    private final List<StepTiming> steps = new CopyOnWriteArrayList<>();
+    private transient Run<?, ?> run;
+
+    /**
+     * Adds the timings of a step to the timing action of the build, and attaches the action if it is not attached yet.
+     *
+     * @param run    The build.
+     * @param timing The timings of the step.
+     */
+    static void addTo(@Nonnull Run<?, ?> run, @Nonnull StepTiming timing) {
+        synchronized (run) {
+            DotCoverTimingAction action = run.getAction(DotCoverTimingAction.class);
+            if (action == null) {
+                action = new DotCoverTimingAction();
+                run.addAction(action);
+            }
+            action.steps.add(timing);
+        }
+    }
+
+    @Override
+    public String getIconFileName() {
+        return null;
+    }
+
+    @Override
+    public String getDisplayName() {
+        return "DotCover timings";
+    }
+
+    @Override
+    public String getUrlName() {
+        return URL_NAME;
+    }
+
+    public Api getApi() {
+        return new Api(this);
+    }
+
+    public Run<?, ?> getRun() {
+        return run;
+    }
+
+    /**
+     * @return The timings of the DotCover steps of the build, in the order they finished.
+     */
+    @Exported(inline = true)
+    public List<StepTiming> getSteps() {
+        return Collections.unmodifiableList(steps);
+    }
+
+    @Override
+    public void onAttached(Run<?, ?> run) {
+        this.run = run;
+    }
+
+    @Override
+    public void onLoad(Run<?, ?> run) {
+        this.run = run;
+    }
+
+    /**
+     * The timings of the phases of one DotCover step.
+     */
+    @ExportedBean(defaultVisibility = 2)
+    public static final class StepTiming {
+
+        private static final String TABLE_ROW = "  %-60s %16s";
+        private final String name;
+        private final long startTime;
+        private long durationMillis;
+        private final List<PhaseTiming> phases = new ArrayList<>();
+
+        StepTiming(@Nonnull String name) {
+            this.name = name;
+            this.startTime = System.currentTimeMillis();
+        }
+
+        @Exported
+        public String getName() {
+            return name;
+        }
+
+        @Exported
+        public long getStartTime() {
+            return startTime;
+        }
+
+        @Exported
+        public synchronized long getDurationMillis() {
+            return durationMillis;
+        }
+
+        @Exported(inline = true)
+        public synchronized List<PhaseTiming> getPhases() {
+            return new ArrayList<>(phases);
+        }
+
+        /**
+         * Records a phase that started at the given time and ends now.
+         *
+         * @param phase The name of the phase.
+         * @param start The start time of the phase, from {@link System#currentTimeMillis()}.
+         * @return The duration of the phase in milliseconds.
+         */
+        long end(@Nonnull String phase, long start) {
+            long duration = System.currentTimeMillis() - start;
+            add(phase, duration);
+            return duration;
+        }
+
+        synchronized void add(@Nonnull String phase, long duration) {
+            phases.add(new PhaseTiming(phase, duration));
+        }
+
+        synchronized void finish() {
+            durationMillis = System.currentTimeMillis() - startTime;
+        }
+
+        /**
+         * Prints the phases and their durations as a table.
+         *
+         * @param console The console to print to.
+         */
+        synchronized void print(@Nonnull PrintStream console) {
+            console.println("---------------------------------------------------------------------------------------");
+            console.println("DotCover phase timings of " + name + ":");
+            for (PhaseTiming phase : phases) {
+                console.println(String.format(TABLE_ROW, phase.getName(), Util.getTimeSpanString(phase.getDurationMillis())));
+            }
+            console.println(String.format(TABLE_ROW, "Total", Util.getTimeSpanString(durationMillis)));
+            console.println("---------------------------------------------------------------------------------------");
+        }
+    }
+
+    /**
+     * The time one phase of a DotCover step took.
+     */
+    @ExportedBean(defaultVisibility = 2)
+    public static final class PhaseTiming {
+
+        private final String name;
+        private final long durationMillis;
+
+        PhaseTiming(@Nonnull String name, long durationMillis) {
+            this.name = name;
+            this.durationMillis = durationMillis;
+        }
+
+        @Exported
+        public String getName() {
+            return name;
+        }
+
+        @Exported
+        public long getDurationMillis() {
+            return durationMillis;
+        }
+    }
+}
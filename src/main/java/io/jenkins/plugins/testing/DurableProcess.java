@@ -0,0 +1,196 @@
+package io.jenkins.plugins.testing;
+
+import hudson.remoting.VirtualChannel;
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.Serializable;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.List;
+import javax.annotation.CheckForNull;
+import javax.annotation.Nonnull;
+import jenkins.MasterToSlaveFileCallable;
+import org.jenkinsci.plugins.durabletask.BourneShellScript;
+import org.jenkinsci.plugins.durabletask.DurableTask;
+import org.jenkinsci.plugins.durabletask.WindowsBatchScript;
+
+/**
+ * A process that runs on the agent on its own, with its output written to a log file on the agent.
+ * <p>
+ * The process is launched as a @{@link DurableTask} through the launcher of the step, so it runs in the container and with
+ * the environment that wrappers like {@code withDockerContainer} or {@code container} give the step, and it keeps running
+ * while the controller restarts. The controller polls its exit status with the controller of the task, and reads the new
+ * output from the log file with {@link Poll}. No controller thread waits for the process in between, so a long DotCover run
+ * costs the controller only an occasional remote call.
+ */
+final class DurableProcess {
+
+    private DurableProcess() {
+    }
+
+    /**
+     * @param command The command line.
+     * @param logFile The remote path of the log file, which the output of the command is redirected to.
+     * @param unix    Whether the agent runs a Unix.
+     * @return The task that runs the command.
+     */
+    static DurableTask task(@Nonnull List<String> command, @Nonnull String logFile, boolean unix) {
+        String script = script(command, logFile, unix);
+        return unix ? new BourneShellScript(script) : new WindowsBatchScript(script);
+    }
+
+    /**
+     * @return The script that runs the command with its output redirected to the log file, for sh or for cmd.
+     */
+    static String script(@Nonnull List<String> command, @Nonnull String logFile, boolean unix) {
+        StringBuilder script = new StringBuilder(unix ? "" : "@echo off\r\n");
+        for (String argument : command) {
+            script.append(unix ? quoteForShell(argument) : quoteForBatch(argument)).append(' ');
+        }
+        script.append('>').append(unix ? quoteForShell(logFile) : quoteForBatch(logFile)).append(" 2>&1");
+        return script.append(unix ? "\n" : "\r\n").toString();
+    }
+
+    private static String quoteForShell(String argument) {
+        return "'" + argument.replace("'", "'\\''") + "'";
+    }
+
+    private static String quoteForBatch(String argument) {
+        return "\"" + argument.replace("%", "%%").replace("\"", "\"\"") + "\"";
+    }
+
+    /**
+     * Reads the new output of a process. Invoked on the log file of the process.
+     */
+    static final class Poll extends MasterToSlaveFileCallable<Status> {
+
+        private static final long serialVersionUID = -4961340930170683624L;
+        private final Integer exitCode;
+        private final long offset;
+        private final int maxBytes;
+        private final int tailLines;
+        private final boolean deleteLog;
+
+        /**
+         * @param exitCode  The exit code of the process, or null if it still runs. Asked for before the poll, so that the
+         *                  output is complete once the process exited.
+         * @param offset    The number of bytes of output that were read before.
+         * @param maxBytes  The maximum number of bytes of output to send back, or 0 to send back no output.
+         * @param tailLines The number of last output lines to send back once the process exited.
+         * @param deleteLog Whether to delete the log file once the process exited and all output was read.
+         */
+        Poll(@CheckForNull Integer exitCode, long offset, int maxBytes, int tailLines, boolean deleteLog) {
+            this.exitCode = exitCode;
+            this.offset = offset;
+            this.maxBytes = maxBytes;
+            this.tailLines = tailLines;
+            this.deleteLog = deleteLog;
+        }
+
+        @Override
+        public Status invoke(File log, VirtualChannel channel) throws IOException, InterruptedException {
+            byte[] output = read(log);
+            long newOffset = offset + output.length;
+            if (exitCode == null || (maxBytes > 0 && newOffset < log.length())) {
+                return new Status(null, output, newOffset, 0, Collections.<String>emptyList());
+            }
+            int lineCount = 0;
+            Deque<String> tail = new ArrayDeque<>();
+            if (tailLines > 0 && log.isFile()) {
+                try (BufferedReader reader = Files.newBufferedReader(log.toPath(), Charset.defaultCharset())) {
+                    String line;
+                    while ((line = reader.readLine()) != null) {
+                        lineCount++;
+                        tail.addLast(line);
+                        if (tail.size() > tailLines) {
+                            tail.removeFirst();
+                        }
+                    }
+                }
+            }
+            if (deleteLog) {
+                Files.deleteIfExists(log.toPath());
+            }
+            return new Status(exitCode, output, newOffset, lineCount, new ArrayList<>(tail));
+        }
+
+        private byte[] read(File log) throws IOException {
+            if (maxBytes <= 0 || !log.isFile()) {
+                return new byte[0]; // no log file yet while the shell starts
+            }
+            try (RandomAccessFile file = new RandomAccessFile(log, "r")) {
+                long available = Math.max(0, file.length() - offset);
+                byte[] output = new byte[(int) Math.min(available, maxBytes)];
+                file.seek(offset);
+                file.readFully(output);
+                return output;
+            }
+        }
+    }
+
+    /**
+     * The state of a process, and its output since the previous poll.
+     */
+    static final class Status implements Serializable {
+
+        private static final long serialVersionUID = 2651453546813813306L;
+        private final Integer exitCode;
+        private final byte[] output;
+        private final long offset;
+        private final int lineCount;
+        private final List<String> tail;
+
+        Status(@CheckForNull Integer exitCode, @Nonnull byte[] output, long offset, int lineCount, @Nonnull List<String> tail) {
+            this.exitCode = exitCode;
+            this.output = output;
+            this.offset = offset;
+            this.lineCount = lineCount;
+            this.tail = tail;
+        }
+
+        /**
+         * @return Whether the process exited and all its output was read.
+         */
+        boolean isFinished() {
+            return exitCode != null;
+        }
+
+        int getExitCode() {
+            return exitCode != null ? exitCode : -1;
+        }
+
+        /**
+         * @return The output since the previous poll.
+         */
+        byte[] getOutput() {
+            return output;
+        }
+
+        /**
+         * @return The number of bytes of output that were read so far.
+         */
+        long getOffset() {
+            return offset;
+        }
+
+        /**
+         * @return The number of output lines, once the process exited and the last lines were asked for.
+         */
+        int getLineCount() {
+            return lineCount;
+        }
+
+        /**
+         * @return The last lines of the output, once the process exited.
+         */
+        List<String> getTail() {
+            return tail;
+        }
+    }
+}
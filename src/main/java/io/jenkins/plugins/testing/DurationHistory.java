@@ -0,0 +1,138 @@
+package io.jenkins.plugins.testing;
+
+import hudson.model.Job;
+import hudson.util.AtomicFileWriter;
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import javax.annotation.Nonnull;
+
+/**
+ * The durations of the test assemblies of a job, as measured by the latest @{@link DotCoverStep} that covered them.
+ * <p>
+ * Stored next to the job configuration, keyed by the workspace relative path of the test assembly, so that durations
+ * measured on one agent can be used to plan the work of another agent. The file has one line per test assembly, with the
+ * duration in milliseconds and the path separated by a tab, most recently measured first. It is capped at
+ * {@link #MAX_ENTRIES} lines, dropping the test assemblies that were measured longest ago.
+ */
+final class DurationHistory {
+
+    static final String FILE_NAME = "dotcover-durations.txt";
+    static final int MAX_ENTRIES = 2000;
+    private static final Object LOCK = new Object();
+    private static final char SEPARATOR = '\t';
+
+    private DurationHistory() {
+    }
+
+    /**
+     * @param job The job.
+     * @return The durations of the test assemblies of the job in milliseconds, by workspace relative path, most recently
+     * measured first.
+     * @throws IOException If the history cannot be read.
+     */
+    static Map<String, Long> load(@Nonnull Job<?, ?> job) throws IOException {
+        synchronized (LOCK) {
+            return read(getFile(job));
+        }
+    }
+
+    /**
+     * Replaces the durations of the given test assemblies, and keeps the durations of the other test assemblies as long as
+     * the history has room for them.
+     *
+     * @param job       The job.
+     * @param durations The measured durations in milliseconds, by workspace relative path.
+     * @throws IOException If the history cannot be read or written.
+     */
+    static void record(@Nonnull Job<?, ?> job, @Nonnull Map<String, Long> durations) throws IOException {
+        if (durations.isEmpty()) {
+            return;
+        }
+        synchronized (LOCK) {
+            File file = getFile(job);
+            Map<String, Long> history = new LinkedHashMap<>(new TreeMap<>(durations));
+            for (Map.Entry<String, Long> entry : read(file).entrySet()) {
+                if (history.size() >= MAX_ENTRIES) {
+                    break;
+                }
+                history.putIfAbsent(entry.getKey(), entry.getValue());
+            }
+            write(file, history);
+        }
+    }
+
+    /**
+     * @param durations The known durations in milliseconds.
+     * @return The average of the known durations, or 0 if no durations are known.
+     */
+    static long average(@Nonnull Map<String, Long> durations) {
+        if (durations.isEmpty()) {
+            return 0;
+        }
+        long total = 0;
+        for (long duration : durations.values()) {
+            total += duration;
+        }
+        return total / durations.size();
+    }
+
+    /**
+     * @param durations       The known durations in milliseconds, by workspace relative path.
+     * @param paths           The workspace relative paths of the test assemblies.
+     * @param defaultDuration The duration of a test assembly with no known duration.
+     * @return The predicted time to cover the test assemblies in milliseconds.
+     */
+    static long predict(@Nonnull Map<String, Long> durations, @Nonnull Collection<String> paths, long defaultDuration) {
+        long predicted = 0;
+        for (String path : paths) {
+            Long duration = durations.get(path);
+            predicted += duration != null ? duration : defaultDuration;
+        }
+        return predicted;
+    }
+
+    private static Map<String, Long> read(File file) throws IOException {
+        Map<String, Long> durations = new LinkedHashMap<>();
+        if (!file.exists()) {
+            return durations;
+        }
+        try (BufferedReader reader = Files.newBufferedReader(file.toPath(), StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                int separator = line.indexOf(SEPARATOR);
+                if (separator <= 0 || separator == line.length() - 1) {
+                    continue;
+                }
+                try {
+                    durations.putIfAbsent(line.substring(separator + 1), Long.parseLong(line.substring(0, separator)));
+                } catch (NumberFormatException e) {
+                    // skip damaged lines, they are dropped on the next write
+                }
+            }
+        }
+        return durations;
+    }
+
+    private static void write(File file, Map<String, Long> durations) throws IOException {
+        AtomicFileWriter writer = new AtomicFileWriter(file.toPath(), StandardCharsets.UTF_8);
+        try {
+            for (Map.Entry<String, Long> entry : durations.entrySet()) {
+                writer.write(entry.getValue() + String.valueOf(SEPARATOR) + entry.getKey() + "\n");
+            }
+            writer.commit();
+        } finally {
+            writer.abort();
+        }
+    }
+
+    private static File getFile(Job<?, ?> job) {
+        return new File(job.getRootDir(), FILE_NAME);
+    }
+}
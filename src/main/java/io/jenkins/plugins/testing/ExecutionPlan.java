@@ -0,0 +1,181 @@
+package io.jenkins.plugins.testing;
+
+import hudson.FilePath;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import javax.annotation.CheckForNull;
+import javax.annotation.Nonnull;
+
+/**
+ * The files a @{@link DotCoverStepExecution} works with on the agent: the resolved agent paths, and the batches of test
+ * assemblies with their written dotCover configurations.
+ */
+final class ExecutionPlan implements Serializable {
+
+    private static final long serialVersionUID = -2807561180313580651L;
+    private final String workspacePath;
+    private final String dotCoverToolPath;
+    private final String combinedSnapshotPath;
+    private final String htmlReportPath;
+    private final String nDependReportPath;
+    private final String detailedReportPath;
+    private final List<Batch> batches = new ArrayList<>();
+    private long scanMillis;
+    private List<String> assemblyDirs = Collections.emptyList();
+    private boolean cachedScan;
+    private String layout;
+    private long configWriteMillis;
+
+    ExecutionPlan(@CheckForNull String workspacePath, @Nonnull String dotCoverToolPath, @Nonnull String combinedSnapshotPath,
+                  @CheckForNull String htmlReportPath, @CheckForNull String nDependReportPath, @CheckForNull String detailedReportPath) {
+        this.workspacePath = workspacePath;
+        this.dotCoverToolPath = dotCoverToolPath;
+        this.combinedSnapshotPath = combinedSnapshotPath;
+        this.htmlReportPath = htmlReportPath;
+        this.nDependReportPath = nDependReportPath;
+        this.detailedReportPath = detailedReportPath;
+    }
+
+    /**
+     * @return The agent path of the workspace, or null if agent paths must be resolved on the agent one by one.
+     */
+    @CheckForNull
+    String getWorkspacePath() {
+        return workspacePath;
+    }
+
+    String getDotCoverToolPath() {
+        return dotCoverToolPath;
+    }
+
+    String getCombinedSnapshotPath() {
+        return combinedSnapshotPath;
+    }
+
+    @CheckForNull
+    String getHtmlReportPath() {
+        return htmlReportPath;
+    }
+
+    @CheckForNull
+    String getNDependReportPath() {
+        return nDependReportPath;
+    }
+
+    @CheckForNull
+    String getDetailedReportPath() {
+        return detailedReportPath;
+    }
+
+    List<Batch> getBatches() {
+        return Collections.unmodifiableList(batches);
+    }
+
+    void addBatch(@Nonnull Batch batch) {
+        batches.add(batch);
+    }
+
+    /**
+     * @return The workspace relative directories where test assemblies were found, with forward slashes.
+     */
+    List<String> getAssemblyDirs() {
+        return Collections.unmodifiableList(assemblyDirs);
+    }
+
+    /**
+     * @return Whether the test assemblies were found in the directories cached from an earlier build, without scanning the
+     * workspace.
+     */
+    boolean isCachedScan() {
+        return cachedScan;
+    }
+
+    /**
+     * @return The layout of the project files of the workspace, see @{@link AssemblyScanner#layoutOf(java.io.File)}, or null
+     * if the step does not cache the directories of the test assemblies.
+     */
+    @CheckForNull
+    String getLayout() {
+        return layout;
+    }
+
+    void setAssemblyScan(@Nonnull List<String> assemblyDirs, boolean cachedScan, @CheckForNull String layout) {
+        this.assemblyDirs = new ArrayList<>(assemblyDirs);
+        this.cachedScan = cachedScan;
+        this.layout = layout;
+    }
+
+    /**
+     * @return The time it took to find the test assemblies, in milliseconds.
+     */
+    long getScanMillis() {
+        return scanMillis;
+    }
+
+    /**
+     * @return The time it took to build and write the dotCover configurations, in milliseconds.
+     */
+    long getConfigWriteMillis() {
+        return configWriteMillis;
+    }
+
+    void setTimings(long scanMillis, long configWriteMillis) {
+        this.scanMillis = scanMillis;
+        this.configWriteMillis = configWriteMillis;
+    }
+
+    /**
+     * Test assemblies that are covered by one dotCover process.
+     */
+    static final class Batch implements Serializable {
+
+        private static final long serialVersionUID = 4470930286541226148L;
+        private final List<String> assemblies;
+        private final String name;
+        private final String configXmlPath;
+        private final String snapshot;
+        private final String cacheKey;
+
+        /**
+         * @param assemblies    The remote paths of the test assemblies.
+         * @param name          The name of the batch.
+         * @param configXmlPath The agent path of the dotCover configuration.
+         * @param snapshot      The remote path of the snapshot.
+         * @param cacheKey      The snapshot cache key, or null if the snapshot cache is not used.
+         */
+        Batch(@Nonnull List<String> assemblies, @Nonnull String name, @Nonnull String configXmlPath, @Nonnull String snapshot, @CheckForNull String cacheKey) {
+            this.assemblies = new ArrayList<>(assemblies);
+            this.name = name;
+            this.configXmlPath = configXmlPath;
+            this.snapshot = snapshot;
+            this.cacheKey = cacheKey;
+        }
+
+        List<FilePath> getAssemblies(@Nonnull FilePath workspace) {
+            List<FilePath> files = new ArrayList<>();
+            for (String assembly : assemblies) {
+                files.add(workspace.child(assembly));
+            }
+            return files;
+        }
+
+        String getName() {
+            return name;
+        }
+
+        String getConfigXmlPath() {
+            return configXmlPath;
+        }
+
+        FilePath getSnapshot(@Nonnull FilePath workspace) {
+            return workspace.child(snapshot);
+        }
+
+        @CheckForNull
+        String getCacheKey() {
+            return cacheKey;
+        }
+    }
+}
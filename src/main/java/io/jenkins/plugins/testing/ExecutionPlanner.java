@@ -0,0 +1,147 @@
+package io.jenkins.plugins.testing;
+
+import hudson.FilePath;
+import hudson.remoting.VirtualChannel;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import javax.annotation.CheckForNull;
+import javax.annotation.Nonnull;
+import jenkins.MasterToSlaveFileCallable;
+import org.dom4j.Document;
+
+/**
+ * Creates the @{@link ExecutionPlan} of a @{@link DotCoverStepExecution} on the agent in a single call: resolves the agent
+ * paths, creates the directories, finds the test assemblies, and builds and writes the dotCover configuration of every
+ * batch.
+ */
+final class ExecutionPlanner extends MasterToSlaveFileCallable<ExecutionPlan> {
+
+    private static final long serialVersionUID = -5412329735306645361L;
+    private final boolean unix;
+    private final String dotCoverTool;
+    private final String tempDir;
+    private final String outputDir;
+    private final String combinedSnapshot;
+    private final String htmlReport;
+    private final String nDependReport;
+    private final String detailedReport;
+    private final String assemblyFilter;
+    private final String assemblyExcludes;
+    private final List<String> cachedAssemblyDirs;
+    private final String cachedLayout;
+    private final Sharding sharding;
+    private final int batchSize;
+    private final DotCoverConfigurationBuilder builder;
+    private final boolean computeCacheKeys;
+
+    /**
+     * All files are given as remote paths. Without an assembly filter, the plan has no batches; without a sharding, the
+     * plan has a batch for every test assembly. With cached assembly directories, only those directories are listed, unless
+     * the layout of the project files differs from the cached layout, or no test assembly is found there. An empty list of
+     * cached directories scans the whole workspace, but still returns the layout to cache.
+     */
+    ExecutionPlanner(boolean unix, @Nonnull String dotCoverTool, @Nonnull String tempDir, @Nonnull String outputDir, @Nonnull String combinedSnapshot,
+                     @CheckForNull String htmlReport, @CheckForNull String nDependReport, @CheckForNull String detailedReport,
+                     @CheckForNull String assemblyFilter, @CheckForNull String assemblyExcludes, @CheckForNull List<String> cachedAssemblyDirs,
+                     @CheckForNull String cachedLayout, @CheckForNull Sharding sharding, int batchSize, @Nonnull DotCoverConfigurationBuilder builder, boolean computeCacheKeys) {
+        this.unix = unix;
+        this.dotCoverTool = dotCoverTool;
+        this.tempDir = tempDir;
+        this.outputDir = outputDir;
+        this.combinedSnapshot = combinedSnapshot;
+        this.htmlReport = htmlReport;
+        this.nDependReport = nDependReport;
+        this.detailedReport = detailedReport;
+        this.assemblyFilter = assemblyFilter;
+        this.assemblyExcludes = assemblyExcludes;
+        this.cachedAssemblyDirs = cachedAssemblyDirs != null ? new ArrayList<>(cachedAssemblyDirs) : null;
+        this.cachedLayout = cachedLayout;
+        this.sharding = sharding;
+        this.batchSize = batchSize;
+        this.builder = builder;
+        this.computeCacheKeys = computeCacheKeys;
+    }
+
+    @Override
+    public ExecutionPlan invoke(File workspace, VirtualChannel channel) throws IOException, InterruptedException {
+        File tempDirFile = new File(tempDir);
+        File outputDirFile = new File(outputDir);
+        Files.createDirectories(workspace.toPath());
+        Files.createDirectories(tempDirFile.toPath());
+        Files.createDirectories(outputDirFile.toPath());
+
+        String dotCoverToolPath = toAgentPath(new File(dotCoverTool));
+        String tempDirPath = toAgentPath(tempDirFile);
+        String outputDirPath = toAgentPath(outputDirFile);
+        ExecutionPlan plan = new ExecutionPlan(toAgentPath(workspace), dotCoverToolPath, toAgentPath(new File(combinedSnapshot)),
+                toAgentPathOrNull(htmlReport), toAgentPathOrNull(nDependReport), toAgentPathOrNull(detailedReport));
+
+        long scanStart = System.currentTimeMillis();
+        FilePath[] assemblies = findAssemblies(workspace, plan);
+        if (sharding != null) {
+            assemblies = sharding.select(workspace.getPath(), assemblies);
+        }
+        long configStart = System.currentTimeMillis();
+        for (List<FilePath> batch : DotCoverStepExecution.toBatches(assemblies, batchSize)) {
+            String name = DotCoverConfigurationBuilder.getBatchName(batch);
+            List<String> remotePaths = new ArrayList<>();
+            List<String> agentPaths = new ArrayList<>();
+            List<File> files = new ArrayList<>();
+            for (FilePath assembly : batch) {
+                File file = new File(assembly.getRemote());
+                remotePaths.add(assembly.getRemote());
+                agentPaths.add(toAgentPath(file));
+                files.add(file);
+            }
+            File snapshot = new File(tempDirFile, name + DotCoverStep.SNAPSHOT_MERGE_SUFFIX);
+            Document config = builder.buildXmlDocument(agentPaths, toAgentPath(snapshot), outputDirPath, tempDirPath);
+            File configXml = new File(tempDirFile, name + DotCoverStep.CONFIG_XML_NAME);
+            try (OutputStream out = Files.newOutputStream(configXml.toPath())) {
+                DotCoverStepExecution.writeConfig(config, out);
+            }
+            String cacheKey = computeCacheKeys ? SnapshotCache.computeKeyLocally(files, config, dotCoverToolPath) : null;
+            plan.addBatch(new ExecutionPlan.Batch(remotePaths, name, toAgentPath(configXml), snapshot.getPath(), cacheKey));
+        }
+        plan.setTimings(configStart - scanStart, System.currentTimeMillis() - configStart);
+        return plan;
+    }
+
+    private FilePath[] findAssemblies(File workspace, ExecutionPlan plan) {
+        if (assemblyFilter == null) {
+            return new FilePath[0];
+        }
+        AssemblyScanner scanner = new AssemblyScanner(assemblyFilter, assemblyExcludes);
+        String layout = cachedAssemblyDirs != null ? scanner.layoutOf(workspace) : null;
+        boolean useCache = cachedAssemblyDirs != null && !cachedAssemblyDirs.isEmpty() && layout.equals(cachedLayout);
+        List<File> found = useCache ? scanner.scan(workspace, cachedAssemblyDirs) : new ArrayList<>();
+        boolean cachedScan = !found.isEmpty();
+        if (!cachedScan) {
+            found = scanner.scan(workspace);
+        }
+        plan.setAssemblyScan(AssemblyScanner.dirsOf(workspace, found), cachedScan, layout);
+        List<FilePath> assemblies = new ArrayList<>();
+        for (File assembly : found) {
+            assemblies.add(new FilePath(assembly));
+        }
+        return assemblies.toArray(new FilePath[0]);
+    }
+
+    @CheckForNull
+    private String toAgentPathOrNull(@CheckForNull String remote) {
+        return remote == null ? null : toAgentPath(new File(remote));
+    }
+
+    /**
+     * Resolves a file the way @{@link DotCoverStepExecution#toAgentPath(FilePath)} does, but locally on the agent.
+     */
+    private String toAgentPath(File file) {
+        if (unix) {
+            return file.getPath();
+        }
+        return file.toURI().getPath().substring(1).replace("\\", "/");
+    }
+}
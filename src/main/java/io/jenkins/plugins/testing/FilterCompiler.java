@@ -0,0 +1,166 @@
+package io.jenkins.plugins.testing;
+
+import java.util.ArrayList;
+import java.util.List;
+import javax.annotation.CheckForNull;
+import javax.annotation.Nonnull;
+import org.apache.commons.lang.StringUtils;
+import org.dom4j.DocumentHelper;
+import org.dom4j.Element;
+
+/**
+ * Compiles the coverage and process filters of a @{@link DotCoverStep} into the filter elements of a dotCover
+ * configuration.
+ * <p>
+ * The semicolon separated mask lists are parsed and trimmed once, and masks that are equal to or covered by another mask
+ * of the same list are dropped. For example, {@code Foo.*} covers {@code Foo.Bar}, and the filter entry with the masks
+ * {@code *}, {@code Foo.*} and {@code *} covers the one with {@code Bar}, {@code Foo.Baz} and {@code Run*}.
+ */
+final class FilterCompiler {
+
+    static final String MATCH_ALL = "*";
+    private static final char WILDCARD = '*';
+    private static final String SEPARATOR = ";";
+
+    private FilterCompiler() {
+    }
+
+    /**
+     * @param step                        The step with the coverage filters.
+     * @param mandatoryExcludedAssemblies The assemblies that are excluded from coverage for every step.
+     * @return A detached {@code Filters} element with the include and exclude filter entries.
+     */
+    static Element compileFilters(@Nonnull DotCoverStep step, @CheckForNull String mandatoryExcludedAssemblies) {
+        List<String[]> includeEntries = new ArrayList<>();
+        for (String assemblyName : compileMasks(step.getCoverageAssemblyInclude())) {
+            includeEntries.add(new String[]{assemblyName, MATCH_ALL, MATCH_ALL});
+        }
+        for (String className : compileMasks(step.getCoverageClassInclude())) {
+            includeEntries.add(new String[]{MATCH_ALL, className, MATCH_ALL});
+        }
+        for (String method : compileMasks(step.getCoverageFunctionInclude())) {
+            includeEntries.add(new String[]{MATCH_ALL, MATCH_ALL, method});
+        }
+
+        Element filters = DocumentHelper.createElement("Filters");
+        Element includeFilters = filters.addElement("IncludeFilters");
+        Element excludeFilters = filters.addElement("ExcludeFilters");
+        for (String[] masks : dropCoveredEntries(includeEntries)) {
+            Element filterEntry = includeFilters.addElement("FilterEntry");
+            filterEntry.addElement("ModuleMask").addText(masks[0]);
+            filterEntry.addElement("ClassMask").addText(masks[1]);
+            filterEntry.addElement("FunctionMask").addText(masks[2]);
+        }
+        for (String assembly : compileMasks(step.getCoverageExclude(), mandatoryExcludedAssemblies)) {
+            excludeFilters.addElement("FilterEntry").addElement("ModuleMask").addText(assembly);
+        }
+        return filters;
+    }
+
+    /**
+     * @param step The step with the process filters.
+     * @return A detached {@code ProcessFilters} element, with include and exclude filters only if they are set.
+     */
+    static Element compileProcessFilters(@Nonnull DotCoverStep step) {
+        Element processFilters = DocumentHelper.createElement("ProcessFilters");
+        if (StringUtils.isNotBlank(step.getProcessInclude())) {
+            addProcessMasks(processFilters.addElement("IncludeFilters"), step.getProcessInclude());
+        }
+        if (StringUtils.isNotBlank(step.getProcessExclude())) {
+            addProcessMasks(processFilters.addElement("ExcludeFilters"), step.getProcessExclude());
+        }
+        return processFilters;
+    }
+
+    private static void addProcessMasks(Element parentElement, String masks) {
+        for (String mask : compileMasks(masks)) {
+            parentElement.addElement("ProcessMask").addText(mask);
+        }
+    }
+
+    /**
+     * Parses semicolon separated mask lists into one list of masks, without blank masks and without masks that another mask
+     * of the list already covers.
+     *
+     * @param maskLists The mask lists, any of which may be null.
+     * @return The masks, in the order they first appear.
+     */
+    static List<String> compileMasks(String... maskLists) {
+        List<String[]> masks = new ArrayList<>();
+        for (String maskList : maskLists) {
+            if (StringUtils.isBlank(maskList)) {
+                continue;
+            }
+            for (String mask : maskList.split(SEPARATOR)) {
+                if (StringUtils.isNotBlank(mask)) {
+                    masks.add(new String[]{mask.trim()});
+                }
+            }
+        }
+        List<String> compiled = new ArrayList<>();
+        for (String[] mask : dropCoveredEntries(masks)) {
+            compiled.add(mask[0]);
+        }
+        return compiled;
+    }
+
+    /**
+     * Drops every filter entry that another entry covers mask by mask. Of several equal entries, the first one is kept.
+     */
+    private static List<String[]> dropCoveredEntries(List<String[]> entries) {
+        List<String[]> kept = new ArrayList<>();
+        for (int index = 0; index < entries.size(); index++) {
+            String[] entry = entries.get(index);
+            boolean covered = false;
+            for (int otherIndex = 0; otherIndex < entries.size() && !covered; otherIndex++) {
+                String[] other = entries.get(otherIndex);
+                if (otherIndex != index && covers(other, entry)) {
+                    // Equal entries cover each other, keep the first one.
+                    covered = otherIndex < index || !covers(entry, other);
+                }
+            }
+            if (!covered) {
+                kept.add(entry);
+            }
+        }
+        return kept;
+    }
+
+    private static boolean covers(String[] entry, String[] other) {
+        for (int index = 0; index < entry.length; index++) {
+            if (!covers(entry[index], other[index])) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Whether every name that matches the other mask also matches the mask. A wildcard of the mask matches any sequence of
+     * characters of the other mask, wildcards included; any other character of the mask only matches the same character.
+     *
+     * @param mask  The mask that may cover the other mask.
+     * @param other The other mask.
+     * @return true if the mask covers the other mask.
+     */
+    static boolean covers(@Nonnull String mask, @Nonnull String other) {
+        // matches[j] is whether the part of the mask processed so far matches the first j characters of the other mask.
+        boolean[] matches = new boolean[other.length() + 1];
+        matches[0] = true;
+        for (int i = 0; i < mask.length(); i++) {
+            char c = mask.charAt(i);
+            if (c == WILDCARD) {
+                for (int j = 1; j <= other.length(); j++) {
+                    matches[j] = matches[j] || matches[j - 1];
+                }
+            } else {
+                for (int j = other.length(); j > 0; j--) {
+                    char otherChar = other.charAt(j - 1);
+                    matches[j] = matches[j - 1] && otherChar != WILDCARD && otherChar == c;
+                }
+                matches[0] = false;
+            }
+        }
+        return matches[other.length()];
+    }
+}
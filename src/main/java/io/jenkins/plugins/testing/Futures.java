@@ -0,0 +1,97 @@
+package io.jenkins.plugins.testing;
+
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.function.Function;
+import javax.annotation.Nonnull;
+
+/**
+ * Helpers to chain the asynchronous phases of a @{@link DotCoverStepExecution}, whose steps make remote calls that throw
+ * checked exceptions.
+ */
+final class Futures {
+
+    private Futures() {
+    }
+
+    /**
+     * @return A future that failed with the given exception.
+     */
+    static <T> CompletableFuture<T> failed(@Nonnull Throwable failure) {
+        CompletableFuture<T> future = new CompletableFuture<>();
+        future.completeExceptionally(failure);
+        return future;
+    }
+
+    /**
+     * Starts an asynchronous call, and turns an exception that it throws into a failed future.
+     */
+    static <T> CompletableFuture<T> call(@Nonnull AsyncCall<T> call) {
+        try {
+            return call.call();
+        } catch (IOException | InterruptedException | RuntimeException e) {
+            return failed(e);
+        }
+    }
+
+    /**
+     * Adapts an asynchronous step for {@link CompletableFuture#thenCompose(Function)}, turning an exception that it throws
+     * into a failed future.
+     */
+    static <T, R> Function<T, CompletableFuture<R>> compose(@Nonnull AsyncStep<T, R> step) {
+        return value -> call(() -> step.apply(value));
+    }
+
+    /**
+     * Runs a cleanup when a future completes, whether it failed or not.
+     *
+     * @return A future that completes like the given future once the cleanup ran, or fails if only the cleanup failed.
+     */
+    static <T> CompletableFuture<T> andFinally(@Nonnull CompletableFuture<T> future, @Nonnull Cleanup cleanup) {
+        return future.handle((value, failure) -> {
+            try {
+                cleanup.run();
+            } catch (IOException | InterruptedException | RuntimeException e) {
+                if (failure == null) {
+                    return Futures.<T>failed(e);
+                }
+                failure.addSuppressed(e);
+            }
+            return failure != null ? Futures.<T>failed(unwrap(failure)) : CompletableFuture.completedFuture(value);
+        }).thenCompose(Function.identity());
+    }
+
+    /**
+     * @return The exception that a future failed with, without the wrappers added by chained futures.
+     */
+    static Throwable unwrap(@Nonnull Throwable failure) {
+        Throwable cause = failure;
+        while ((cause instanceof CompletionException || cause instanceof ExecutionException) && cause.getCause() != null) {
+            cause = cause.getCause();
+        }
+        return cause;
+    }
+
+    /**
+     * A call that starts asynchronous work.
+     */
+    interface AsyncCall<T> {
+        CompletableFuture<T> call() throws IOException, InterruptedException;
+    }
+
+    /**
+     * A step that starts asynchronous work with the result of the previous step.
+     */
+    interface AsyncStep<T, R> {
+        CompletableFuture<R> apply(T value) throws IOException, InterruptedException;
+    }
+
+    /**
+     * A cleanup that runs when asynchronous work is done.
+     */
+    interface Cleanup {
+        void run() throws IOException, InterruptedException;
+    }
+}
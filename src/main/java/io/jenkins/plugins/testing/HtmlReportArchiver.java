@@ -0,0 +1,126 @@
+package io.jenkins.plugins.testing;
+
+import hudson.remoting.VirtualChannel;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.GZIPOutputStream;
+import javax.annotation.Nonnull;
+import jenkins.MasterToSlaveFileCallable;
+
+/**
+ * Copies a dotCover HTML report into a directory that a @{@link PrecompressedReport} serves, gzip compressing every text
+ * file once so that it is served without compressing it again on every request.
+ * <p>
+ * Runs on the agent that holds the report. A text file is kept as {@code <name>.gz}; images and fonts, which do not
+ * compress, are copied as they are. The files are not rewritten: the iframe sandbox is applied when they are served.
+ * <p>
+ * The report may share its directory with the other outputs of the step, so only the page of the report and the directory
+ * of its assets, which dotCover names after the page, are copied.
+ */
+final class HtmlReportArchiver extends MasterToSlaveFileCallable<Integer> {
+
+    static final String COMPRESSED_SUFFIX = ".gz";
+    private static final long serialVersionUID = 6415380447625418826L;
+    private static final Set<String> COMPRESSED_EXTENSIONS = new HashSet<>(Arrays.asList("css", "htm", "html", "js", "json", "svg", "txt", "xml"));
+
+    private final String targetDir;
+    private final String indexFileName;
+
+    /**
+     * @param targetDir     The path of the directory to copy the report into, on the node of the report.
+     * @param indexFileName The name of the page of the report.
+     */
+    HtmlReportArchiver(@Nonnull String targetDir, @Nonnull String indexFileName) {
+        this.targetDir = targetDir;
+        this.indexFileName = indexFileName;
+    }
+
+    /**
+     * @param indexFileName The name of the page of a report.
+     * @return The name of the directory that dotCover writes the assets of the report into.
+     */
+    static String assetDirName(@Nonnull String indexFileName) {
+        int dot = indexFileName.lastIndexOf('.');
+        return dot > 0 ? indexFileName.substring(0, dot) : indexFileName + "_files";
+    }
+
+    /**
+     * @param name The name of a file of the report.
+     * @return Whether the file is kept gzip compressed.
+     */
+    static boolean isCompressed(@Nonnull String name) {
+        int dot = name.lastIndexOf('.');
+        return dot >= 0 && COMPRESSED_EXTENSIONS.contains(name.substring(dot + 1).toLowerCase(Locale.ENGLISH));
+    }
+
+    /**
+     * @param reportDir The directory with the HTML report; the page and the asset directory are copied.
+     * @param channel   The channel of the agent.
+     * @return The number of files that were copied.
+     * @throws IOException If the page of the report does not exist, or a file cannot be copied.
+     */
+    @Override
+    public Integer invoke(File reportDir, VirtualChannel channel) throws IOException {
+        Path source = reportDir.toPath();
+        Path target = new File(targetDir).toPath();
+        Path page = source.resolve(indexFileName);
+        if (!Files.isRegularFile(page)) {
+            throw new IOException("The HTML report " + page + " does not exist.");
+        }
+        Files.createDirectories(target);
+        AtomicInteger files = new AtomicInteger();
+        byte[] buffer = new byte[64 * 1024];
+        copy(page, target.resolve(indexFileName), buffer);
+        files.incrementAndGet();
+        Path assetDir = source.resolve(assetDirName(indexFileName));
+        if (!Files.isDirectory(assetDir)) {
+            return files.get();
+        }
+        Files.walkFileTree(assetDir, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attributes) throws IOException {
+                Files.createDirectories(target.resolve(source.relativize(dir).toString()));
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attributes) throws IOException {
+                copy(file, target.resolve(source.relativize(file).toString()), buffer);
+                files.incrementAndGet();
+                return FileVisitResult.CONTINUE;
+            }
+        });
+        return files.get();
+    }
+
+    private static void copy(Path file, Path copy, byte[] buffer) throws IOException {
+        if (isCompressed(file.getFileName().toString())) {
+            compress(file, copy.resolveSibling(copy.getFileName() + COMPRESSED_SUFFIX), buffer);
+        } else {
+            Files.copy(file, copy, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    private static void compress(Path file, Path compressedFile, byte[] buffer) throws IOException {
+        try (InputStream in = Files.newInputStream(file);
+             OutputStream out = new GZIPOutputStream(Files.newOutputStream(compressedFile), buffer.length)) {
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                out.write(buffer, 0, read);
+            }
+        }
+    }
+}
@@ -0,0 +1,164 @@
+package io.jenkins.plugins.testing;
+
+import hudson.FilePath;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.regex.Pattern;
+import javax.annotation.CheckForNull;
+import javax.annotation.Nonnull;
+import jenkins.model.Jenkins;
+
+/**
+ * The HTML reports that were generated on demand from snapshots in the @{@link SnapshotStore}, kept on the controller by
+ * the hash of the snapshot.
+ * <p>
+ * A report is generated at most once at a time: requests for a report that is being generated get the running generation.
+ * A report is generated into a temporary directory that is renamed into place once it is complete. Only the most recently
+ * opened reports are kept.
+ */
+final class HtmlReportCache {
+
+    static final String CACHE_DIR_NAME = "dotcover-html-reports";
+    static final String REPORT_FILE_NAME = "report.html";
+    private static final Pattern HASH = Pattern.compile("[0-9a-f]{64}");
+    private static final Object LOCK = new Object();
+    private static final Logger LOGGER = Logger.getLogger(HtmlReportCache.class.getName());
+    /**
+     * The generations that are running or failed, by the path of their report directory. A failed generation is kept until
+     * its failure was reported once.
+     */
+    private static final Map<String, CompletableFuture<File>> GENERATIONS = new ConcurrentHashMap<>();
+
+    private final File cacheDir;
+    private final int maxReports;
+
+    /**
+     * @param cacheDir   The directory of the cache.
+     * @param maxReports The maximum number of reports to keep.
+     */
+    HtmlReportCache(@Nonnull File cacheDir, int maxReports) {
+        this.cacheDir = cacheDir;
+        this.maxReports = Math.max(1, maxReports);
+    }
+
+    /**
+     * @return The cache of this Jenkins instance, limited to the number of reports set in the global DotCover configuration.
+     */
+    static HtmlReportCache get() {
+        return new HtmlReportCache(new File(Jenkins.get().getRootDir(), CACHE_DIR_NAME), DotCoverConfiguration.getInstance().getHtmlReportCacheSize());
+    }
+
+    /**
+     * @param hash The hash of the snapshot of the report.
+     * @return The directory of the report, marked as recently used, or null if the report was not generated.
+     */
+    @CheckForNull
+    File find(@Nonnull String hash) {
+        if (!HASH.matcher(hash).matches()) {
+            return null;
+        }
+        synchronized (LOCK) {
+            File reportDir = new File(cacheDir, hash);
+            if (!isReport(reportDir)) {
+                return null;
+            }
+            touch(reportDir);
+            return reportDir;
+        }
+    }
+
+    /**
+     * Starts generating a report, unless it is being generated. A failed generation is returned once, and started again on
+     * the next call.
+     *
+     * @param hash      The hash of the snapshot of the report.
+     * @param generator Generates the report into a directory.
+     * @return The generation, which completes with the directory of the report.
+     */
+    CompletableFuture<File> generate(@Nonnull String hash, @Nonnull Generator generator) {
+        if (!HASH.matcher(hash).matches()) {
+            return Futures.failed(new IOException("Invalid snapshot hash " + hash));
+        }
+        File reportDir = new File(cacheDir, hash);
+        String key = reportDir.getAbsolutePath();
+        CompletableFuture<File> generation = GENERATIONS.get(key);
+        if (generation != null && generation.isCompletedExceptionally()) {
+            GENERATIONS.remove(key, generation);
+            return generation;
+        }
+        CompletableFuture<File> started = GENERATIONS.computeIfAbsent(key, k -> {
+            File tempDir = new File(cacheDir, UUID.randomUUID() + ".tmp");
+            return Futures.andFinally(Futures.call(() -> generator.generate(tempDir))
+                    .thenApply(generated -> {
+                        try {
+                            return store(tempDir, reportDir);
+                        } catch (IOException | InterruptedException e) {
+                            throw new IllegalStateException("Unable to keep the HTML report in " + reportDir, e);
+                        }
+                    }), () -> new FilePath(tempDir).deleteRecursive());
+        });
+        started.thenRun(() -> GENERATIONS.remove(key, started));
+        return started;
+    }
+
+    private File store(File tempDir, File reportDir) throws IOException, InterruptedException {
+        synchronized (LOCK) {
+            if (!isReport(reportDir)) {
+                new FilePath(reportDir).deleteRecursive();
+                Files.move(tempDir.toPath(), reportDir.toPath(), StandardCopyOption.ATOMIC_MOVE);
+            }
+            touch(reportDir);
+            evict(reportDir);
+            return reportDir;
+        }
+    }
+
+    private static boolean isReport(File reportDir) {
+        return new File(reportDir, REPORT_FILE_NAME + HtmlReportArchiver.COMPRESSED_SUFFIX).isFile() || new File(reportDir, REPORT_FILE_NAME).isFile();
+    }
+
+    private static void touch(File reportDir) {
+        if (!reportDir.setLastModified(System.currentTimeMillis())) {
+            LOGGER.log(Level.FINE, "Unable to mark {0} as recently used", reportDir);
+        }
+    }
+
+    private void evict(File keep) throws IOException, InterruptedException {
+        File[] files = cacheDir.listFiles(file -> file.isDirectory() && HASH.matcher(file.getName()).matches());
+        if (files == null || files.length <= maxReports) {
+            return;
+        }
+        List<File> reportDirs = new ArrayList<>(Arrays.asList(files));
+        reportDirs.sort(Comparator.comparingLong(File::lastModified).reversed());
+        for (File reportDir : reportDirs.subList(maxReports, reportDirs.size())) {
+            if (!reportDir.equals(keep)) {
+                new FilePath(reportDir).deleteRecursive();
+            }
+        }
+    }
+
+    /**
+     * Generates a report.
+     */
+    interface Generator {
+
+        /**
+         * @param reportDir The directory to generate the report into, with the report in @{@link #REPORT_FILE_NAME}, gzip
+         *                  compressed or not.
+         * @return A future that completes when the report was generated.
+         */
+        CompletableFuture<Void> generate(@Nonnull File reportDir) throws IOException, InterruptedException;
+    }
+}
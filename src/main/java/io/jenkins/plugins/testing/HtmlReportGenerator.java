@@ -0,0 +1,102 @@
+package io.jenkins.plugins.testing;
+
+import hudson.AbortException;
+import hudson.FilePath;
+import hudson.model.Computer;
+import hudson.model.Node;
+import hudson.model.StreamBuildListener;
+import hudson.model.TaskListener;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import javax.annotation.Nonnull;
+import jenkins.model.Jenkins;
+
+/**
+ * Generates the HTML report of a snapshot in the @{@link SnapshotStore} with dotCover on a node, for the
+ * @{@link HtmlReportCache}.
+ * <p>
+ * The snapshot is restored into a work directory on the node, the report is generated there within the DotCover process
+ * limit of the node, and copied to the controller gzip compressed by a @{@link HtmlReportArchiver}. The work directory is
+ * deleted afterwards.
+ */
+final class HtmlReportGenerator implements HtmlReportCache.Generator {
+
+    static final String WORK_DIR_NAME = "dotcover-html";
+    private static final int TAIL_LINES = 20;
+
+    private final String hash;
+    private final String nodeName;
+
+    /**
+     * @param hash     The hash of the snapshot in the snapshot store.
+     * @param nodeName The name of the node with dotCover, empty for the controller.
+     */
+    HtmlReportGenerator(@Nonnull String hash, @Nonnull String nodeName) {
+        this.hash = hash;
+        this.nodeName = nodeName;
+    }
+
+    @Override
+    public CompletableFuture<Void> generate(@Nonnull File reportDir) throws IOException {
+        Node node = nodeName.isEmpty() ? Jenkins.get() : Jenkins.get().getNode(nodeName);
+        if (node == null) {
+            throw new AbortException("The node " + nodeName + " that ran DotCover no longer exists.");
+        }
+        int limit = DotCoverStepExecution.getProcessLimit(node);
+        ProcessLimiter limiter = ProcessLimiter.forNode(nodeName);
+        CompletableFuture<Void> generated = new CompletableFuture<>();
+        limiter.acquire(limit).thenRun(() -> Computer.threadPoolForRemoting.submit(() -> {
+            try {
+                generate(node, reportDir);
+                generated.complete(null);
+            } catch (IOException | InterruptedException | RuntimeException e) {
+                generated.completeExceptionally(e);
+            } finally {
+                limiter.release(DotCoverStepExecution.getProcessLimit(node));
+            }
+        }));
+        return generated;
+    }
+
+    private void generate(Node node, File reportDir) throws IOException, InterruptedException {
+        FilePath root = node.getRootPath();
+        if (root == null) {
+            throw new AbortException("The node " + (nodeName.isEmpty() ? "(built-in)" : nodeName) + " is offline.");
+        }
+        ByteArrayOutputStream log = new ByteArrayOutputStream();
+        TaskListener listener = new StreamBuildListener(log, StandardCharsets.UTF_8);
+        DotCoverInstallation dotCover = DotCoverInstallation.getDefaultInstallation().forNode(node, listener);
+        FilePath workDir = root.child(WORK_DIR_NAME).child(UUID.randomUUID().toString());
+        try {
+            FilePath snapshot = workDir.child("snapshot.cov");
+            if (!SnapshotStore.get().restore(hash, snapshot)) {
+                throw new AbortException("The snapshot " + hash + " is no longer in the snapshot store.");
+            }
+            FilePath outputDir = workDir.child("report");
+            outputDir.mkdirs();
+            int exitCode = node.createLauncher(listener).launch()
+                    .cmds(root.child(dotCover.getHome()).getRemote(), "Report", "/ReportType=HTML", "/Source=" + snapshot.getRemote(),
+                            "/Output=" + outputDir.child(HtmlReportCache.REPORT_FILE_NAME).getRemote())
+                    .stdout(listener).pwd(workDir).join();
+            if (exitCode != 0) {
+                throw new AbortException("DotCover exited with exit code " + exitCode + ":\n" + tail(log));
+            }
+            FilePath archiveDir = workDir.child("archive");
+            outputDir.act(new HtmlReportArchiver(archiveDir.getRemote(), HtmlReportCache.REPORT_FILE_NAME));
+            archiveDir.copyRecursiveTo(new FilePath(reportDir));
+        } finally {
+            workDir.deleteRecursive();
+        }
+    }
+
+    private static String tail(ByteArrayOutputStream log) {
+        List<String> lines = Arrays.asList(new String(log.toByteArray(), StandardCharsets.UTF_8).split("\\r?\\n"));
+        return String.join("\n", lines.subList(Math.max(0, lines.size() - TAIL_LINES), lines.size()));
+    }
+}
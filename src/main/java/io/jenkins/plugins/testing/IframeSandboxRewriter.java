@@ -0,0 +1,142 @@
+package io.jenkins.plugins.testing;
+
+import hudson.remoting.VirtualChannel;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Locale;
+import javax.annotation.Nonnull;
+import jenkins.MasterToSlaveFileCallable;
+
+/**
+ * Replaces the source code iframe of every HTML file in a dotCover HTML report with a sandboxed iframe that allows
+ * JavaScript.
+ * <p>
+ * Runs on the agent that holds the report. Files are streamed through a fixed-size buffer into a temporary file, which then
+ * atomically replaces the original, so neither the controller nor the agent ever holds a whole report in memory.
+ */
+final class IframeSandboxRewriter extends MasterToSlaveFileCallable<Integer> {
+
+    private static final long serialVersionUID = -3364512806913870915L;
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    /**
+     * @param reportDir The directory with the HTML report, searched recursively.
+     * @param channel   The channel of the agent.
+     * @return The number of HTML files that were rewritten.
+     * @throws IOException If a file cannot be rewritten.
+     */
+    @Override
+    public Integer invoke(File reportDir, VirtualChannel channel) throws IOException {
+        return rewriteDirectory(reportDir.toPath());
+    }
+
+    private int rewriteDirectory(Path directory) throws IOException {
+        int rewritten = 0;
+        try (DirectoryStream<Path> entries = Files.newDirectoryStream(directory)) {
+            for (Path entry : entries) {
+                if (Files.isDirectory(entry)) {
+                    rewritten += rewriteDirectory(entry);
+                } else if (isHtml(entry) && rewriteFile(entry)) {
+                    rewritten++;
+                }
+            }
+        }
+        return rewritten;
+    }
+
+    private static boolean isHtml(Path file) {
+        String name = file.getFileName().toString().toLowerCase(Locale.ENGLISH);
+        return name.endsWith(".html") || name.endsWith(".htm");
+    }
+
+    private static boolean rewriteFile(Path file) throws IOException {
+        Path temp = Files.createTempFile(file.getParent(), file.getFileName().toString(), ".tmp");
+        try {
+            int replacements;
+            // ISO-8859-1 maps every byte to one char and back, so content in any encoding passes through unchanged.
+            try (Reader in = Files.newBufferedReader(file, StandardCharsets.ISO_8859_1);
+                 Writer out = new BufferedWriter(Files.newBufferedWriter(temp, StandardCharsets.ISO_8859_1), BUFFER_SIZE)) {
+                replacements = replace(in, out, DotCoverStep.IFRAME_NO_JAVASCRIPT, DotCoverStep.IFRAME_ALLOW_JAVASCRIPT);
+            }
+            if (replacements == 0) {
+                return false;
+            }
+            try {
+                Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING);
+            }
+            return true;
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    /**
+     * Copies the input to the output, replacing every occurrence of the target. Only a buffer and the part of the input that
+     * may still turn out to be an occurrence of the target are held in memory.
+     *
+     * @param in          The input.
+     * @param out         The output.
+     * @param target      The text to replace.
+     * @param replacement The text to replace it with.
+     * @return The number of replacements.
+     * @throws IOException If reading or writing fails.
+     */
+    static int replace(@Nonnull Reader in, @Nonnull Writer out, @Nonnull String target, @Nonnull String replacement) throws IOException {
+        int[] borders = borders(target);
+        char[] buffer = new char[BUFFER_SIZE];
+        int matched = 0;
+        int replacements = 0;
+        int read;
+        while ((read = in.read(buffer)) != -1) {
+            for (int i = 0; i < read; i++) {
+                char c = buffer[i];
+                while (matched > 0 && c != target.charAt(matched)) {
+                    int border = borders[matched - 1];
+                    out.write(target, 0, matched - border);
+                    matched = border;
+                }
+                if (c == target.charAt(matched)) {
+                    matched++;
+                    if (matched == target.length()) {
+                        out.write(replacement);
+                        replacements++;
+                        matched = 0;
+                    }
+                } else {
+                    out.write(c);
+                }
+            }
+        }
+        out.write(target, 0, matched);
+        return replacements;
+    }
+
+    /**
+     * @return For every prefix of the text, the length of its longest proper prefix that is also a suffix.
+     */
+    private static int[] borders(String text) {
+        int[] borders = new int[text.length()];
+        int border = 0;
+        for (int i = 1; i < text.length(); i++) {
+            while (border > 0 && text.charAt(i) != text.charAt(border)) {
+                border = borders[border - 1];
+            }
+            if (text.charAt(i) == text.charAt(border)) {
+                border++;
+            }
+            borders[i] = border;
+        }
+        return borders;
+    }
+}
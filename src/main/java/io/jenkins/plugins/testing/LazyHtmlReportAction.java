@@ -0,0 +1,189 @@
+package io.jenkins.plugins.testing;
+
+import hudson.model.Run;
+import java.io.File;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import javax.annotation.CheckForNull;
+import javax.annotation.Nonnull;
+import jenkins.model.RunAction2;
+import org.kohsuke.stapler.HttpResponses;
+import org.kohsuke.stapler.StaplerRequest;
+import org.kohsuke.stapler.StaplerResponse;
+
+/**
+ * The HTML reports of the DotCover steps of a build that are generated when they are first opened, listed at
+ * {@code <build>/dotcover-html} and shown at {@code <build>/dotcover-html/<n>/}.
+ * <p>
+ * Only the hash of the merged snapshot in the @{@link SnapshotStore} is kept in the build. The report is generated in the
+ * background by a @{@link HtmlReportGenerator} into the @{@link HtmlReportCache}, and served from there by a
+ * @{@link PrecompressedReport}; until it is ready, a page that refreshes itself is shown.
+ */
+public class LazyHtmlReportAction implements RunAction2 {
+
+    static final String URL_NAME = "dotcover-html";
+    private final List<Report> reports = new CopyOnWriteArrayList<>();
+    private transient Run<?, ?> run;
+
+    /**
+     * Adds the report of a step to the action of the build, and attaches the action if it is not attached yet.
+     *
+     * @param run      The build.
+     * @param name     The name of the step execution.
+     * @param hash     The hash of the merged snapshot in the snapshot store.
+     * @param nodeName The name of the node that ran the step, empty for the controller.
+     */
+    static void addTo(@Nonnull Run<?, ?> run, @Nonnull String name, @Nonnull String hash, @Nonnull String nodeName) {
+        synchronized (run) {
+            LazyHtmlReportAction action = run.getAction(LazyHtmlReportAction.class);
+            if (action == null) {
+                action = new LazyHtmlReportAction();
+                run.addAction(action);
+            }
+            action.reports.add(new Report(name, hash, nodeName));
+        }
+    }
+
+    @Override
+    public String getIconFileName() {
+        return "document.png";
+    }
+
+    @Override
+    public String getDisplayName() {
+        return "DotCover HTML reports";
+    }
+
+    @Override
+    public String getUrlName() {
+        return URL_NAME;
+    }
+
+    public Run<?, ?> getRun() {
+        return run;
+    }
+
+    /**
+     * @return The reports of the DotCover steps of the build, in the order they finished; the report at position n is
+     * shown at {@code n/}.
+     */
+    public List<Report> getReports() {
+        return Collections.unmodifiableList(reports);
+    }
+
+    /**
+     * @param token The position of the report.
+     * @return The files of the report if it was generated, or the status of its generation otherwise; null if there is no
+     * such report.
+     */
+    @CheckForNull
+    public Object getDynamic(@Nonnull String token, StaplerRequest request, StaplerResponse response) {
+        Report report = findReport(token);
+        if (report == null) {
+            return null;
+        }
+        run.checkPermission(Run.ARTIFACTS);
+        HtmlReportCache cache = HtmlReportCache.get();
+        File reportDir = cache.find(report.hash);
+        if (reportDir != null) {
+            if (request.getRestOfPath().isEmpty()) {
+                return HttpResponses.redirectTo(token + "/");
+            }
+            return new PrecompressedReport(reportDir, HtmlReportCache.REPORT_FILE_NAME);
+        }
+        return new GenerationStatus(run, report.name, cache.generate(report.hash, new HtmlReportGenerator(report.hash, report.nodeName)));
+    }
+
+    @CheckForNull
+    private Report findReport(String token) {
+        try {
+            int position = Integer.parseInt(token);
+            return position >= 0 && position < reports.size() ? reports.get(position) : null;
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    @Override
+    public void onAttached(Run<?, ?> run) {
+        this.run = run;
+    }
+
+    @Override
+    public void onLoad(Run<?, ?> run) {
+        this.run = run;
+    }
+
+    /**
+     * The HTML report of a step execution.
+     */
+    public static final class Report {
+
+        private final String name;
+        private final String hash;
+        private final String nodeName;
+
+        Report(String name, String hash, String nodeName) {
+            this.name = name;
+            this.hash = hash;
+            this.nodeName = nodeName;
+        }
+
+        /**
+         * @return The name of the step execution.
+         */
+        public String getName() {
+            return name;
+        }
+
+        /**
+         * @return Whether the report was generated and is still in the cache.
+         */
+        public boolean isGenerated() {
+            return HtmlReportCache.get().find(hash) != null;
+        }
+    }
+
+    /**
+     * The page shown while a report is generated, or when its generation failed.
+     */
+    public static final class GenerationStatus {
+
+        private final Run<?, ?> run;
+        private final String name;
+        private final CompletableFuture<File> generation;
+
+        GenerationStatus(Run<?, ?> run, String name, CompletableFuture<File> generation) {
+            this.run = run;
+            this.name = name;
+            this.generation = generation;
+        }
+
+        public Run<?, ?> getRun() {
+            return run;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        /**
+         * @return The reason the generation failed, or null if it did not fail.
+         */
+        @CheckForNull
+        public String getFailure() {
+            if (!generation.isCompletedExceptionally()) {
+                return null;
+            }
+            try {
+                generation.join();
+                return null;
+            } catch (RuntimeException e) {
+                Throwable cause = Futures.unwrap(e);
+                return cause.getMessage() != null ? cause.getMessage() : cause.toString();
+            }
+        }
+    }
+}
@@ -0,0 +1,215 @@
+package io.jenkins.plugins.testing;
+
+import hudson.FilePath;
+import hudson.model.Run;
+import java.io.File;
+import java.io.IOException;
+import java.lang.ref.SoftReference;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.annotation.CheckForNull;
+import javax.annotation.Nonnull;
+import jenkins.model.RunAction2;
+
+/**
+ * The line coverage of the DotCover steps of a build that generated a DetailedXML report, shown per source file at
+ * {@code <build>/dotcover-lines}.
+ * <p>
+ * The line coverage of every step is kept in a @{@link LineCoverageIndex} in the build directory, so showing a file does
+ * not load the report. The indexes that were read are kept while memory allows, since the page reads an index several
+ * times per request.
+ */
+public class LineCoverageAction implements RunAction2 {
+
+    static final String URL_NAME = "dotcover-lines";
+    private static final String INDEX_DIR_NAME = "dotcover-lines";
+    private static final Logger LOGGER = Logger.getLogger(LineCoverageAction.class.getName());
+    private final List<String> names = new CopyOnWriteArrayList<>(); // the index of position n is n.idx
+    private transient Run<?, ?> run;
+    private transient Map<Integer, SoftReference<LineCoverageIndex>> indexes = new ConcurrentHashMap<>();
+
+    /**
+     * Copies the line coverage index of a step into the build directory, writes its @{@link CoverageDigest} next to it, and
+     * attaches the action if it is not attached yet.
+     *
+     * @param run   The build.
+     * @param name  The name of the step execution.
+     * @param index The index, on any node.
+     * @return The position of the index in the action.
+     * @throws IOException          If the index cannot be copied.
+     * @throws InterruptedException If interrupted while copying.
+     */
+    static int addTo(@Nonnull Run<?, ?> run, @Nonnull String name, @Nonnull FilePath index) throws IOException, InterruptedException {
+        synchronized (run) {
+            LineCoverageAction action = run.getAction(LineCoverageAction.class);
+            boolean attached = action != null;
+            if (action == null) {
+                action = new LineCoverageAction();
+            }
+            int position = action.names.size();
+            File indexFile = getIndexFile(run, position);
+            index.copyTo(new FilePath(indexFile));
+            CoverageDigest.of(LineCoverageIndex.open(indexFile)).write(getDigestFile(run, position));
+            action.names.add(name);
+            if (!attached) {
+                run.addAction(action);
+            }
+            return position;
+        }
+    }
+
+    private static File getIndexFile(Run<?, ?> run, int position) {
+        return new File(new File(run.getRootDir(), INDEX_DIR_NAME), position + ".idx");
+    }
+
+    private static File getDigestFile(Run<?, ?> run, int position) {
+        return new File(new File(run.getRootDir(), INDEX_DIR_NAME), position + ".digest");
+    }
+
+    /**
+     * @param name The name of a step execution.
+     * @return The position of the index of the step execution, or -1 if it has none, or if several step executions of the
+     * build have the name and it is not known which one is meant.
+     */
+    int findPosition(@Nonnull String name) {
+        int position = names.indexOf(name);
+        return position >= 0 && position == names.lastIndexOf(name) ? position : -1;
+    }
+
+    /**
+     * @param name The name of a step execution.
+     * @return Whether the build has an index of a step execution with the name.
+     */
+    boolean hasIndex(@Nonnull String name) {
+        return names.contains(name);
+    }
+
+    /**
+     * @param name The name of a step execution.
+     * @return Whether several step executions of the build have an index with the name, so that none of them can be told
+     * apart by it.
+     */
+    boolean isAmbiguous(@Nonnull String name) {
+        return names.indexOf(name) != names.lastIndexOf(name);
+    }
+
+    /**
+     * @param position The position of an index.
+     * @return The index.
+     * @throws IOException If the index cannot be read.
+     */
+    LineCoverageIndex openIndex(int position) throws IOException {
+        SoftReference<LineCoverageIndex> cached = indexes.get(position);
+        LineCoverageIndex index = cached != null ? cached.get() : null;
+        if (index == null) {
+            index = LineCoverageIndex.open(getIndexFile(run, position));
+            indexes.put(position, new SoftReference<>(index));
+        }
+        return index;
+    }
+
+    /**
+     * @param position The position of an index.
+     * @return The digest of the index.
+     * @throws IOException If the digest cannot be read.
+     */
+    CoverageDigest readDigest(int position) throws IOException {
+        return CoverageDigest.read(getDigestFile(run, position));
+    }
+
+    private Object readResolve() {
+        indexes = new ConcurrentHashMap<>();
+        return this;
+    }
+
+    @Override
+    public String getIconFileName() {
+        return "document.png";
+    }
+
+    @Override
+    public String getDisplayName() {
+        return "DotCover line coverage";
+    }
+
+    @Override
+    public String getUrlName() {
+        return URL_NAME;
+    }
+
+    public Run<?, ?> getRun() {
+        return run;
+    }
+
+    /**
+     * @return The names of the step executions with a line coverage index, by the position of their index.
+     */
+    public List<String> getNames() {
+        return Collections.unmodifiableList(names);
+    }
+
+    /**
+     * @param position The position of the index, as given in the request.
+     * @return The index, or null if there is no such index or it cannot be read.
+     */
+    @CheckForNull
+    public LineCoverageIndex getIndex(@CheckForNull String position) {
+        int index = parse(position, names.size());
+        if (index < 0) {
+            return null;
+        }
+        try {
+            return openIndex(index);
+        } catch (IOException e) {
+            LOGGER.log(Level.WARNING, "Unable to read the DotCover line coverage index " + index + " of " + run, e);
+            return null;
+        }
+    }
+
+    /**
+     * @param position The position of the index, as given in the request.
+     * @param file     The position of the file in the index, as given in the request.
+     * @return The file, or null if there is no such file.
+     */
+    @CheckForNull
+    public LineCoverageIndex.FileCoverage getFile(@CheckForNull String position, @CheckForNull String file) {
+        LineCoverageIndex index = getIndex(position);
+        int fileIndex = index != null ? parse(file, index.getFileCount()) : -1;
+        return fileIndex >= 0 ? index.getFile(fileIndex) : null;
+    }
+
+    /**
+     * @param position The position of the index, as given in the request.
+     * @param file     The position of the file in the index, as given in the request.
+     * @return The consecutive lines of the file with the same coverage, or an empty list if there is no such file.
+     */
+    public List<LineCoverageIndex.LineRange> getLineRanges(@CheckForNull String position, @CheckForNull String file) {
+        LineCoverageIndex index = getIndex(position);
+        int fileIndex = index != null ? parse(file, index.getFileCount()) : -1;
+        return fileIndex >= 0 ? index.getLineRanges(fileIndex) : Collections.<LineCoverageIndex.LineRange>emptyList();
+    }
+
+    private static int parse(@CheckForNull String value, int count) {
+        try {
+            int parsed = value != null ? Integer.parseInt(value) : -1;
+            return parsed < count ? parsed : -1;
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    @Override
+    public void onAttached(Run<?, ?> run) {
+        this.run = run;
+    }
+
+    @Override
+    public void onLoad(Run<?, ?> run) {
+        this.run = run;
+    }
+}
@@ -0,0 +1,371 @@
+package io.jenkins.plugins.testing;
+
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import javax.annotation.Nonnull;
+
+/**
+ * The line coverage of the source files of a DetailedXML report, in a compact binary file that is read into memory at once.
+ * <p>
+ * The file is columnar: a header, a file table sorted by file name, a column with the numbers of the lines that have
+ * statements, a column with a covered bit and a column with an uncovered bit per line (both bits for a line with covered
+ * and uncovered statements), and the UTF-8 file names. The file table holds the line counts of every file, so a file
+ * list is shown without reading the lines, and the lines of one file are found without reading the other files.
+ */
+public final class LineCoverageIndex {
+
+    private static final int MAGIC = 0x44434c49; // "DCLI"
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 5 * 4;
+    private static final int FILE_ENTRY_SIZE = 6 * 4;
+    private static final byte COVERED = 1;
+    private static final byte UNCOVERED = 2;
+
+    private final ByteBuffer buffer;
+    private final int fileCount;
+    private final int lineCount;
+    private final int linesOffset;
+    private final int coveredBitsOffset;
+    private final int uncoveredBitsOffset;
+    private final int namesOffset;
+
+    private LineCoverageIndex(ByteBuffer buffer) throws IOException {
+        this.buffer = buffer;
+        if (buffer.remaining() < HEADER_SIZE || buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION) {
+            throw new IOException("Not a line coverage index of version " + VERSION);
+        }
+        fileCount = buffer.getInt(8);
+        lineCount = buffer.getInt(12);
+        int namesLength = buffer.getInt(16);
+        linesOffset = HEADER_SIZE + fileCount * FILE_ENTRY_SIZE;
+        coveredBitsOffset = linesOffset + lineCount * 4;
+        uncoveredBitsOffset = coveredBitsOffset + (lineCount + 7) / 8;
+        namesOffset = uncoveredBitsOffset + (lineCount + 7) / 8;
+        if (fileCount < 0 || lineCount < 0 || namesLength < 0 || namesOffset + namesLength != buffer.capacity()) {
+            throw new IOException("The line coverage index is truncated");
+        }
+    }
+
+    /**
+     * Reads an index file into memory. The file is not mapped, since a mapped file stays open until the mapping is garbage
+     * collected, and Windows cannot delete an open file, such as the build directory when a build is deleted.
+     *
+     * @param file The index file.
+     * @return The index.
+     * @throws IOException If the file cannot be read or is not an index.
+     */
+    static LineCoverageIndex open(@Nonnull File file) throws IOException {
+        return new LineCoverageIndex(ByteBuffer.wrap(Files.readAllBytes(file.toPath())));
+    }
+
+    public int getFileCount() {
+        return fileCount;
+    }
+
+    /**
+     * @return The files with their line counts, ordered by name.
+     */
+    public List<FileCoverage> getFiles() {
+        List<FileCoverage> files = new ArrayList<>(fileCount);
+        for (int file = 0; file < fileCount; file++) {
+            files.add(getFile(file));
+        }
+        return files;
+    }
+
+    /**
+     * @param file The position of the file in the file table.
+     * @return The file with its line counts.
+     */
+    public FileCoverage getFile(int file) {
+        if (file < 0 || file >= fileCount) {
+            throw new IndexOutOfBoundsException("No file " + file + " in the line coverage index");
+        }
+        int entry = HEADER_SIZE + file * FILE_ENTRY_SIZE;
+        byte[] name = new byte[buffer.getInt(entry + 4)];
+        ByteBuffer names = buffer.duplicate();
+        names.position(namesOffset + buffer.getInt(entry));
+        names.get(name);
+        return new FileCoverage(file, new String(name, StandardCharsets.UTF_8), buffer.getInt(entry + 12), buffer.getInt(entry + 16), buffer.getInt(entry + 20));
+    }
+
+    /**
+     * @param file The position of the file in the file table.
+     * @return The consecutive lines with the same coverage, ordered by line.
+     */
+    public List<LineRange> getLineRanges(int file) {
+        FileCoverage coverage = getFile(file);
+        int first = buffer.getInt(HEADER_SIZE + file * FILE_ENTRY_SIZE + 8);
+        List<LineRange> ranges = new ArrayList<>();
+        LineRange range = null;
+        for (int position = first; position < first + coverage.getLineCount(); position++) {
+            int line = buffer.getInt(linesOffset + position * 4);
+            LineState state = LineState.of(bit(coveredBitsOffset, position), bit(uncoveredBitsOffset, position));
+            if (range != null && range.last == line - 1 && range.state == state) {
+                range.last = line;
+            } else {
+                range = new LineRange(line, state);
+                ranges.add(range);
+            }
+        }
+        return ranges;
+    }
+
+    /**
+     * @param file The position of the file in the file table.
+     * @return A hash of the lines of the file with their coverage, equal for files with the same line coverage.
+     */
+    long hashFile(int file) {
+        FileCoverage coverage = getFile(file);
+        int first = buffer.getInt(HEADER_SIZE + file * FILE_ENTRY_SIZE + 8);
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+        ByteBuffer line = ByteBuffer.allocate(5);
+        for (int position = first; position < first + coverage.getLineCount(); position++) {
+            line.clear();
+            line.putInt(buffer.getInt(linesOffset + position * 4));
+            line.put((byte) LineState.of(bit(coveredBitsOffset, position), bit(uncoveredBitsOffset, position)).ordinal());
+            digest.update(line.array());
+        }
+        return ByteBuffer.wrap(digest.digest()).getLong();
+    }
+
+    private boolean bit(int offset, int position) {
+        return (buffer.get(offset + position / 8) & (1 << (position % 8))) != 0;
+    }
+
+    /**
+     * The coverage of a line with statements.
+     */
+    public enum LineState {
+        COVERED, PARTIAL, UNCOVERED;
+
+        static LineState of(boolean covered, boolean uncovered) {
+            return covered ? (uncovered ? PARTIAL : COVERED) : UNCOVERED;
+        }
+    }
+
+    /**
+     * The line counts of a source file.
+     */
+    public static final class FileCoverage {
+
+        private final int position;
+        private final String name;
+        private final int lineCount;
+        private final int coveredLines;
+        private final int partialLines;
+
+        FileCoverage(int position, String name, int lineCount, int coveredLines, int partialLines) {
+            this.position = position;
+            this.name = name;
+            this.lineCount = lineCount;
+            this.coveredLines = coveredLines;
+            this.partialLines = partialLines;
+        }
+
+        /**
+         * @return The position of the file in the file table.
+         */
+        public int getPosition() {
+            return position;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        /**
+         * @return The number of lines with statements.
+         */
+        public int getLineCount() {
+            return lineCount;
+        }
+
+        /**
+         * @return The number of lines with only covered statements.
+         */
+        public int getCoveredLines() {
+            return coveredLines;
+        }
+
+        /**
+         * @return The number of lines with both covered and uncovered statements.
+         */
+        public int getPartialLines() {
+            return partialLines;
+        }
+
+        public int getUncoveredLines() {
+            return lineCount - coveredLines - partialLines;
+        }
+    }
+
+    /**
+     * Consecutive lines with the same coverage.
+     */
+    public static final class LineRange {
+
+        private final int first;
+        private int last;
+        private final LineState state;
+
+        LineRange(int line, LineState state) {
+            this.first = line;
+            this.last = line;
+            this.state = state;
+        }
+
+        public int getFirst() {
+            return first;
+        }
+
+        public int getLast() {
+            return last;
+        }
+
+        public LineState getState() {
+            return state;
+        }
+    }
+
+    /**
+     * Collects the statements of a DetailedXML report, and writes the index.
+     * <p>
+     * The line states of every file with statements are kept in memory until the index is written: one byte per line up to
+     * the last line with a statement, plus the file names. A code base of ten million lines takes about ten megabytes,
+     * however large its report is, but the memory is not constant, so the index is only built when the step asks for line
+     * coverage.
+     */
+    static final class Builder {
+
+        private final Map<Integer, String> fileNames = new HashMap<>();
+        private final Map<Integer, byte[]> lineStates = new HashMap<>(); // by file index, indexed by line
+
+        /**
+         * @param index The index of the file in the report.
+         * @param name  The path of the file.
+         */
+        void addFile(int index, @Nonnull String name) {
+            fileNames.put(index, name);
+        }
+
+        /**
+         * @param fileIndex The index of the file of the statement in the report.
+         * @param line      The first line of the statement.
+         * @param endLine   The last line of the statement.
+         * @param covered   Whether the statement was covered.
+         */
+        void addStatement(int fileIndex, int line, int endLine, boolean covered) {
+            if (line <= 0) {
+                return;
+            }
+            int last = Math.max(line, endLine);
+            byte[] states = lineStates.get(fileIndex);
+            if (states == null || states.length <= last) {
+                states = states == null ? new byte[Math.max(last + 1, 64)] : Arrays.copyOf(states, Math.max(last + 1, states.length * 2));
+                lineStates.put(fileIndex, states);
+            }
+            for (int current = line; current <= last; current++) {
+                states[current] |= covered ? COVERED : UNCOVERED;
+            }
+        }
+
+        /**
+         * Writes the index of the files that have statements.
+         *
+         * @param out Where to write the index.
+         * @throws IOException If the index cannot be written.
+         */
+        void write(@Nonnull OutputStream out) throws IOException {
+            Map<String, byte[]> files = new TreeMap<>();
+            for (Map.Entry<Integer, byte[]> file : lineStates.entrySet()) {
+                String name = fileNames.get(file.getKey());
+                files.put(name != null ? name : "#" + file.getKey(), file.getValue());
+            }
+            List<byte[]> names = new ArrayList<>();
+            int lineCount = 0;
+            int namesLength = 0;
+            for (Map.Entry<String, byte[]> file : files.entrySet()) {
+                byte[] name = file.getKey().getBytes(StandardCharsets.UTF_8);
+                names.add(name);
+                namesLength += name.length;
+                lineCount += countLines(file.getValue());
+            }
+            DataOutputStream data = new DataOutputStream(out);
+            data.writeInt(MAGIC);
+            data.writeInt(VERSION);
+            data.writeInt(files.size());
+            data.writeInt(lineCount);
+            data.writeInt(namesLength);
+            int nameOffset = 0;
+            int firstLine = 0;
+            int position = 0;
+            for (byte[] states : files.values()) {
+                int lines = countLines(states);
+                int covered = 0;
+                int partial = 0;
+                for (byte state : states) {
+                    covered += state == COVERED ? 1 : 0;
+                    partial += state == (COVERED | UNCOVERED) ? 1 : 0;
+                }
+                data.writeInt(nameOffset);
+                data.writeInt(names.get(position).length);
+                data.writeInt(firstLine);
+                data.writeInt(lines);
+                data.writeInt(covered);
+                data.writeInt(partial);
+                nameOffset += names.get(position++).length;
+                firstLine += lines;
+            }
+            byte[] coveredBits = new byte[(lineCount + 7) / 8];
+            byte[] uncoveredBits = new byte[(lineCount + 7) / 8];
+            position = 0;
+            for (byte[] states : files.values()) {
+                for (int line = 0; line < states.length; line++) {
+                    if (states[line] != 0) {
+                        data.writeInt(line);
+                        if ((states[line] & COVERED) != 0) {
+                            coveredBits[position / 8] |= 1 << (position % 8);
+                        }
+                        if ((states[line] & UNCOVERED) != 0) {
+                            uncoveredBits[position / 8] |= 1 << (position % 8);
+                        }
+                        position++;
+                    }
+                }
+            }
+            data.write(coveredBits);
+            data.write(uncoveredBits);
+            for (byte[] name : names) {
+                data.write(name);
+            }
+            data.flush();
+        }
+
+        private static int countLines(byte[] states) {
+            int lines = 0;
+            for (byte state : states) {
+                lines += state != 0 ? 1 : 0;
+            }
+            return lines;
+        }
+    }
+}
@@ -0,0 +1,181 @@
+package io.jenkins.plugins.testing;
+
+import hudson.FilePath;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import javax.annotation.CheckForNull;
+import javax.annotation.Nonnull;
+
+/**
+ * Merges snapshots into a running intermediate snapshot in the background while coverage is still being collected.
+ * <p>
+ * Whenever no background merge runs, all snapshots that finished since the last merge are merged, together with the
+ * running snapshot, into a new running snapshot (at most fan-in snapshots per merge). The next merge is started when the
+ * previous one completes, so no thread waits for them. When coverage collection is done, only the running snapshot and the
+ * snapshots that finished during the last background merge are left to merge.
+ */
+final class PipelinedMerger {
+
+    private final DotCoverStepExecution execution;
+    private final int fanIn;
+    private final FilePath workDir;
+    private final PrintStream buildConsole;
+    private final List<FilePath> unmerged = new ArrayList<>();
+    private final CompletableFuture<List<FilePath>> remaining = new CompletableFuture<>();
+    private FilePath runningSnapshot;
+    private int generation;
+    private boolean merging;
+    private boolean finishing;
+    private Throwable failure;
+
+    /**
+     * @param execution    The execution that launches dotCover.
+     * @param fanIn        The maximum number of snapshots that one dotCover process merges.
+     * @param workDir      The directory for the running snapshots.
+     * @param buildConsole The build console.
+     */
+    PipelinedMerger(@Nonnull DotCoverStepExecution execution, int fanIn, @Nonnull FilePath workDir, @Nonnull PrintStream buildConsole) {
+        this.execution = execution;
+        this.fanIn = Math.max(2, fanIn);
+        this.workDir = workDir;
+        this.buildConsole = buildConsole;
+    }
+
+    /**
+     * Hands a finished snapshot to the background merge.
+     *
+     * @param snapshot The snapshot.
+     */
+    void add(@Nonnull FilePath snapshot) {
+        Merge merge;
+        synchronized (this) {
+            unmerged.add(snapshot);
+            merge = nextMerge();
+        }
+        launch(merge);
+    }
+
+    /**
+     * Stops merging in the background.
+     *
+     * @return A future with the running snapshot, if any, followed by the snapshots that were not merged in the background,
+     * once the background merge that is still running completes; or a failed future if a background merge failed.
+     */
+    CompletableFuture<List<FilePath>> finish() {
+        synchronized (this) {
+            finishing = true;
+            if (merging) {
+                return remaining; // completed when the running merge completes
+            }
+        }
+        completeRemaining();
+        return remaining;
+    }
+
+    /**
+     * Takes the sources of the next background merge, if one can start. Called while holding the lock; the merge is
+     * launched with @{@link #launch(Merge)} after the lock was released, so that the remote calls that start dotCover do not
+     * block the workers that hand in snapshots.
+     *
+     * @return The next merge, or null if none can start.
+     */
+    @CheckForNull
+    private Merge nextMerge() {
+        int sourceCount = unmerged.size() + (runningSnapshot == null ? 0 : 1);
+        if (merging || finishing || failure != null || sourceCount < 2) {
+            return null;
+        }
+        List<FilePath> sources = new ArrayList<>();
+        if (runningSnapshot != null) {
+            sources.add(runningSnapshot);
+        }
+        while (!unmerged.isEmpty() && sources.size() < fanIn) {
+            sources.add(unmerged.remove(0));
+        }
+        merging = true;
+        return new Merge(sources, workDir.child("running-" + generation++ + SnapshotMerger.INTERMEDIATE_SNAPSHOT_SUFFIX));
+    }
+
+    private void launch(@CheckForNull Merge merge) {
+        if (merge == null) {
+            return;
+        }
+        WorkerPool.runInBlock(console -> {
+            console.println("Merging " + merge.sources.size() + " snapshots in the background.");
+            List<String> sourcePaths = new ArrayList<>();
+            for (FilePath source : merge.sources) {
+                sourcePaths.add(execution.toAgentPath(source));
+            }
+            return execution.launchDotCover(console, "Merge", "/Source=" + String.join(";", sourcePaths), "/Output=" + execution.toAgentPath(merge.output))
+                    .thenApply(exitCode -> null);
+        }, buildConsole).whenComplete((result, mergeFailure) -> merged(merge.output, mergeFailure));
+    }
+
+    private void merged(@Nonnull FilePath nextRunningSnapshot, @CheckForNull Throwable mergeFailure) {
+        Throwable failed = mergeFailure != null ? Futures.unwrap(mergeFailure) : null;
+        FilePath previousRunningSnapshot;
+        synchronized (this) {
+            previousRunningSnapshot = runningSnapshot; // not replaced by anyone else while merging
+        }
+        if (failed == null && previousRunningSnapshot != null) {
+            try {
+                previousRunningSnapshot.delete();
+            } catch (IOException | InterruptedException e) {
+                failed = e;
+            }
+        }
+        Merge next = null;
+        boolean complete;
+        synchronized (this) {
+            merging = false;
+            if (failed != null) {
+                failure = failed;
+            } else {
+                runningSnapshot = nextRunningSnapshot;
+            }
+            complete = finishing;
+            if (!complete) {
+                next = nextMerge();
+            }
+        }
+        if (complete) {
+            completeRemaining();
+        } else {
+            launch(next);
+        }
+    }
+
+    private void completeRemaining() {
+        Throwable failed;
+        List<FilePath> snapshots = new ArrayList<>();
+        synchronized (this) {
+            failed = failure;
+            if (runningSnapshot != null) {
+                snapshots.add(runningSnapshot);
+            }
+            snapshots.addAll(unmerged);
+        }
+        if (failed != null) {
+            remaining.completeExceptionally(failed);
+        } else {
+            remaining.complete(snapshots);
+        }
+    }
+
+    /**
+     * The sources and the output of a background merge.
+     */
+    private static final class Merge {
+
+        private final List<FilePath> sources;
+        private final FilePath output;
+
+        Merge(@Nonnull List<FilePath> sources, @Nonnull FilePath output) {
+            this.sources = sources;
+            this.output = output;
+        }
+    }
+}
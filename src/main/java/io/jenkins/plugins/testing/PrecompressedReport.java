@@ -0,0 +1,227 @@
+package io.jenkins.plugins.testing;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+import javax.annotation.CheckForNull;
+import javax.annotation.Nonnull;
+import javax.servlet.http.HttpServletResponse;
+import org.kohsuke.stapler.HttpResponse;
+import org.kohsuke.stapler.StaplerRequest;
+import org.kohsuke.stapler.StaplerResponse;
+
+/**
+ * Serves the files of an HTML report that a @{@link HtmlReportArchiver} copied, at the rest of the path of a request.
+ * <p>
+ * A gzip compressed file is sent as it is to clients that accept gzip, and decompressed for the others. Every response has
+ * an ETag and a Last-Modified header, and a request with a matching validator gets a 304 without a body. The files of a
+ * report never change, so the assets are cached by the browser for a year; the HTML pages are revalidated, because the
+ * iframe sandbox is applied to them while they are served.
+ */
+final class PrecompressedReport implements HttpResponse {
+
+    /**
+     * The content security policy of the report, which allows its own scripts and styles like the iframe sandbox does. The
+     * sandbox gives the report a unique origin, so its scripts cannot use the session of the user with Jenkins.
+     */
+    static final String CONTENT_SECURITY_POLICY = "sandbox allow-scripts; default-src 'self'; "
+            + "script-src 'self' 'unsafe-inline'; style-src 'self' 'unsafe-inline'; img-src 'self' data:";
+    private static final String ASSET_CACHE_CONTROL = "private, max-age=31536000, immutable";
+    private static final String PAGE_CACHE_CONTROL = "private, no-cache";
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final Map<String, String> CONTENT_TYPES = new HashMap<>();
+
+    static {
+        CONTENT_TYPES.put("css", "text/css");
+        CONTENT_TYPES.put("gif", "image/gif");
+        CONTENT_TYPES.put("htm", "text/html");
+        CONTENT_TYPES.put("html", "text/html");
+        CONTENT_TYPES.put("ico", "image/x-icon");
+        CONTENT_TYPES.put("jpg", "image/jpeg");
+        CONTENT_TYPES.put("jpeg", "image/jpeg");
+        CONTENT_TYPES.put("js", "application/javascript");
+        CONTENT_TYPES.put("json", "application/json");
+        CONTENT_TYPES.put("png", "image/png");
+        CONTENT_TYPES.put("svg", "image/svg+xml");
+        CONTENT_TYPES.put("txt", "text/plain");
+        CONTENT_TYPES.put("woff", "font/woff");
+        CONTENT_TYPES.put("woff2", "font/woff2");
+        CONTENT_TYPES.put("xml", "application/xml");
+    }
+
+    private final File reportDir;
+    private final String indexFileName;
+
+    /**
+     * @param reportDir     The directory that the report was copied into.
+     * @param indexFileName The name of the page that is served for a directory.
+     */
+    PrecompressedReport(@Nonnull File reportDir, @Nonnull String indexFileName) {
+        this.reportDir = reportDir;
+        this.indexFileName = indexFileName;
+    }
+
+    /**
+     * Sends the file of the report at the rest of the path of the request.
+     */
+    @Override
+    public void generateResponse(StaplerRequest request, StaplerResponse response, Object node) throws IOException {
+        serve(request.getRestOfPath(), request, response);
+    }
+
+    /**
+     * Sends a file of the report, or a 404 if the report has no such file.
+     *
+     * @param path     The path of the file in the report, like {@code /data/file.js}.
+     * @param request  The request.
+     * @param response The response.
+     * @throws IOException If the file cannot be sent.
+     */
+    void serve(@Nonnull String path, @Nonnull StaplerRequest request, @Nonnull StaplerResponse response) throws IOException {
+        String name = resolve(path);
+        File compressed = name != null ? new File(reportDir, name + HtmlReportArchiver.COMPRESSED_SUFFIX) : null;
+        File plain = name != null ? new File(reportDir, name) : null;
+        File file = compressed != null && compressed.isFile() ? compressed : plain != null && plain.isFile() ? plain : null;
+        if (file == null) {
+            response.sendError(HttpServletResponse.SC_NOT_FOUND);
+            return;
+        }
+        boolean isCompressed = file == compressed;
+        boolean isPage = isPage(name);
+        boolean sendCompressed = isCompressed && acceptsGzip(request.getHeader("Accept-Encoding"));
+        String eTag = "\"" + Long.toHexString(file.lastModified()) + "-" + Long.toHexString(file.length())
+                + (isPage ? "-sandbox" : "") + (sendCompressed ? "-gzip" : "") + "\"";
+        long lastModified = file.lastModified() / 1000 * 1000;
+        response.setHeader("ETag", eTag);
+        response.setDateHeader("Last-Modified", lastModified);
+        response.setHeader("Cache-Control", isPage ? PAGE_CACHE_CONTROL : ASSET_CACHE_CONTROL);
+        if (isCompressed) {
+            response.setHeader("Vary", "Accept-Encoding");
+        }
+        if (isNotModified(request, eTag, lastModified)) {
+            response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+            return;
+        }
+        response.setContentType(contentType(name));
+        response.setHeader("Content-Security-Policy", CONTENT_SECURITY_POLICY);
+        response.setHeader("X-Content-Type-Options", "nosniff");
+        if (sendCompressed) {
+            response.setHeader("Content-Encoding", "gzip");
+        }
+        try (InputStream in = isCompressed && !sendCompressed ? new GZIPInputStream(Files.newInputStream(file.toPath()), BUFFER_SIZE) : Files.newInputStream(file.toPath())) {
+            if (isPage) {
+                sendPage(in, sendCompressed, response.getOutputStream());
+            } else {
+                if (!isCompressed || sendCompressed) {
+                    response.setContentLengthLong(file.length());
+                }
+                copy(in, response.getOutputStream());
+            }
+        }
+    }
+
+    /**
+     * @return The path of the file relative to the report directory, or null if the path leaves the report directory.
+     */
+    @CheckForNull
+    private String resolve(String path) {
+        String name = path.startsWith("/") ? path.substring(1) : path;
+        if (name.isEmpty() || name.endsWith("/")) {
+            name += indexFileName;
+        }
+        if (name.indexOf('\\') >= 0 || name.indexOf('\0') >= 0) {
+            return null;
+        }
+        for (String segment : name.split("/", -1)) {
+            if (segment.isEmpty() || segment.equals(".") || segment.equals("..")) {
+                return null;
+            }
+        }
+        return name;
+    }
+
+    /**
+     * Sends a page with the iframe sandbox applied, compressing it again if the client accepts gzip.
+     */
+    private static void sendPage(InputStream in, boolean compress, OutputStream out) throws IOException {
+        InputStream page = compress ? new GZIPInputStream(in, BUFFER_SIZE) : in;
+        OutputStream body = compress ? new GZIPOutputStream(out, BUFFER_SIZE) : out;
+        // ISO-8859-1 maps every byte to one char and back, so content in any encoding passes through unchanged.
+        Reader reader = new InputStreamReader(page, StandardCharsets.ISO_8859_1);
+        Writer writer = new BufferedWriter(new OutputStreamWriter(body, StandardCharsets.ISO_8859_1), BUFFER_SIZE);
+        IframeSandboxRewriter.replace(reader, writer, DotCoverStep.IFRAME_NO_JAVASCRIPT, DotCoverStep.IFRAME_ALLOW_JAVASCRIPT);
+        writer.close();
+    }
+
+    private static void copy(InputStream in, OutputStream out) throws IOException {
+        byte[] buffer = new byte[BUFFER_SIZE];
+        int read;
+        while ((read = in.read(buffer)) != -1) {
+            out.write(buffer, 0, read);
+        }
+    }
+
+    private static boolean isNotModified(StaplerRequest request, String eTag, long lastModified) {
+        String ifNoneMatch = request.getHeader("If-None-Match");
+        if (ifNoneMatch != null) {
+            for (String candidate : ifNoneMatch.split(",")) {
+                String trimmed = candidate.trim();
+                if (trimmed.equals("*") || trimmed.equals(eTag) || trimmed.equals("W/" + eTag)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+        long ifModifiedSince = request.getDateHeader("If-Modified-Since");
+        return ifModifiedSince >= 0 && lastModified <= ifModifiedSince;
+    }
+
+    /**
+     * @param acceptEncoding The Accept-Encoding header of a request, or null if it has none.
+     * @return Whether the client accepts gzip.
+     */
+    static boolean acceptsGzip(@CheckForNull String acceptEncoding) {
+        if (acceptEncoding == null) {
+            return false;
+        }
+        for (String coding : acceptEncoding.split(",")) {
+            String[] parameters = coding.split(";");
+            String name = parameters[0].trim();
+            if (!name.equalsIgnoreCase("gzip") && !name.equals("*")) {
+                continue;
+            }
+            for (int i = 1; i < parameters.length; i++) {
+                String parameter = parameters[i].trim().toLowerCase(Locale.ENGLISH);
+                if (parameter.startsWith("q=") && parameter.substring(2).trim().matches("0(\\.0*)?")) {
+                    return false;
+                }
+            }
+            return true;
+        }
+        return false;
+    }
+
+    private static boolean isPage(String name) {
+        String lowerCase = name.toLowerCase(Locale.ENGLISH);
+        return lowerCase.endsWith(".html") || lowerCase.endsWith(".htm");
+    }
+
+    private static String contentType(String name) {
+        int dot = name.lastIndexOf('.');
+        String type = dot >= 0 ? CONTENT_TYPES.get(name.substring(dot + 1).toLowerCase(Locale.ENGLISH)) : null;
+        return type != null ? type : "application/octet-stream";
+    }
+}
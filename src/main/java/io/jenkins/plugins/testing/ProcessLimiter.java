@@ -0,0 +1,83 @@
+package io.jenkins.plugins.testing;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import javax.annotation.Nonnull;
+
+/**
+ * Limits the number of DotCover processes that run on a node at the same time, across all builds.
+ * <p>
+ * A permit is acquired asynchronously: when the limit is reached, the caller gets a future that completes when a running
+ * process releases its permit, so no thread waits for a permit. Permits are granted in the order they were asked for. The
+ * limit is given on every call, so that a changed configuration applies to the next permit.
+ */
+final class ProcessLimiter {
+
+    private static final Map<String, ProcessLimiter> LIMITERS = new ConcurrentHashMap<>();
+    private final Deque<CompletableFuture<Void>> waiting = new ArrayDeque<>();
+    private int running;
+
+    /**
+     * @param nodeName The name of the node.
+     * @return The limiter of the node.
+     */
+    static ProcessLimiter forNode(@Nonnull String nodeName) {
+        return LIMITERS.computeIfAbsent(nodeName, name -> new ProcessLimiter());
+    }
+
+    /**
+     * @param limit The maximum number of running processes, or 0 for no limit.
+     * @return A future that completes when the permit is granted. It is completed already if the limit is not reached.
+     */
+    synchronized CompletableFuture<Void> acquire(int limit) {
+        if (waiting.isEmpty() && isBelow(limit)) {
+            running++;
+            return CompletableFuture.completedFuture(null);
+        }
+        CompletableFuture<Void> permit = new CompletableFuture<>();
+        waiting.addLast(permit);
+        return permit;
+    }
+
+    /**
+     * Releases a permit, and grants the permits that are waiting as long as the limit allows.
+     *
+     * @param limit The maximum number of running processes, or 0 for no limit.
+     */
+    void release(int limit) {
+        List<CompletableFuture<Void>> granted = new ArrayList<>();
+        synchronized (this) {
+            running--;
+            while (!waiting.isEmpty() && isBelow(limit)) {
+                granted.add(waiting.removeFirst());
+                running++;
+            }
+        }
+        for (CompletableFuture<Void> permit : granted) {
+            permit.complete(null); // outside the lock, the permit starts the next process
+        }
+    }
+
+    /**
+     * @return The number of permits that are granted and not released.
+     */
+    synchronized int getRunning() {
+        return running;
+    }
+
+    /**
+     * @return The number of callers that wait for a permit.
+     */
+    synchronized int getWaiting() {
+        return waiting.size();
+    }
+
+    private boolean isBelow(int limit) {
+        return limit <= 0 || running < limit;
+    }
+}
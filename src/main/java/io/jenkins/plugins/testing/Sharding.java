@@ -0,0 +1,145 @@
+package io.jenkins.plugins.testing;
+
+import hudson.FilePath;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import javax.annotation.Nonnull;
+
+/**
+ * Splits the test assemblies of a sharded @{@link DotCoverStep} across its shards.
+ * <p>
+ * Every shard computes the split on its own, so it depends only on the workspace relative paths of the test assemblies and
+ * on the durations they are balanced on. The longest test assemblies are assigned first, each to the shard with the least
+ * total duration so far. Test assemblies without a known duration count with the average known duration.
+ */
+final class Sharding implements Serializable {
+
+    static final String SHARD_SNAPSHOT_PREFIX = "shard-";
+    private static final long serialVersionUID = 2204185933117263815L;
+    private final int shardCount;
+    private final int shardIndex;
+    private final Map<String, Long> durations;
+
+    /**
+     * @param shardCount The number of shards.
+     * @param shardIndex The zero-based index of this shard.
+     * @param durations  The durations of the test assemblies in milliseconds, by workspace relative path.
+     */
+    Sharding(int shardCount, int shardIndex, @Nonnull Map<String, Long> durations) {
+        if (shardIndex < 0 || shardIndex >= shardCount) {
+            throw new IllegalArgumentException("Invalid shard index " + shardIndex + ". Must be at least 0 and less than the shard count " + shardCount + ".");
+        }
+        this.shardCount = shardCount;
+        this.shardIndex = shardIndex;
+        this.durations = new HashMap<>(durations);
+    }
+
+    /**
+     * @param workspace  The remote path of the workspace.
+     * @param assemblies The test assemblies of all shards.
+     * @return The test assemblies of this shard, in the order they were given.
+     */
+    FilePath[] select(@Nonnull String workspace, @Nonnull FilePath[] assemblies) {
+        List<String> paths = new ArrayList<>();
+        for (FilePath assembly : assemblies) {
+            paths.add(relativePath(workspace, assembly.getRemote()));
+        }
+        Set<String> shard = new HashSet<>(assign(paths, durations, shardCount).get(shardIndex));
+        List<FilePath> selected = new ArrayList<>();
+        for (int index = 0; index < assemblies.length; index++) {
+            if (shard.contains(paths.get(index))) {
+                selected.add(assemblies[index]);
+            }
+        }
+        return selected.toArray(new FilePath[0]);
+    }
+
+    /**
+     * @return The file name of the snapshot with the coverage of this shard.
+     */
+    String getSnapshotName() {
+        return getName() + DotCoverStep.SNAPSHOT_MERGE_SUFFIX;
+    }
+
+    /**
+     * @return The name of this shard, usable in file names.
+     */
+    String getName() {
+        return SHARD_SNAPSHOT_PREFIX + (shardIndex + 1) + "-of-" + shardCount;
+    }
+
+    @Override
+    public String toString() {
+        return "shard " + (shardIndex + 1) + " of " + shardCount;
+    }
+
+    /**
+     * Assigns the test assemblies to shards, longest first, each to the shard with the least total duration so far.
+     *
+     * @param paths      The workspace relative paths of the test assemblies.
+     * @param durations  The known durations of the test assemblies in milliseconds, by workspace relative path.
+     * @param shardCount The number of shards.
+     * @return The workspace relative paths of the test assemblies of each shard.
+     */
+    static List<List<String>> assign(@Nonnull List<String> paths, @Nonnull Map<String, Long> durations, int shardCount) {
+        long knownTotal = 0;
+        int knownCount = 0;
+        for (String path : paths) {
+            Long duration = durations.get(path);
+            if (duration != null) {
+                knownTotal += duration;
+                knownCount++;
+            }
+        }
+        long defaultDuration = knownCount == 0 ? 1 : Math.max(1, knownTotal / knownCount);
+
+        List<String> sorted = new ArrayList<>(paths);
+        Collections.sort(sorted);
+        sorted.sort((first, second) -> Long.compare(durationOf(second, durations, defaultDuration), durationOf(first, durations, defaultDuration)));
+
+        List<List<String>> shards = new ArrayList<>();
+        long[] loads = new long[shardCount];
+        for (int index = 0; index < shardCount; index++) {
+            shards.add(new ArrayList<>());
+        }
+        for (String path : sorted) {
+            int leastLoaded = 0;
+            for (int index = 1; index < shardCount; index++) {
+                if (loads[index] < loads[leastLoaded]) {
+                    leastLoaded = index;
+                }
+            }
+            shards.get(leastLoaded).add(path);
+            loads[leastLoaded] += durationOf(path, durations, defaultDuration);
+        }
+        return shards;
+    }
+
+    private static long durationOf(String path, Map<String, Long> durations, long defaultDuration) {
+        Long duration = durations.get(path);
+        return duration != null ? duration : defaultDuration;
+    }
+
+    /**
+     * @param workspace The remote path of the workspace.
+     * @param remote    The remote path of a file in the workspace.
+     * @return The path of the file relative to the workspace, with forward slashes, so that it is the same on every agent.
+     */
+    static String relativePath(@Nonnull String workspace, @Nonnull String remote) {
+        String path = remote;
+        if (remote.startsWith(workspace)) {
+            path = remote.substring(workspace.length());
+        }
+        path = path.replace('\\', '/');
+        while (path.startsWith("/")) {
+            path = path.substring(1);
+        }
+        return path;
+    }
+}
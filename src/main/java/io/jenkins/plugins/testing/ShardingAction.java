@@ -0,0 +1,45 @@
+package io.jenkins.plugins.testing;
+
+import hudson.model.InvisibleAction;
+import hudson.model.Run;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.Map;
+import java.util.TreeMap;
+import javax.annotation.Nonnull;
+
+/**
+ * The test assembly durations that all shards of a build balance on.
+ * <p>
+ * Shards of the same build may start after other shards have already recorded new durations, so the durations are read
+ * from the @{@link DurationHistory} once, by the first shard, and every shard of the build splits the test assemblies
+ * with the same durations.
+ */
+public final class ShardingAction extends InvisibleAction {
+
+    private final Map<String, Long> durations;
+
+    private ShardingAction(Map<String, Long> durations) {
+        this.durations = new TreeMap<>(durations);
+    }
+
+    Map<String, Long> getDurations() {
+        return Collections.unmodifiableMap(durations);
+    }
+
+    /**
+     * @param run The build.
+     * @return The test assembly durations of the build, read from the history of the job on first use.
+     * @throws IOException If the history cannot be read.
+     */
+    static Map<String, Long> getDurations(@Nonnull Run<?, ?> run) throws IOException {
+        synchronized (run) {
+            ShardingAction action = run.getAction(ShardingAction.class);
+            if (action == null) {
+                action = new ShardingAction(DurationHistory.load(run.getParent()));
+                run.addAction(action);
+            }
+            return action.getDurations();
+        }
+    }
+}
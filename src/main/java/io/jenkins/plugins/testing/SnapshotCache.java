@@ -0,0 +1,267 @@
+package io.jenkins.plugins.testing;
+
+import hudson.FilePath;
+import hudson.remoting.VirtualChannel;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.UUID;
+import javax.annotation.Nonnull;
+import jenkins.MasterToSlaveFileCallable;
+import org.dom4j.Document;
+import org.dom4j.Element;
+
+/**
+ * A size-bounded store of coverage snapshots on an agent, keyed by a hash of everything that goes into a Cover run.
+ * <p>
+ * Entries are evicted least recently used first; a cache hit counts as a use.
+ */
+final class SnapshotCache {
+
+    static final String CACHE_DIR_NAME = "dotcover-snapshot-cache";
+    private static final String ENTRY_SUFFIX = ".cov";
+    private static final Set<String> HASHED_EXTENSIONS = new HashSet<>(Arrays.asList("dll", "exe", "pdb", "config", "json"));
+
+    private final FilePath cacheDir;
+    private final long maxSizeInBytes;
+
+    SnapshotCache(@Nonnull FilePath cacheDir, long maxSizeInBytes) {
+        this.cacheDir = cacheDir;
+        this.maxSizeInBytes = maxSizeInBytes;
+    }
+
+    /**
+     * Computes the cache key for covering a batch of test assemblies. The key covers the test assemblies, the binaries next
+     * to them, the dotCover executable and the dotCover configuration, except for the elements that only say where output
+     * goes.
+     *
+     * @param batch            The test assemblies that are covered together.
+     * @param config           The dotCover configuration for the batch.
+     * @param dotCoverToolPath The agent path of the dotCover executable.
+     * @return The cache key.
+     * @throws IOException          If the files cannot be read.
+     * @throws InterruptedException If interrupted while hashing on the agent.
+     */
+    static String computeKey(@Nonnull List<FilePath> batch, @Nonnull Document config, @Nonnull String dotCoverToolPath) throws IOException, InterruptedException {
+        MessageDigest digest = sha256();
+        digest.update(keyedConfig(config));
+        for (FilePath assembly : batch) {
+            digest.update(assembly.act(new AssemblyDigest(dotCoverToolPath)));
+        }
+        return toHex(digest.digest());
+    }
+
+    /**
+     * Computes the same key as {@link #computeKey(List, Document, String)}, on the agent that holds the test assemblies.
+     *
+     * @param batch            The test assemblies that are covered together.
+     * @param config           The dotCover configuration for the batch.
+     * @param dotCoverToolPath The agent path of the dotCover executable.
+     * @return The cache key.
+     * @throws IOException If the files cannot be read.
+     */
+    static String computeKeyLocally(@Nonnull List<File> batch, @Nonnull Document config, @Nonnull String dotCoverToolPath) throws IOException {
+        MessageDigest digest = sha256();
+        digest.update(keyedConfig(config));
+        for (File assembly : batch) {
+            digest.update(digestAssembly(assembly, dotCoverToolPath));
+        }
+        return toHex(digest.digest());
+    }
+
+    private static byte[] keyedConfig(Document config) {
+        Document keyedConfig = (Document) config.clone();
+        Element analyseParams = keyedConfig.getRootElement();
+        for (String locationElement : new String[]{"Output", "TempDir"}) {
+            Element element = analyseParams.element(locationElement);
+            if (element != null) {
+                element.detach();
+            }
+        }
+        return keyedConfig.asXML().getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static byte[] digestAssembly(File assembly, String dotCoverToolPath) throws IOException {
+        MessageDigest digest = sha256();
+        File dotCover = new File(dotCoverToolPath);
+        digest.update((dotCoverToolPath + ':' + dotCover.length() + ':' + dotCover.lastModified()).getBytes(StandardCharsets.UTF_8));
+        digest.update(assembly.getName().getBytes(StandardCharsets.UTF_8));
+
+        File[] siblings = assembly.getParentFile().listFiles();
+        if (siblings == null) {
+            throw new IOException("Unable to list the binaries next to " + assembly);
+        }
+        Arrays.sort(siblings, Comparator.comparing(File::getName));
+        byte[] buffer = new byte[64 * 1024];
+        for (File sibling : siblings) {
+            if (!sibling.isFile() || !HASHED_EXTENSIONS.contains(extensionOf(sibling))) {
+                continue;
+            }
+            digest.update(sibling.getName().getBytes(StandardCharsets.UTF_8));
+            try (InputStream in = Files.newInputStream(sibling.toPath())) {
+                int read;
+                while ((read = in.read(buffer)) != -1) {
+                    digest.update(buffer, 0, read);
+                }
+            }
+        }
+        return digest.digest();
+    }
+
+    private static String extensionOf(File file) {
+        String name = file.getName();
+        int dot = name.lastIndexOf('.');
+        return dot < 0 ? "" : name.substring(dot + 1).toLowerCase(Locale.ENGLISH);
+    }
+
+    /**
+     * Copies a cached snapshot to the given location.
+     *
+     * @param key      The cache key.
+     * @param snapshot Where to put the snapshot.
+     * @return true if the snapshot was cached, false otherwise.
+     * @throws IOException          If the cached snapshot cannot be copied.
+     * @throws InterruptedException If interrupted while copying.
+     */
+    boolean restore(@Nonnull String key, @Nonnull FilePath snapshot) throws IOException, InterruptedException {
+        return cacheDir.act(new Restore(key, snapshot.getRemote()));
+    }
+
+    /**
+     * Adds a snapshot to the cache and evicts the least recently used snapshots that no longer fit.
+     *
+     * @param key      The cache key.
+     * @param snapshot The snapshot to cache.
+     * @throws IOException          If the snapshot cannot be copied.
+     * @throws InterruptedException If interrupted while copying.
+     */
+    void store(@Nonnull String key, @Nonnull FilePath snapshot) throws IOException, InterruptedException {
+        cacheDir.act(new Store(key, snapshot.getRemote(), maxSizeInBytes));
+    }
+
+    private static MessageDigest sha256() throws IOException {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IOException(e);
+        }
+    }
+
+    private static String toHex(byte[] bytes) {
+        StringBuilder hex = new StringBuilder();
+        for (byte b : bytes) {
+            hex.append(String.format("%02x", b));
+        }
+        return hex.toString();
+    }
+
+    private static final class AssemblyDigest extends MasterToSlaveFileCallable<byte[]> {
+
+        private static final long serialVersionUID = 2640917744130954307L;
+        private final String dotCoverToolPath;
+
+        AssemblyDigest(String dotCoverToolPath) {
+            this.dotCoverToolPath = dotCoverToolPath;
+        }
+
+        @Override
+        public byte[] invoke(File assembly, VirtualChannel channel) throws IOException {
+            return digestAssembly(assembly, dotCoverToolPath);
+        }
+    }
+
+    private static final class Restore extends MasterToSlaveFileCallable<Boolean> {
+
+        private static final long serialVersionUID = -6044839658893718227L;
+        private final String key;
+        private final String snapshotPath;
+
+        Restore(String key, String snapshotPath) {
+            this.key = key;
+            this.snapshotPath = snapshotPath;
+        }
+
+        @Override
+        public Boolean invoke(File cacheDir, VirtualChannel channel) throws IOException {
+            File entry = new File(cacheDir, key + ENTRY_SUFFIX);
+            synchronized (Store.LOCK) {
+                if (!entry.isFile()) {
+                    return false;
+                }
+                Files.copy(entry.toPath(), new File(snapshotPath).toPath(), StandardCopyOption.REPLACE_EXISTING);
+                if (!entry.setLastModified(System.currentTimeMillis())) {
+                    throw new IOException("Unable to mark " + entry + " as recently used");
+                }
+                return true;
+            }
+        }
+    }
+
+    private static final class Store extends MasterToSlaveFileCallable<Void> {
+
+        private static final long serialVersionUID = 1837591720448116540L;
+        private static final Object LOCK = new Object();
+        private final String key;
+        private final String snapshotPath;
+        private final long maxSizeInBytes;
+
+        Store(String key, String snapshotPath, long maxSizeInBytes) {
+            this.key = key;
+            this.snapshotPath = snapshotPath;
+            this.maxSizeInBytes = maxSizeInBytes;
+        }
+
+        @Override
+        public Void invoke(File cacheDir, VirtualChannel channel) throws IOException {
+            File snapshot = new File(snapshotPath);
+            if (!snapshot.isFile()) {
+                return null;
+            }
+            Files.createDirectories(cacheDir.toPath());
+            File temp = new File(cacheDir, key + "." + UUID.randomUUID() + ".tmp");
+            try {
+                Files.copy(snapshot.toPath(), temp.toPath());
+                synchronized (LOCK) {
+                    Files.move(temp.toPath(), new File(cacheDir, key + ENTRY_SUFFIX).toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                    evict(cacheDir);
+                }
+            } finally {
+                Files.deleteIfExists(temp.toPath());
+            }
+            return null;
+        }
+
+        private void evict(File cacheDir) throws IOException {
+            File[] files = cacheDir.listFiles((dir, name) -> name.endsWith(ENTRY_SUFFIX));
+            if (files == null) {
+                return;
+            }
+            List<File> entries = new ArrayList<>(Arrays.asList(files));
+            entries.sort(Comparator.comparingLong(File::lastModified));
+            long totalSize = 0;
+            for (File entry : entries) {
+                totalSize += entry.length();
+            }
+            for (File entry : entries) {
+                if (totalSize <= maxSizeInBytes) {
+                    break;
+                }
+                long size = entry.length();
+                Files.deleteIfExists(entry.toPath());
+                totalSize -= size;
+            }
+        }
+    }
+}
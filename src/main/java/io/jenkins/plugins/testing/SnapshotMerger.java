@@ -0,0 +1,152 @@
+package io.jenkins.plugins.testing;
+
+import hudson.FilePath;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import javax.annotation.Nonnull;
+
+/**
+ * Merges coverage snapshots with dotCover in a tree of bounded-size groups.
+ * <p>
+ * As long as there are more snapshots than the fan-in, the snapshots are split into groups of at most fan-in snapshots,
+ * the groups are merged concurrently into intermediate snapshots, and the intermediate snapshots take the place of the
+ * snapshots for the next level. This keeps every dotCover Merge process, and its command line, bounded in size. The next
+ * level starts when the merges of the previous level complete, without a thread waiting for them.
+ */
+final class SnapshotMerger {
+
+    static final String INTERMEDIATE_SNAPSHOT_SUFFIX = ".intermediate.cov";
+    private final Launcher launcher;
+    private final int fanIn;
+    private final int parallelism;
+    private final FilePath workDir;
+
+    /**
+     * @param execution   The execution that launches dotCover.
+     * @param fanIn       The maximum number of snapshots that one dotCover process merges.
+     * @param parallelism The maximum number of dotCover processes that merge at the same time.
+     * @param workDir     The directory for intermediate snapshots.
+     */
+    SnapshotMerger(@Nonnull DotCoverStepExecution execution, int fanIn, int parallelism, @Nonnull FilePath workDir) {
+        this(new Launcher() {
+            @Override
+            public String toAgentPath(@Nonnull FilePath file) throws IOException, InterruptedException {
+                return execution.toAgentPath(file);
+            }
+
+            @Override
+            public CompletableFuture<Void> merge(@Nonnull List<String> snapshotPaths, @Nonnull String outputPath, @Nonnull PrintStream console) {
+                return execution.launchDotCover(console, "Merge", "/Source=" + String.join(";", snapshotPaths), "/Output=" + outputPath).thenApply(exitCode -> null);
+            }
+        }, fanIn, parallelism, workDir);
+    }
+
+    /**
+     * @param launcher    The launcher of the dotCover Merge processes.
+     * @param fanIn       The maximum number of snapshots that one dotCover process merges.
+     * @param parallelism The maximum number of dotCover processes that merge at the same time.
+     * @param workDir     The directory for intermediate snapshots.
+     */
+    SnapshotMerger(@Nonnull Launcher launcher, int fanIn, int parallelism, @Nonnull FilePath workDir) {
+        this.launcher = launcher;
+        this.fanIn = Math.max(2, fanIn);
+        this.parallelism = Math.max(1, parallelism);
+        this.workDir = workDir;
+    }
+
+    /**
+     * Merges the snapshots into one snapshot.
+     *
+     * @param snapshots  The snapshots to merge.
+     * @param outputPath The agent path of the merged snapshot.
+     * @param console    The console to print progress to.
+     * @return A future that completes when the snapshots are merged, and the intermediate snapshots are deleted.
+     */
+    CompletableFuture<Void> merge(@Nonnull List<FilePath> snapshots, @Nonnull String outputPath, @Nonnull PrintStream console) {
+        if (snapshots.isEmpty()) {
+            return CompletableFuture.completedFuture(null);
+        }
+        List<FilePath> intermediateSnapshots = Collections.synchronizedList(new ArrayList<>());
+        return Futures.andFinally(Futures.call(() -> mergeLevel(snapshots, 0, outputPath, console, intermediateSnapshots)), () -> {
+            for (FilePath intermediateSnapshot : new ArrayList<>(intermediateSnapshots)) {
+                intermediateSnapshot.delete();
+            }
+        });
+    }
+
+    private CompletableFuture<Void> mergeLevel(List<FilePath> level, int depth, String outputPath, PrintStream console, List<FilePath> intermediateSnapshots)
+            throws IOException, InterruptedException {
+        if (level.size() <= fanIn) {
+            return launchMerge(level, outputPath, console);
+        }
+        List<List<FilePath>> groups = partition(level, fanIn);
+        console.println("Merging " + level.size() + " snapshots in " + groups.size() + " groups of at most " + fanIn + ".");
+        List<FilePath> nextLevel = new ArrayList<>();
+        List<WorkerPool.Task> merges = new ArrayList<>();
+        for (int index = 0; index < groups.size(); index++) {
+            List<FilePath> group = groups.get(index);
+            if (group.size() == 1) {
+                nextLevel.add(group.get(0));
+                continue;
+            }
+            FilePath intermediateSnapshot = workDir.child("merge-" + depth + "-" + index + INTERMEDIATE_SNAPSHOT_SUFFIX);
+            intermediateSnapshots.add(intermediateSnapshot);
+            nextLevel.add(intermediateSnapshot);
+            merges.add(groupConsole -> launchMerge(group, launcher.toAgentPath(intermediateSnapshot), groupConsole));
+        }
+        return new WorkerPool(parallelism, console).runAll(merges)
+                .thenCompose(Futures.compose(merged -> mergeLevel(nextLevel, depth + 1, outputPath, console, intermediateSnapshots)));
+    }
+
+    private CompletableFuture<Void> launchMerge(List<FilePath> snapshots, String outputPath, PrintStream console) throws IOException, InterruptedException {
+        List<String> snapshotPaths = new ArrayList<>();
+        for (FilePath snapshot : snapshots) {
+            snapshotPaths.add(launcher.toAgentPath(snapshot));
+        }
+        return launcher.merge(snapshotPaths, outputPath, console);
+    }
+
+    /**
+     * Splits the snapshots into as few groups of at most the given size as possible, keeping the groups about equally large.
+     *
+     * @param snapshots The snapshots.
+     * @param maxSize   The maximum size of a group.
+     * @return The groups, in the order of the snapshots.
+     */
+    static <T> List<List<T>> partition(@Nonnull List<T> snapshots, int maxSize) {
+        int groupCount = (snapshots.size() + maxSize - 1) / maxSize;
+        List<List<T>> groups = new ArrayList<>();
+        int start = 0;
+        for (int index = 0; index < groupCount; index++) {
+            int size = (snapshots.size() - start) / (groupCount - index);
+            groups.add(new ArrayList<>(snapshots.subList(start, start + size)));
+            start += size;
+        }
+        return groups;
+    }
+
+    /**
+     * Starts the dotCover Merge processes of a @{@link SnapshotMerger}.
+     */
+    interface Launcher {
+
+        /**
+         * @param file A snapshot.
+         * @return The path of the snapshot on the agent, as dotCover is given it.
+         */
+        String toAgentPath(@Nonnull FilePath file) throws IOException, InterruptedException;
+
+        /**
+         * @param snapshotPaths The agent paths of the snapshots to merge.
+         * @param outputPath    The agent path of the merged snapshot.
+         * @param console       The console to print the output of dotCover to.
+         * @return A future that completes when the snapshots are merged.
+         */
+        CompletableFuture<Void> merge(@Nonnull List<String> snapshotPaths, @Nonnull String outputPath, @Nonnull PrintStream console)
+                throws IOException, InterruptedException;
+    }
+}
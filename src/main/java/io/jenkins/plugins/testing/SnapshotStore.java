@@ -0,0 +1,236 @@
+package io.jenkins.plugins.testing;
+
+import hudson.FilePath;
+import hudson.remoting.Channel;
+import hudson.remoting.RemoteInputStream;
+import hudson.remoting.RemoteOutputStream;
+import hudson.remoting.VirtualChannel;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.UUID;
+import java.util.regex.Pattern;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+import javax.annotation.CheckForNull;
+import javax.annotation.Nonnull;
+import jenkins.MasterToSlaveFileCallable;
+import jenkins.model.Jenkins;
+
+/**
+ * A size-bounded store of merged coverage snapshots on the controller, keyed by the SHA-256 hash of their content.
+ * <p>
+ * Snapshots are stored gzip compressed, so that they are kept for later analysis without archiving a full snapshot per
+ * build, and identical snapshots of repeated builds are stored once. The snapshot is compressed and hashed on the agent
+ * and streamed to the controller compressed. Entries are evicted least recently used first, where storing an identical
+ * snapshot again and reading an entry count as a use.
+ */
+final class SnapshotStore {
+
+    static final String STORE_DIR_NAME = "dotcover-snapshots";
+    private static final String ENTRY_SUFFIX = ".cov.gz";
+    private static final Pattern HASH = Pattern.compile("[0-9a-f]{64}");
+    private static final Object LOCK = new Object();
+
+    private final File storeDir;
+    private final long maxSizeInBytes;
+
+    /**
+     * @param storeDir       The directory of the store.
+     * @param maxSizeInBytes The maximum total size of the compressed snapshots.
+     */
+    SnapshotStore(@Nonnull File storeDir, long maxSizeInBytes) {
+        this.storeDir = storeDir;
+        this.maxSizeInBytes = maxSizeInBytes;
+    }
+
+    /**
+     * @return The store of this Jenkins instance, limited to the size set in the global DotCover configuration.
+     */
+    static SnapshotStore get() {
+        long maxSizeInBytes = DotCoverConfiguration.getInstance().getSnapshotStoreSize() * 1024L * 1024L;
+        return new SnapshotStore(new File(Jenkins.get().getRootDir(), STORE_DIR_NAME), maxSizeInBytes);
+    }
+
+    /**
+     * Adds a snapshot to the store, unless an identical snapshot is stored already, and evicts the least recently used
+     * snapshots that no longer fit.
+     *
+     * @param snapshot The snapshot, on any node.
+     * @return The hash of the snapshot.
+     * @throws IOException          If the snapshot cannot be read or stored.
+     * @throws InterruptedException If interrupted while transferring the snapshot.
+     */
+    String store(@Nonnull FilePath snapshot) throws IOException, InterruptedException {
+        Files.createDirectories(storeDir.toPath());
+        File temp = new File(storeDir, UUID.randomUUID() + ".tmp");
+        try {
+            String hash;
+            try (OutputStream out = Files.newOutputStream(temp.toPath())) {
+                hash = snapshot.act(new Compress(new RemoteOutputStream(out)));
+                VirtualChannel channel = snapshot.getChannel();
+                if (channel instanceof Channel) {
+                    ((Channel) channel).syncLocalIO(); // the compressed snapshot is written asynchronously
+                }
+            }
+            synchronized (LOCK) {
+                File entry = getEntry(hash);
+                if (entry.isFile()) {
+                    touch(entry);
+                } else {
+                    Files.move(temp.toPath(), entry.toPath(), StandardCopyOption.ATOMIC_MOVE);
+                }
+                evict(entry);
+            }
+            return hash;
+        } finally {
+            Files.deleteIfExists(temp.toPath());
+        }
+    }
+
+    /**
+     * Copies a stored snapshot to the given location. The snapshot is streamed compressed and decompressed there.
+     *
+     * @param hash     The hash of the snapshot.
+     * @param snapshot Where to put the snapshot, on any node.
+     * @return true if the snapshot was stored, false if it was evicted or never stored.
+     * @throws IOException          If the snapshot cannot be copied.
+     * @throws InterruptedException If interrupted while copying.
+     */
+    boolean restore(@Nonnull String hash, @Nonnull FilePath snapshot) throws IOException, InterruptedException {
+        File entry;
+        synchronized (LOCK) {
+            entry = find(hash);
+            if (entry == null) {
+                return false;
+            }
+            touch(entry);
+        }
+        try (InputStream in = Files.newInputStream(entry.toPath())) {
+            snapshot.act(new Decompress(new RemoteInputStream(in, RemoteInputStream.Flag.GREEDY)));
+        }
+        return true;
+    }
+
+    /**
+     * @param hash The hash of a snapshot.
+     * @return The compressed snapshot, or null if it is not stored.
+     */
+    @CheckForNull
+    File find(@Nonnull String hash) {
+        if (!HASH.matcher(hash).matches()) {
+            return null;
+        }
+        File entry = getEntry(hash);
+        return entry.isFile() ? entry : null;
+    }
+
+    private File getEntry(String hash) {
+        return new File(storeDir, hash + ENTRY_SUFFIX);
+    }
+
+    private static void touch(File entry) throws IOException {
+        if (!entry.setLastModified(System.currentTimeMillis())) {
+            throw new IOException("Unable to mark " + entry + " as recently used");
+        }
+    }
+
+    private void evict(File keep) throws IOException {
+        File[] files = storeDir.listFiles((dir, name) -> name.endsWith(ENTRY_SUFFIX));
+        if (files == null) {
+            return;
+        }
+        List<File> entries = new ArrayList<>(Arrays.asList(files));
+        entries.sort(Comparator.comparingLong(File::lastModified));
+        long totalSize = 0;
+        for (File entry : entries) {
+            totalSize += entry.length();
+        }
+        for (File entry : entries) {
+            if (totalSize <= maxSizeInBytes) {
+                break;
+            }
+            if (entry.equals(keep)) {
+                continue; // the snapshot that was just stored is kept, even if it does not fit on its own
+            }
+            long size = entry.length();
+            Files.deleteIfExists(entry.toPath());
+            totalSize -= size;
+        }
+    }
+
+    private static MessageDigest sha256() throws IOException {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IOException(e);
+        }
+    }
+
+    private static String toHex(byte[] bytes) {
+        StringBuilder hex = new StringBuilder();
+        for (byte b : bytes) {
+            hex.append(String.format("%02x", b));
+        }
+        return hex.toString();
+    }
+
+    /**
+     * Hashes a snapshot and streams it gzip compressed. Invoked on the snapshot.
+     */
+    private static final class Compress extends MasterToSlaveFileCallable<String> {
+
+        private static final long serialVersionUID = -2179426826375069347L;
+        private final OutputStream out;
+
+        Compress(OutputStream out) {
+            this.out = out;
+        }
+
+        @Override
+        public String invoke(File snapshot, VirtualChannel channel) throws IOException {
+            MessageDigest digest = sha256();
+            byte[] buffer = new byte[64 * 1024];
+            try (InputStream in = new DigestInputStream(Files.newInputStream(snapshot.toPath()), digest);
+                 GZIPOutputStream compressed = new GZIPOutputStream(out, buffer.length)) {
+                int read;
+                while ((read = in.read(buffer)) != -1) {
+                    compressed.write(buffer, 0, read);
+                }
+            }
+            return toHex(digest.digest());
+        }
+    }
+
+    /**
+     * Writes a gzip compressed stream to a snapshot. Invoked on the snapshot.
+     */
+    private static final class Decompress extends MasterToSlaveFileCallable<Void> {
+
+        private static final long serialVersionUID = 4981795230611302454L;
+        private final InputStream in;
+
+        Decompress(InputStream in) {
+            this.in = in;
+        }
+
+        @Override
+        public Void invoke(File snapshot, VirtualChannel channel) throws IOException {
+            Files.createDirectories(snapshot.getAbsoluteFile().getParentFile().toPath());
+            try (InputStream decompressed = new GZIPInputStream(in)) {
+                Files.copy(decompressed, snapshot.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            }
+            return null;
+        }
+    }
+}
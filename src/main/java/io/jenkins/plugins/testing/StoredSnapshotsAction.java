@@ -0,0 +1,83 @@
+package io.jenkins.plugins.testing;
+
+import hudson.model.InvisibleAction;
+import hudson.model.Run;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import javax.annotation.CheckForNull;
+import javax.annotation.Nonnull;
+
+/**
+ * The merged snapshots of a build that were kept in the @{@link SnapshotStore}, in the order the step executions that
+ * merged them finished.
+ * <p>
+ * Every unsharded step execution has the same name, so a snapshot is identified by its position, like the reports of the
+ * @{@link ArchivedHtmlReportAction} and the @{@link LazyHtmlReportAction}, and not by the name of its step execution.
+ */
+public final class StoredSnapshotsAction extends InvisibleAction {
+
+    private final List<Snapshot> entries = new CopyOnWriteArrayList<>();
+
+    /**
+     * @return The stored snapshots, in the order their step executions finished.
+     */
+    public List<Snapshot> getSnapshots() {
+        return Collections.unmodifiableList(entries);
+    }
+
+    /**
+     * @param position The position of the snapshot.
+     * @return The stored snapshot, or null if there is no snapshot at the position.
+     */
+    @CheckForNull
+    public Snapshot getSnapshot(int position) {
+        return position >= 0 && position < entries.size() ? entries.get(position) : null;
+    }
+
+    /**
+     * Records a stored snapshot of a build.
+     *
+     * @param run  The build.
+     * @param name The name of the step execution that merged the snapshot.
+     * @param hash The hash of the snapshot.
+     */
+    static void addTo(@Nonnull Run<?, ?> run, @Nonnull String name, @Nonnull String hash) {
+        synchronized (run) {
+            StoredSnapshotsAction action = run.getAction(StoredSnapshotsAction.class);
+            if (action == null) {
+                action = new StoredSnapshotsAction();
+                run.addAction(action);
+            }
+            action.entries.add(new Snapshot(name, hash));
+        }
+    }
+
+    /**
+     * A merged snapshot kept in the snapshot store.
+     */
+    public static final class Snapshot {
+
+        private final String name;
+        private final String hash;
+
+        Snapshot(String name, String hash) {
+            this.name = name;
+            this.hash = hash;
+        }
+
+        /**
+         * @return The name of the step execution that merged the snapshot.
+         */
+        public String getName() {
+            return name;
+        }
+
+        /**
+         * @return The hash of the snapshot in the snapshot store.
+         */
+        public String getHash() {
+            return hash;
+        }
+    }
+}
@@ -0,0 +1,112 @@
+package io.jenkins.plugins.testing;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import javax.annotation.Nonnull;
+
+/**
+ * Runs a list of asynchronous tasks, a bounded number at a time.
+ * <p>
+ * No thread waits for the tasks: the next task is started when a running task completes. When more than one task runs at
+ * a time, every task writes to a private buffer that is copied to the build console in one block once the task is done, so
+ * the output of concurrent dotCover processes is never interleaved.
+ */
+final class WorkerPool {
+
+    private final int size;
+    private final PrintStream buildConsole;
+
+    WorkerPool(int size, @Nonnull PrintStream buildConsole) {
+        this.size = Math.max(1, size);
+        this.buildConsole = buildConsole;
+    }
+
+    /**
+     * Starts the tasks. The first failure stops starting new tasks; the tasks that are still running are left to complete.
+     *
+     * @param tasks The tasks to run.
+     * @return A future that completes when all tasks completed, or fails with the first failure once no task runs anymore.
+     */
+    CompletableFuture<Void> runAll(@Nonnull List<? extends Task> tasks) {
+        Run run = new Run(tasks, size > 1 && tasks.size() > 1);
+        for (int index = 0; index < Math.min(size, Math.max(1, tasks.size())); index++) {
+            run.startNext();
+        }
+        return run.done;
+    }
+
+    /**
+     * Runs a task with its output buffered, and copies the output to the build console in one block when the task is done.
+     *
+     * @param task         The task to run.
+     * @param buildConsole The build console.
+     * @return A future that completes like the task.
+     */
+    static CompletableFuture<Void> runInBlock(@Nonnull Task task, @Nonnull PrintStream buildConsole) {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        return Futures.andFinally(Futures.call(() -> task.start(new PrintStream(buffer, true, StandardCharsets.UTF_8.name()))), () -> {
+            synchronized (buildConsole) {
+                buildConsole.write(buffer.toByteArray(), 0, buffer.size());
+                buildConsole.flush();
+            }
+        });
+    }
+
+    /**
+     * The tasks of one call to {@link #runAll(List)}.
+     */
+    private final class Run {
+
+        private final Deque<Task> pending;
+        private final boolean buffered;
+        private final CompletableFuture<Void> done = new CompletableFuture<>();
+        private int running;
+        private Throwable failure;
+
+        Run(List<? extends Task> tasks, boolean buffered) {
+            this.pending = new ArrayDeque<>(tasks);
+            this.buffered = buffered;
+        }
+
+        void startNext() {
+            Task task;
+            synchronized (this) {
+                if (failure != null || pending.isEmpty()) {
+                    if (running == 0) {
+                        if (failure != null) {
+                            done.completeExceptionally(failure);
+                        } else {
+                            done.complete(null);
+                        }
+                    }
+                    return;
+                }
+                task = pending.removeFirst();
+                running++;
+            }
+            CompletableFuture<Void> started = buffered ? runInBlock(task, buildConsole) : Futures.call(() -> task.start(buildConsole));
+            started.whenComplete((result, taskFailure) -> {
+                synchronized (this) {
+                    running--;
+                    if (taskFailure != null && failure == null) {
+                        failure = Futures.unwrap(taskFailure);
+                    }
+                }
+                startNext();
+            });
+        }
+    }
+
+    /**
+     * A unit of asynchronous work that prints its progress to the console it is given.
+     */
+    interface Task {
+        CompletableFuture<Void> start(@Nonnull PrintStream console) throws IOException, InterruptedException;
+    }
+}
@@ -0,0 +1,63 @@
+package io.jenkins.plugins.testing;
+
+import hudson.model.Job;
+import java.io.IOException;
+import java.util.Collections;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.not;
+import static org.junit.Assert.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class AssemblyDirCacheTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+    private Job<?, ?> job;
+
+    @Before
+    public void createJob() throws IOException {
+        job = mock(Job.class);
+        when(job.getRootDir()).thenReturn(folder.newFolder());
+    }
+
+    @Test
+    public void testSaveWithTwoStepsOfDifferentFiltersThenEachLoadsItsOwnDirectories() throws IOException {
+        String unitTests = AssemblyDirCache.keyOf("**/*UnitTest.dll", AssemblyScanner.DEFAULT_EXCLUDES, null);
+        String integrationTests = AssemblyDirCache.keyOf("**/*IntegrationTest.dll", AssemblyScanner.DEFAULT_EXCLUDES, null);
+
+        AssemblyDirCache.save(job, unitTests, new AssemblyDirCache(Collections.singletonList("unit/bin"), "layout", 3));
+        AssemblyDirCache.save(job, integrationTests, new AssemblyDirCache(Collections.singletonList("integration/bin"), "layout", 0));
+
+        AssemblyDirCache unitTestDirs = AssemblyDirCache.load(job, unitTests);
+        assertThat(unitTestDirs.getDirs(), contains("unit/bin"));
+        assertThat(unitTestDirs.getCachedBuilds(), is(3));
+        assertThat(AssemblyDirCache.load(job, integrationTests).getDirs(), contains("integration/bin"));
+    }
+
+    @Test
+    public void testLoadWithoutSavedDirectoriesThenEmpty() throws IOException {
+        AssemblyDirCache cache = AssemblyDirCache.load(job, AssemblyDirCache.keyOf("**/*Test.dll", null, null));
+
+        assertThat(cache.getDirs().isEmpty(), is(true));
+        assertThat(cache.getLayout() == null, is(true));
+        assertThat(cache.isFullScanDue(), is(false));
+    }
+
+    @Test
+    public void testKeyOfThenDependsOnFilterExcludesAndCoverageId() {
+        String key = AssemblyDirCache.keyOf("**/*Test.dll", "**/obj", "unit");
+
+        assertThat(AssemblyDirCache.keyOf("**/*Test.dll", "**/obj", "unit"), is(key));
+        assertThat(AssemblyDirCache.keyOf("**/*Tests.dll", "**/obj", "unit"), is(not(key)));
+        assertThat(AssemblyDirCache.keyOf("**/*Test.dll", "**/packages", "unit"), is(not(key)));
+        assertThat(AssemblyDirCache.keyOf("**/*Test.dll", "**/obj", "integration"), is(not(key)));
+        assertThat(AssemblyDirCache.keyOf("**/*Test.dll", "**/obj", null), is(not(key)));
+    }
+}
@@ -0,0 +1,127 @@
+package io.jenkins.plugins.testing;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.not;
+import static org.junit.Assert.assertThat;
+
+public class AssemblyScannerTest {
+
+    private static final String INCLUDES = "**/*Test/bin/**/Release/*Test.dll";
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testScanThenSkipsExcludedDirectories() throws IOException {
+        File workspace = folder.getRoot();
+        File assembly = file("FooTest/bin/Release/FooTest.dll");
+        file("packages/BarTest/bin/Release/BarTest.dll");
+        file("FooTest/obj/BazTest/bin/Release/BazTest.dll");
+
+        List<File> assemblies = new AssemblyScanner(INCLUDES, AssemblyScanner.DEFAULT_EXCLUDES).scan(workspace);
+
+        assertThat(assemblies, contains(assembly));
+    }
+
+    @Test
+    public void testScanWithoutExcludesThenFindsAll() throws IOException {
+        File workspace = folder.getRoot();
+        File assembly = file("FooTest/bin/Release/FooTest.dll");
+        File packaged = file("packages/BarTest/bin/Release/BarTest.dll");
+
+        List<File> assemblies = new AssemblyScanner(INCLUDES, null).scan(workspace);
+
+        assertThat(assemblies, contains(assembly, packaged));
+    }
+
+    @Test
+    public void testScanDirsThenListsOnlyThoseDirs() throws IOException {
+        File workspace = folder.getRoot();
+        File assembly = file("FooTest/bin/Release/FooTest.dll");
+        file("FooTest/bin/Release/Foo.dll");
+        file("BarTest/bin/Release/BarTest.dll");
+
+        List<File> assemblies = new AssemblyScanner(INCLUDES, null).scan(workspace, Arrays.asList("FooTest/bin/Release", "Missing"));
+
+        assertThat(assemblies, contains(assembly));
+    }
+
+    @Test
+    public void testScanDirsWithoutMatchThenFindsNothing() throws IOException {
+        File workspace = folder.getRoot();
+        file("FooTest/bin/Release/FooTest.dll");
+
+        List<File> assemblies = new AssemblyScanner(INCLUDES, null).scan(workspace, Collections.singletonList("."));
+
+        assertThat(assemblies, is(empty()));
+    }
+
+    @Test
+    public void testDirsOfThenReturnsRelativeDirs() throws IOException {
+        File workspace = folder.getRoot();
+        List<File> assemblies = Arrays.asList(file("FooTest/bin/Release/FooTest.dll"), file("FooTest/bin/Release/OtherTest.dll"), file("RootTest.dll"));
+
+        List<String> dirs = AssemblyScanner.dirsOf(workspace, assemblies);
+
+        assertThat(dirs, contains(".", "FooTest/bin/Release"));
+    }
+
+    @Test
+    public void testMatchesThenAppliesExcludes() {
+        AssemblyScanner scanner = new AssemblyScanner(INCLUDES, "**/Debug/**");
+
+        assertThat(scanner.matches("FooTest/bin/x64/Release/FooTest.dll"), is(true));
+        assertThat(scanner.matches("FooTest/bin/Debug/Release/FooTest.dll"), is(false));
+        assertThat(scanner.matches("FooTest/bin/Release/Foo.dll"), is(false));
+    }
+
+    @Test
+    public void testLayoutOfThenChangesOnlyWithProjectFiles() throws IOException {
+        File workspace = folder.getRoot();
+        AssemblyScanner scanner = new AssemblyScanner(INCLUDES, AssemblyScanner.DEFAULT_EXCLUDES);
+        file("FooTest/FooTest.csproj");
+        String layout = scanner.layoutOf(workspace);
+        file("FooTest/bin/Release/FooTest.dll");
+
+        assertThat(scanner.layoutOf(workspace), is(layout));
+
+        file("tests/BarTest/BarTest.csproj");
+
+        assertThat(scanner.layoutOf(workspace), not(layout));
+    }
+
+    @Test
+    public void testLayoutOfThenSkipsExcludedAndDeepDirectories() throws IOException {
+        File workspace = folder.getRoot();
+        AssemblyScanner scanner = new AssemblyScanner(INCLUDES, AssemblyScanner.DEFAULT_EXCLUDES);
+        file("App.sln");
+        String layout = scanner.layoutOf(workspace);
+        file("packages/Lib/Lib.csproj");
+        file("FooTest/obj/Foo.csproj");
+        file("a/b/c/d/Deep.csproj");
+
+        assertThat(scanner.layoutOf(workspace), is(layout));
+    }
+
+    private File file(String path) throws IOException {
+        File file = new File(folder.getRoot(), path);
+        if (!file.getParentFile().mkdirs() && !file.getParentFile().isDirectory()) {
+            throw new IOException("Unable to create " + file.getParentFile());
+        }
+        if (!file.createNewFile()) {
+            throw new IOException("Unable to create " + file);
+        }
+        return file;
+    }
+}
@@ -0,0 +1,176 @@
+package io.jenkins.plugins.testing;
+
+import hudson.FilePath;
+import hudson.model.Run;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.endsWith;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class CoverageDiffTest {
+
+    private static final String NAME = "dotcover";
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testCompareThenSkipsFilesWithUnchangedHash() throws Exception {
+        Run<?, ?> reference = build("#1");
+        addIndex(reference, NAME, index("Same.cs", true, "Changed.cs", true));
+        Run<?, ?> run = build("#2");
+        int position = addIndex(run, NAME, index("Same.cs", true, "Changed.cs", false));
+
+        CoverageDiff diff = CoverageDiff.compare(NAME, reference, run, position);
+
+        assertThat(diff.getUnchangedFiles(), is(1));
+        assertThat(names(diff.getChanges()), contains("Changed.cs"));
+        CoverageDiff.FileChange change = diff.getChanges().get(0);
+        assertThat(change.isDecreased(), is(true));
+        assertThat(change.getNewlyUncoveredLines(), is("1-2"));
+    }
+
+    @Test
+    public void testCompareWithoutChangesThenDoesNotReadIndexes() throws Exception {
+        Run<?, ?> reference = build("#1");
+        addIndex(reference, NAME, index("Same.cs", true, "Other.cs", false));
+        Run<?, ?> run = build("#2");
+        int position = addIndex(run, NAME, index("Same.cs", true, "Other.cs", false));
+        Files.delete(new File(reference.getRootDir(), "dotcover-lines/0.idx").toPath());
+        Files.delete(new File(run.getRootDir(), "dotcover-lines/0.idx").toPath());
+
+        CoverageDiff diff = CoverageDiff.compare(NAME, reference, run, position);
+
+        assertThat(diff.getUnchangedFiles(), is(2));
+        assertThat(diff.getChanges().isEmpty(), is(true));
+    }
+
+    @Test
+    public void testCompareThenListsAddedAndRemovedFiles() throws Exception {
+        Run<?, ?> reference = build("#1");
+        addIndex(reference, NAME, index("Kept.cs", true, "Removed.cs", true));
+        Run<?, ?> run = build("#2");
+        int position = addIndex(run, NAME, index("Kept.cs", true, "Added.cs", false));
+
+        CoverageDiff diff = CoverageDiff.compare(NAME, reference, run, position);
+
+        assertThat(names(diff.getChanges()), contains("Removed.cs", "Added.cs")); // the largest decrease in percent first
+        CoverageDiff.FileChange added = diff.getChanges().get(1);
+        assertThat(added.getPreviousLines(), is(0));
+        assertThat(added.getLines(), is(2));
+        assertThat(added.getNewlyUncoveredLines(), is("1-2"));
+        assertThat(added.isDecreased(), is(true));
+        CoverageDiff.FileChange removed = diff.getChanges().get(0);
+        assertThat(removed.getPreviousLines(), is(2));
+        assertThat(removed.getLines(), is(0));
+        assertThat(removed.isDecreased(), is(false));
+        assertThat(names(diff.getDecreases()), contains("Added.cs"));
+    }
+
+    @Test
+    public void testCompareWithManyUncoveredRangesThenTruncatesThem() throws Exception {
+        int ranges = CoverageDiff.MAX_UNCOVERED_RANGES + 5;
+        LineCoverageIndex.Builder before = new LineCoverageIndex.Builder();
+        LineCoverageIndex.Builder after = new LineCoverageIndex.Builder();
+        before.addFile(1, "Big.cs");
+        after.addFile(1, "Big.cs");
+        for (int range = 0; range < ranges; range++) {
+            int line = range * 2 + 1; // every other line, so that no two lines form a range
+            before.addStatement(1, line, line, true);
+            after.addStatement(1, line, line, false);
+        }
+        Run<?, ?> reference = build("#1");
+        addIndex(reference, NAME, before);
+        Run<?, ?> run = build("#2");
+        int position = addIndex(run, NAME, after);
+
+        CoverageDiff diff = CoverageDiff.compare(NAME, reference, run, position);
+
+        String uncovered = diff.getChanges().get(0).getNewlyUncoveredLines();
+        assertThat(uncovered, endsWith(", ..."));
+        assertThat(uncovered.split(", ").length, is(CoverageDiff.MAX_UNCOVERED_RANGES + 1));
+        assertThat(uncovered.split(", ")[CoverageDiff.MAX_UNCOVERED_RANGES - 1], is(Integer.toString(CoverageDiff.MAX_UNCOVERED_RANGES * 2 - 1)));
+    }
+
+    @Test
+    public void testAddToWithSameNameTwiceThenAmbiguous() throws Exception {
+        Run<?, ?> run = build("#1");
+        int first = addIndex(run, NAME, index("Foo.cs", true, "Bar.cs", true));
+        int unit = addIndex(run, "unit", index("Foo.cs", true, "Bar.cs", true));
+        int second = addIndex(run, NAME, index("Foo.cs", true, "Bar.cs", true));
+        LineCoverageAction action = run.getAction(LineCoverageAction.class);
+
+        assertThat(first, is(0));
+        assertThat(second, is(2));
+        assertThat(action.hasIndex(NAME), is(true));
+        assertThat(action.isAmbiguous(NAME), is(true));
+        assertThat(action.findPosition(NAME), is(-1));
+        assertThat(action.isAmbiguous("unit"), is(false));
+        assertThat(action.findPosition("unit"), is(unit));
+    }
+
+    @Test(expected = IOException.class)
+    public void testCompareWithAmbiguousReferenceThenThrows() throws Exception {
+        Run<?, ?> reference = build("#1");
+        addIndex(reference, NAME, index("Foo.cs", true, "Bar.cs", true));
+        addIndex(reference, NAME, index("Foo.cs", true, "Bar.cs", false));
+        Run<?, ?> run = build("#2");
+        int position = addIndex(run, NAME, index("Foo.cs", true, "Bar.cs", true));
+
+        CoverageDiff.compare(NAME, reference, run, position);
+    }
+
+    /**
+     * @return A build with an empty line coverage action and a build directory.
+     */
+    private Run<?, ?> build(String displayName) throws IOException {
+        Run<?, ?> run = mock(Run.class);
+        LineCoverageAction action = new LineCoverageAction();
+        when(run.getRootDir()).thenReturn(folder.newFolder());
+        when(run.getAction(LineCoverageAction.class)).thenReturn(action);
+        when(run.getFullDisplayName()).thenReturn("job " + displayName);
+        when(run.getUrl()).thenReturn("job/job/" + displayName.substring(1) + "/");
+        action.onAttached(run);
+        return run;
+    }
+
+    private int addIndex(Run<?, ?> run, String name, LineCoverageIndex.Builder builder) throws IOException, InterruptedException {
+        File file = folder.newFile();
+        try (OutputStream out = Files.newOutputStream(file.toPath())) {
+            builder.write(out);
+        }
+        return LineCoverageAction.addTo(run, name, new FilePath(file));
+    }
+
+    /**
+     * @return An index of two files with two lines each, covered or not.
+     */
+    private static LineCoverageIndex.Builder index(String firstFile, boolean firstCovered, String secondFile, boolean secondCovered) {
+        LineCoverageIndex.Builder builder = new LineCoverageIndex.Builder();
+        builder.addFile(1, firstFile);
+        builder.addFile(2, secondFile);
+        builder.addStatement(1, 1, 2, firstCovered);
+        builder.addStatement(2, 1, 2, secondCovered);
+        return builder;
+    }
+
+    private static List<String> names(List<CoverageDiff.FileChange> changes) {
+        List<String> names = new ArrayList<>();
+        for (CoverageDiff.FileChange change : changes) {
+            names.add(change.getName());
+        }
+        return names;
+    }
+}
@@ -0,0 +1,76 @@
+package io.jenkins.plugins.testing;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.util.List;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.not;
+import static org.junit.Assert.assertThat;
+
+public class CoverageDigestTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testOfSameCoverageThenSameHash() throws IOException {
+        List<CoverageDigest.Entry> first = CoverageDigest.of(index(true, true)).getEntries();
+        List<CoverageDigest.Entry> second = CoverageDigest.of(index(true, true)).getEntries();
+
+        assertThat(second.get(0).hash, is(first.get(0).hash));
+        assertThat(second.get(1).hash, is(first.get(1).hash));
+    }
+
+    @Test
+    public void testOfChangedCoverageThenOnlyChangedHashDiffers() throws IOException {
+        List<CoverageDigest.Entry> before = CoverageDigest.of(index(true, true)).getEntries();
+        List<CoverageDigest.Entry> after = CoverageDigest.of(index(true, false)).getEntries();
+
+        assertThat(after.get(0).hash, is(before.get(0).hash));
+        assertThat(after.get(1).hash, is(not(before.get(1).hash)));
+    }
+
+    @Test
+    public void testWriteThenReadsSameEntries() throws IOException {
+        CoverageDigest digest = CoverageDigest.of(index(true, false));
+        File file = folder.newFile();
+
+        digest.write(file);
+        List<CoverageDigest.Entry> entries = CoverageDigest.read(file).getEntries();
+
+        assertThat(entries.size(), is(2));
+        assertThat(entries.get(1).name, is("Foo.cs"));
+        assertThat(entries.get(1).position, is(1));
+        assertThat(entries.get(1).lineCount, is(2));
+        assertThat(entries.get(1).coveredLines, is(1));
+        assertThat(entries.get(1).hash, is(digest.getEntries().get(1).hash));
+    }
+
+    @Test(expected = IOException.class)
+    public void testReadOtherFileThenThrows() throws IOException {
+        File file = folder.newFile();
+        Files.write(file.toPath(), new byte[]{1, 2, 3, 4, 5, 6, 7, 8});
+
+        CoverageDigest.read(file);
+    }
+
+    private LineCoverageIndex index(boolean barCovered, boolean fooCovered) throws IOException {
+        LineCoverageIndex.Builder builder = new LineCoverageIndex.Builder();
+        builder.addFile(1, "Bar.cs");
+        builder.addFile(2, "Foo.cs");
+        builder.addStatement(1, 5, 6, barCovered);
+        builder.addStatement(2, 1, 1, true);
+        builder.addStatement(2, 2, 2, fooCovered);
+        File file = folder.newFile();
+        try (OutputStream out = Files.newOutputStream(file.toPath())) {
+            builder.write(out);
+        }
+        return LineCoverageIndex.open(file);
+    }
+}
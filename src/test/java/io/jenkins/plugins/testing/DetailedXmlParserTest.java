@@ -0,0 +1,111 @@
+package io.jenkins.plugins.testing;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import org.junit.Test;
+
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+
+public class DetailedXmlParserTest {
+
+    private static final String REPORT = "<?xml version=\"1.0\" encoding=\"utf-8\"?>\n" +
+            "<Root CoveredStatements=\"6\" TotalStatements=\"12\" CoveragePercent=\"50\" ReportType=\"DetailedXml\">\n" +
+            "  <FileIndices><File Index=\"1\" Name=\"C:\\src\\Foo.cs\" /></FileIndices>\n" +
+            "  <Assembly Name=\"App\" CoveredStatements=\"5\" TotalStatements=\"8\" CoveragePercent=\"63\">\n" +
+            "    <Namespace Name=\"App.Core\" CoveredStatements=\"5\" TotalStatements=\"8\" CoveragePercent=\"63\">\n" +
+            "      <Type Name=\"Foo\" CoveredStatements=\"4\" TotalStatements=\"4\" CoveragePercent=\"100\">\n" +
+            "        <Member Name=\"Bar\" CoveredStatements=\"1\" TotalStatements=\"1\" CoveragePercent=\"100\">\n" +
+            "          <Statement FileIndex=\"1\" Line=\"10\" Column=\"9\" EndLine=\"10\" EndColumn=\"30\" Covered=\"True\" />\n" +
+            "        </Member>\n" +
+            "        <Type Name=\"Nested\" CoveredStatements=\"3\" TotalStatements=\"3\" CoveragePercent=\"100\" />\n" +
+            "      </Type>\n" +
+            "      <Type Name=\"Baz\" CoveredStatements=\"1\" TotalStatements=\"4\" CoveragePercent=\"25\" />\n" +
+            "    </Namespace>\n" +
+            "  </Assembly>\n" +
+            "  <Assembly Name=\"Lib\" CoveredStatements=\"1\" TotalStatements=\"4\" CoveragePercent=\"25\">\n" +
+            "    <Type Name=\"Global\" CoveredStatements=\"1\" TotalStatements=\"4\" CoveragePercent=\"25\" />\n" +
+            "  </Assembly>\n" +
+            "</Root>\n";
+
+    @Test
+    public void testParseThenSumsAssemblies() throws IOException {
+        CoverageTotals totals = DetailedXmlParser.parse(stream(REPORT), "dotcover");
+
+        assertThat(totals.getName(), is("dotcover"));
+        assertThat(totals.getCoveredStatements(), is(6));
+        assertThat(totals.getTotalStatements(), is(12));
+        assertThat(totals.getCoveragePercent(), is(50.0));
+        assertThat(names(totals.getChildren()), contains("App", "Lib"));
+    }
+
+    @Test
+    public void testParseThenKeepsOnlyTopLevelTypes() throws IOException {
+        CoverageTotals namespace = DetailedXmlParser.parse(stream(REPORT), "dotcover").getChildren().get(0).getChildren().get(0);
+
+        assertThat(namespace.getName(), is("App.Core"));
+        assertThat(names(namespace.getChildren()), contains("Foo", "Baz"));
+        assertThat(namespace.getChildren().get(0).getTotalStatements(), is(4));
+    }
+
+    @Test
+    public void testParseTypeWithoutNamespaceThenAddsGlobalNamespace() throws IOException {
+        CoverageTotals lib = DetailedXmlParser.parse(stream(REPORT), "dotcover").getChildren().get(1);
+
+        assertThat(names(lib.getChildren()), contains(""));
+        assertThat(lib.getChildren().get(0).getCoveredStatements(), is(1));
+        assertThat(names(lib.getChildren().get(0).getChildren()), contains("Global"));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testToMapThenNestsByName() throws IOException {
+        Map<String, Object> map = DetailedXmlParser.parse(stream(REPORT), "dotcover").toMap();
+
+        Map<String, Object> app = (Map<String, Object>) ((Map<String, Object>) map.get("assemblies")).get("App");
+        Map<String, Object> core = (Map<String, Object>) ((Map<String, Object>) app.get("namespaces")).get("App.Core");
+        Map<String, Object> baz = (Map<String, Object>) ((Map<String, Object>) core.get("types")).get("Baz");
+        assertThat(map.get("coveragePercent"), is((Object) 50.0));
+        assertThat(app.get("coveredStatements"), is((Object) 5));
+        assertThat(baz.get("coveragePercent"), is((Object) 25.0));
+        assertThat(baz.containsKey("types"), is(false));
+    }
+
+    @Test
+    public void testTruncateThenKeepsOnlyAssemblies() throws IOException {
+        CoverageTotals totals = DetailedXmlParser.parse(stream(REPORT), "dotcover").truncate(CoverageSummaryAction.STORED_LEVELS);
+
+        assertThat(totals.getCoveredStatements(), is(6));
+        assertThat(names(totals.getChildren()), contains("App", "Lib"));
+        assertThat(totals.getChildren().get(0).getTotalStatements(), is(8));
+        assertThat(totals.getChildren().get(0).getChildren().isEmpty(), is(true));
+    }
+
+    @Test(expected = IOException.class)
+    public void testParseInvalidCountThenThrows() throws IOException {
+        DetailedXmlParser.parse(stream("<Root><Assembly Name=\"App\" CoveredStatements=\"x\" /></Root>"), "dotcover");
+    }
+
+    @Test(expected = IOException.class)
+    public void testParseDoctypeThenThrows() throws IOException {
+        DetailedXmlParser.parse(stream("<!DOCTYPE Root [<!ENTITY e SYSTEM \"file:///etc/passwd\">]><Root>&e;</Root>"), "dotcover");
+    }
+
+    private static InputStream stream(String xml) {
+        return new ByteArrayInputStream(xml.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static List<String> names(List<CoverageTotals> totals) {
+        List<String> names = new ArrayList<>();
+        for (CoverageTotals child : totals) {
+            names.add(child.getName());
+        }
+        return names;
+    }
+}
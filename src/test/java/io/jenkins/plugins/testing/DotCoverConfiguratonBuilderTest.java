@@ -10,6 +10,7 @@ import java.net.URI;
 import java.net.URISyntaxException;
 import java.nio.file.Files;
 import java.nio.file.Paths;
+import java.util.Arrays;
 import javax.annotation.Nonnull;
 import org.dom4j.Document;
 import org.dom4j.io.OutputFormat;
@@ -24,7 +25,11 @@ import org.xmlunit.diff.ComparisonResult;
 import org.xmlunit.diff.Diff;
 import org.xmlunit.diff.Difference;
 
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.endsWith;
 import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.startsWith;
 import static org.junit.Assert.assertThat;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.when;
@@ -112,6 +117,35 @@ public class DotCoverConfiguratonBuilderTest {
         assertNoDifferences(diff);
     }
 
+    @ConfiguredWithCode("jenkins_no_global_excludes.yml")
+    @Test
+    public void testWithBatchThenTargetArgumentsListEveryAssembly() throws IOException, InterruptedException {
+        FilePath firstAssembly = new FilePath(new File("FirstTest.dll"));
+        FilePath secondAssembly = new FilePath(new File("SecondTest.dll"));
+
+        Document xmlDocument = dotCoverConfigurationBuilder.buildXmlDocument(Arrays.asList(firstAssembly, secondAssembly));
+        String targetArguments = xmlDocument.getRootElement().elementText("TargetArguments");
+        String output = xmlDocument.getRootElement().elementText("Output");
+
+        assertThat(targetArguments, containsString("FirstTest.dll"));
+        assertThat(targetArguments, containsString("SecondTest.dll"));
+        assertThat(output, containsString("FirstTest.dll+1-"));
+        assertThat(output, endsWith(DotCoverStep.SNAPSHOT_MERGE_SUFFIX));
+    }
+
+    @Test
+    public void testBatchNameOfSameFileNamesInDifferentDirectoriesThenDiffers() {
+        FilePath firstAssembly = new FilePath(new File("A/bin/Tests.dll"));
+        FilePath secondAssembly = new FilePath(new File("B/bin/Tests.dll"));
+
+        String firstName = DotCoverConfigurationBuilder.getBatchName(Arrays.asList(firstAssembly));
+        String secondName = DotCoverConfigurationBuilder.getBatchName(Arrays.asList(secondAssembly));
+
+        assertThat(firstName, startsWith("Tests.dll-"));
+        assertThat(secondName, startsWith("Tests.dll-"));
+        assertThat(secondName, not(firstName));
+        assertThat(DotCoverConfigurationBuilder.getBatchName(Arrays.asList(firstAssembly)), is(firstName));
+    }
 
     @Before
     public void createMocks() throws IOException, InterruptedException {
@@ -1,6 +1,7 @@
 package io.jenkins.plugins.testing;
 
 import hudson.FilePath;
+import hudson.Functions;
 import hudson.model.Result;
 import hudson.slaves.DumbSlave;
 import io.jenkins.plugins.casc.misc.ConfiguredWithCode;
@@ -8,6 +9,7 @@ import io.jenkins.plugins.casc.misc.JenkinsConfiguredWithCodeRule;
 import java.io.File;
 import java.net.URL;
 import java.util.List;
+import java.util.concurrent.TimeUnit;
 import org.jenkinsci.plugins.workflow.cps.CpsFlowDefinition;
 import org.jenkinsci.plugins.workflow.job.WorkflowJob;
 import org.jenkinsci.plugins.workflow.job.WorkflowRun;
@@ -15,11 +17,15 @@ import org.junit.Assert;
 import org.junit.ClassRule;
 import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 import org.jvnet.hudson.test.BuildWatcher;
+import org.jvnet.hudson.test.JenkinsRule;
 
 import static org.hamcrest.Matchers.containsString;
 import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.not;
 import static org.junit.Assert.assertThat;
+import static org.junit.Assume.assumeFalse;
 import static org.junit.Assume.assumeTrue;
 
 public class DotCoverStepExecutionTest {
@@ -30,6 +36,9 @@ public class DotCoverStepExecutionTest {
     @Rule
     public JenkinsConfiguredWithCodeRule master = new JenkinsConfiguredWithCodeRule();
 
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
     private static CpsFlowDefinition makeDotCoverPipeline() {
         CpsFlowDefinition pipeline = new CpsFlowDefinition("node { dotcover () }", true);
         return pipeline;
@@ -111,6 +120,7 @@ public class DotCoverStepExecutionTest {
 
         Assert.assertTrue("The dotcover output directory was created.", outputDirCreated);
         Assert.assertTrue("the temp dir was created", tempDirCreated);
+        Assert.assertTrue("the temp dir of the execution was deleted", agentWorkspace.child(DotCoverStepExecution.TEMP_DIR_NAME).listDirectories().isEmpty());
     }
 
     @Test
@@ -135,11 +145,77 @@ public class DotCoverStepExecutionTest {
         FilePath[] detailedXMLReport = workspace.list("**/" + DotCoverStep.DescriptorImpl.DEFAULT_DETAILED_REPORT_PATH);
         String reportContent = htmlReport[0].readToString();
 
-        assertThat(snapshots.length, is(3));
+        assertThat(snapshots.length, is(1)); // the batch snapshots were deleted with the temp dir of the execution
+        assertThat(snapshots[0].getName(), is("snapshot.cov"));
         assertThat(htmlReport.length, is(1));
         assertThat(nDependReport.length, is(1));
         assertThat(detailedXMLReport.length, is(1));
         assertThat(reportContent, containsString("iframe sandbox"));
     }
 
+    @Test
+    public void testFakeDotCoverThenCoversAsynchronously() throws Exception {
+        assumeFalse(Functions.isWindows());
+        FakeDotCover.install(folder.getRoot());
+        WorkflowJob project = FakeDotCover.createProject(master, "fast", "", "FastTest.dll");
+
+        WorkflowRun build = master.buildAndAssertSuccess(project);
+
+        FilePath workspace = master.jenkins.getWorkspaceFor(project);
+        assertThat(workspace.child("coverage/snapshot.cov").exists(), is(true));
+        assertThat(FakeDotCover.runs(workspace).size(), is(1));
+        master.assertLogContains("fake dotCover Cover", build);
+        assertThat(workspace.child(DotCoverStepExecution.TEMP_DIR_NAME).listDirectories().isEmpty(), is(true));
+    }
+
+    @Test
+    public void testHangingBatchThenKilledRetriedAndDropped() throws Exception {
+        assumeFalse(Functions.isWindows());
+        FakeDotCover.install(folder.getRoot());
+        WorkflowJob project = FakeDotCover.createProject(master, "hang-and-fast", ", coverTimeout: 2, coverRetries: 1, parallelism: '2'",
+                "HangTest.dll", "FastTest.dll");
+        DotCoverStepExecution.coverTimeoutUnit = TimeUnit.SECONDS;
+        WorkflowRun build;
+        try {
+            build = master.buildAndAssertSuccess(project);
+        } finally {
+            DotCoverStepExecution.coverTimeoutUnit = TimeUnit.MINUTES;
+        }
+
+        FilePath workspace = master.jenkins.getWorkspaceFor(project);
+        assertThat(FakeDotCover.countRuns(workspace, "HangTest"), is(2));
+        assertThat(FakeDotCover.countRuns(workspace, "FastTest"), is(1));
+        for (String pid : FakeDotCover.pids(workspace)) {
+            FakeDotCover.awaitExit(pid);
+            assertThat(FakeDotCover.isAlive(pid), is(false));
+        }
+        master.assertLogContains("Retrying HangTest.dll (retry 1 of 1).", build);
+        master.assertLogContains("Dropping HangTest.dll from the merged coverage.", build);
+        master.assertLogContains("The following test assemblies timed out and were DROPPED from the merged coverage:\n  HangTest.dll", build);
+        String merge = null;
+        for (String line : JenkinsRule.getLog(build).split("\n")) {
+            if (line.startsWith("fake dotCover Merge")) {
+                merge = line;
+            }
+        }
+        assertThat(merge, containsString("FastTest"));
+        assertThat(merge, not(containsString("HangTest")));
+    }
+
+    @Test
+    public void testStopThenKillsDotCover() throws Exception {
+        assumeFalse(Functions.isWindows());
+        FakeDotCover.install(folder.getRoot());
+        WorkflowJob project = FakeDotCover.createProject(master, "hang", "", "HangTest.dll");
+
+        WorkflowRun build = project.scheduleBuild2(0).waitForStart();
+        String pid = FakeDotCover.awaitPid(master.jenkins.getWorkspaceFor(project));
+        assertThat(FakeDotCover.isAlive(pid), is(true));
+        build.doStop();
+
+        master.assertBuildStatus(Result.ABORTED, master.waitForCompletion(build));
+        FakeDotCover.awaitExit(pid);
+        assertThat(FakeDotCover.isAlive(pid), is(false));
+    }
+
 }
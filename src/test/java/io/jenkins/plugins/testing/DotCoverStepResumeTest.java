@@ -0,0 +1,59 @@
+package io.jenkins.plugins.testing;
+
+import hudson.FilePath;
+import hudson.Functions;
+import org.jenkinsci.plugins.workflow.job.WorkflowJob;
+import org.jenkinsci.plugins.workflow.job.WorkflowRun;
+import org.junit.ClassRule;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.jvnet.hudson.test.BuildWatcher;
+import org.jvnet.hudson.test.RestartableJenkinsRule;
+
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assume.assumeFalse;
+
+public class DotCoverStepResumeTest {
+
+    private static final String PROJECT_NAME = "resume";
+
+    @ClassRule
+    public static BuildWatcher buildWatcher = new BuildWatcher();
+
+    @Rule
+    public RestartableJenkinsRule story = new RestartableJenkinsRule();
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testRestartWhileCoveringThenCoversOnlyRemainingBatches() throws Exception {
+        assumeFalse(Functions.isWindows());
+        story.then(r -> {
+            FakeDotCover.install(folder.getRoot());
+            WorkflowJob project = FakeDotCover.createProject(r, PROJECT_NAME, ", parallelism: '2'", "FastTest.dll", "SlowTest.dll");
+            WorkflowRun build = project.scheduleBuild2(0).waitForStart();
+            r.waitForMessage("Covered FastTest.dll", build);
+            FilePath workspace = r.jenkins.getWorkspaceFor(project);
+            while (FakeDotCover.countRuns(workspace, "SlowTest") == 0) {
+                Thread.sleep(100);
+            }
+        });
+        story.then(r -> {
+            WorkflowJob project = r.jenkins.getItemByFullName(PROJECT_NAME, WorkflowJob.class);
+            WorkflowRun build = project.getBuildByNumber(1);
+            FilePath workspace = r.jenkins.getWorkspaceFor(project);
+            workspace.child(FakeDotCover.RELEASE_FILE_NAME).write("", "UTF-8");
+
+            r.assertBuildStatusSuccess(r.waitForCompletion(build));
+
+            r.assertLogContains("Resuming DotCover after a restart of Jenkins, 1 batch(es) were covered before.", build);
+            r.assertLogContains("Test assembly FastTest.dll was covered before the restart, skipping DotCover testing.", build);
+            assertThat(FakeDotCover.countRuns(workspace, "FastTest"), is(1));
+            assertThat(FakeDotCover.countRuns(workspace, "SlowTest"), is(2));
+            assertThat(workspace.child("coverage/snapshot.cov").exists(), is(true));
+        });
+    }
+}
@@ -0,0 +1,40 @@
+package io.jenkins.plugins.testing;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.io.UnsupportedEncodingException;
+import java.nio.charset.StandardCharsets;
+import org.junit.Test;
+
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+
+public class DotCoverTimingActionTest {
+
+    @Test
+    public void testStepTimingWithPhasesThenKeepsThemInOrder() {
+        DotCoverTimingAction.StepTiming timing = new DotCoverTimingAction.StepTiming("dotcover");
+
+        timing.add("Cover A.Test.dll", 1500);
+        timing.add("Merge", 300);
+
+        assertThat(timing.getPhases().size(), is(2));
+        assertThat(timing.getPhases().get(0).getName(), is("Cover A.Test.dll"));
+        assertThat(timing.getPhases().get(1).getDurationMillis(), is(300L));
+    }
+
+    @Test
+    public void testPrintThenListsEveryPhaseAndTheTotal() throws UnsupportedEncodingException {
+        DotCoverTimingAction.StepTiming timing = new DotCoverTimingAction.StepTiming("dotcover");
+        timing.add("Report HTML", 2000);
+        timing.finish();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        timing.print(new PrintStream(out, true, StandardCharsets.UTF_8.name()));
+
+        String table = new String(out.toByteArray(), StandardCharsets.UTF_8);
+        assertThat(table, containsString("Report HTML"));
+        assertThat(table, containsString("Total"));
+    }
+}
@@ -0,0 +1,67 @@
+package io.jenkins.plugins.testing;
+
+import hudson.model.Job;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class DurationHistoryTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+    private Job<?, ?> job;
+
+    @Before
+    public void createJob() throws IOException {
+        job = mock(Job.class);
+        when(job.getRootDir()).thenReturn(folder.newFolder());
+    }
+
+    @Test
+    public void testRecordThenLoadsMostRecentlyMeasuredFirst() throws IOException {
+        DurationHistory.record(job, Collections.singletonMap("a/A.Test.dll", 100L));
+        DurationHistory.record(job, Collections.singletonMap("b/B.Test.dll", 200L));
+        DurationHistory.record(job, Collections.singletonMap("a/A.Test.dll", 300L));
+
+        Map<String, Long> durations = DurationHistory.load(job);
+
+        assertThat(durations.keySet(), contains("a/A.Test.dll", "b/B.Test.dll"));
+        assertThat(durations.get("a/A.Test.dll"), is(300L));
+        assertThat(durations.get("b/B.Test.dll"), is(200L));
+    }
+
+    @Test
+    public void testRecordWithMoreThanMaxEntriesThenDropsOldestMeasured() throws IOException {
+        Map<String, Long> durations = new HashMap<>();
+        for (int i = 0; i < DurationHistory.MAX_ENTRIES; i++) {
+            durations.put("old" + i + ".dll", 1L);
+        }
+        DurationHistory.record(job, durations);
+        DurationHistory.record(job, Collections.singletonMap("new.dll", 2L));
+
+        Map<String, Long> history = DurationHistory.load(job);
+
+        assertThat(history.size(), is(DurationHistory.MAX_ENTRIES));
+        assertThat(history.get("new.dll"), is(2L));
+    }
+
+    @Test
+    public void testPredictWithUnknownAssemblyThenUsesDefaultDuration() {
+        Map<String, Long> durations = Collections.singletonMap("a.dll", 100L);
+
+        assertThat(DurationHistory.predict(durations, Arrays.asList("a.dll", "unknown.dll"), 40L), is(140L));
+        assertThat(DurationHistory.average(durations), is(100L));
+    }
+}
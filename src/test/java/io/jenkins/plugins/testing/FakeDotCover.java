@@ -0,0 +1,151 @@
+package io.jenkins.plugins.testing;
+
+import hudson.FilePath;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import jenkins.model.Jenkins;
+import org.jenkinsci.plugins.workflow.cps.CpsFlowDefinition;
+import org.jenkinsci.plugins.workflow.job.WorkflowJob;
+import org.jvnet.hudson.test.JenkinsRule;
+
+/**
+ * A dotCover for tests on Unix: a shell script that writes the files that dotCover would write, installed as the default
+ * DotCover installation.
+ * <p>
+ * A Cover run appends its configuration to {@link #RUNS_FILE_NAME} and its pid to {@link #PID_FILE_NAME} in the
+ * workspace. It hangs when the name of its test assembly contains {@code Hang}, and waits for the file
+ * {@link #RELEASE_FILE_NAME} in the workspace when it contains {@code Slow}.
+ */
+final class FakeDotCover {
+
+    static final String RUNS_FILE_NAME = "dotcover-runs.txt";
+    static final String PID_FILE_NAME = "dotcover.pid";
+    static final String RELEASE_FILE_NAME = "release";
+    private static final long WAIT_MILLIS = 60000;
+    private static final String SCRIPT = "#!/bin/sh\n"
+            + "echo \"fake dotCover $*\"\n"
+            + "if [ \"$1\" = Cover ]; then\n"
+            + "  echo \"$2\" >> " + RUNS_FILE_NAME + "\n"
+            + "  echo $$ >> " + PID_FILE_NAME + "\n"
+            + "  case \"$2\" in\n"
+            + "    *Hang*) sleep 3600 ;;\n"
+            + "    *Slow*) while [ ! -f " + RELEASE_FILE_NAME + " ]; do sleep 1; done ;;\n"
+            + "  esac\n"
+            + "  output=$(sed -n 's:.*<Output>\\(.*\\)</Output>.*:\\1:p' \"$2\")\n"
+            + "  echo covered > \"$output\"\n"
+            + "else\n"
+            + "  for argument in \"$@\"; do\n"
+            + "    case \"$argument\" in\n"
+            + "      /Output=*) echo merged > \"${argument#/Output=}\" ;;\n"
+            + "    esac\n"
+            + "  done\n"
+            + "fi\n";
+
+    private FakeDotCover() {
+    }
+
+    /**
+     * Writes the script into the directory and makes it the default DotCover installation of Jenkins.
+     *
+     * @return The script.
+     */
+    static File install(File dir) throws IOException {
+        File script = new File(dir, "dotcover.sh");
+        Files.write(script.toPath(), SCRIPT.getBytes(StandardCharsets.UTF_8));
+        if (!script.setExecutable(true)) {
+            throw new IOException("Cannot make " + script + " executable.");
+        }
+        DotCoverInstallation.DescriptorImpl descriptor = Jenkins.get().getDescriptorByType(DotCoverInstallation.DescriptorImpl.class);
+        descriptor.setInstallations(new DotCoverInstallation(DotCoverInstallation.DOTCOVERTOOL_DEFAULT_NAME, script.getAbsolutePath(),
+                Collections.emptyList()));
+        return script;
+    }
+
+    /**
+     * @param rule       The Jenkins of the test.
+     * @param name       The name of the project.
+     * @param arguments  More arguments of the step, each starting with a comma, or an empty string.
+     * @param assemblies The names of the test assemblies to write into the workspace and cover with the fake dotCover.
+     * @return A project that covers the test assemblies without reports.
+     */
+    static WorkflowJob createProject(JenkinsRule rule, String name, String arguments, String... assemblies) throws IOException {
+        StringBuilder pipeline = new StringBuilder("node {\n");
+        for (String assembly : assemblies) {
+            pipeline.append("  writeFile file: '").append(assembly).append("', text: ''\n");
+        }
+        pipeline.append("  dotcover vsTestAssemblyFilter: '*Test.dll', htmlReportPath: '', nDependXmlReportPath: '', detailedXMLReportPath: ''")
+                .append(arguments).append("\n}");
+        WorkflowJob project = rule.createProject(WorkflowJob.class, name);
+        project.setDefinition(new CpsFlowDefinition(pipeline.toString(), true));
+        return project;
+    }
+
+    /**
+     * @return The configurations of the Cover runs so far, in the order they started.
+     */
+    static List<String> runs(FilePath workspace) throws IOException, InterruptedException {
+        FilePath runs = workspace.child(RUNS_FILE_NAME);
+        return runs.exists() ? Arrays.asList(runs.readToString().split("\n")) : Collections.<String>emptyList();
+    }
+
+    /**
+     * @return The number of Cover runs so far of the test assembly.
+     */
+    static int countRuns(FilePath workspace, String assembly) throws IOException, InterruptedException {
+        int count = 0;
+        for (String run : runs(workspace)) {
+            if (run.contains(assembly)) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Waits until a Cover run wrote its pid into the workspace.
+     *
+     * @return The pid of the first Cover run.
+     */
+    static String awaitPid(FilePath workspace) throws IOException, InterruptedException {
+        long deadline = System.currentTimeMillis() + WAIT_MILLIS;
+        while (System.currentTimeMillis() < deadline) {
+            List<String> pids = pids(workspace);
+            if (!pids.isEmpty()) {
+                return pids.get(0);
+            }
+            Thread.sleep(100);
+        }
+        throw new AssertionError("The fake dotCover did not start a Cover run.");
+    }
+
+    /**
+     * @return The pids of the Cover runs so far, in the order they started.
+     */
+    static List<String> pids(FilePath workspace) throws IOException, InterruptedException {
+        FilePath pids = workspace.child(PID_FILE_NAME);
+        String content = pids.exists() ? pids.readToString().trim() : "";
+        return content.isEmpty() ? Collections.<String>emptyList() : Arrays.asList(content.split("\n"));
+    }
+
+    /**
+     * Waits until the process with the pid exited, or the wait times out.
+     */
+    static void awaitExit(String pid) throws IOException, InterruptedException {
+        long deadline = System.currentTimeMillis() + WAIT_MILLIS;
+        while (isAlive(pid) && System.currentTimeMillis() < deadline) {
+            Thread.sleep(100);
+        }
+    }
+
+    /**
+     * @return Whether the process with the pid still runs.
+     */
+    static boolean isAlive(String pid) throws IOException, InterruptedException {
+        return new ProcessBuilder("kill", "-0", pid.trim()).start().waitFor() == 0;
+    }
+}
@@ -0,0 +1,63 @@
+package io.jenkins.plugins.testing;
+
+import java.util.ArrayList;
+import java.util.List;
+import org.dom4j.Element;
+import org.junit.Test;
+
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+
+public class FilterCompilerTest {
+
+    @Test
+    public void testCoversWithWildcardThenCoversMoreSpecificMask() {
+        assertThat(FilterCompiler.covers("Foo.*", "Foo.Bar"), is(true));
+        assertThat(FilterCompiler.covers("Foo.*", "Foo.Bar.*"), is(true));
+        assertThat(FilterCompiler.covers("*Test*", "My.Tests"), is(true));
+        assertThat(FilterCompiler.covers("Foo.Bar", "Foo.*"), is(false));
+        assertThat(FilterCompiler.covers("*.Core", "Core"), is(false));
+    }
+
+    @Test
+    public void testCompileMasksWithDuplicateAndCoveredMasksThenKeepsOnlyNeededOnes() {
+        List<String> masks = FilterCompiler.compileMasks(" Foo.Bar ;Foo.*;;Baz;Foo.*;Baz");
+
+        assertThat(masks, contains("Foo.*", "Baz"));
+    }
+
+    @Test
+    public void testCompileMasksWithSeveralListsThenSeparatesLastAndFirstMask() {
+        List<String> masks = FilterCompiler.compileMasks("StepExclude", "GlobalExclude;Other");
+
+        assertThat(masks, contains("StepExclude", "GlobalExclude", "Other"));
+    }
+
+    @Test
+    public void testCompileMasksWithoutMasksThenEmpty() {
+        assertThat(FilterCompiler.compileMasks(null, " ; "), is(empty()));
+    }
+
+    @Test
+    public void testCompileFiltersWithCoveredIncludeEntryThenDropsIt() {
+        DotCoverStep step = new DotCoverStep();
+        step.setCoverageAssemblyInclude("*");
+        step.setCoverageClassInclude("Foo.*");
+        step.setCoverageExclude("Step.Excluded");
+
+        Element filters = FilterCompiler.compileFilters(step, "Global.*;Global.Excluded");
+
+        assertThat(filters.element("IncludeFilters").elements("FilterEntry").size(), is(1));
+        assertThat(moduleMasks(filters.element("ExcludeFilters")), contains("Step.Excluded", "Global.*"));
+    }
+
+    private static List<String> moduleMasks(Element excludeFilters) {
+        List<String> masks = new ArrayList<>();
+        for (Object filterEntry : excludeFilters.elements("FilterEntry")) {
+            masks.add(((Element) filterEntry).elementText("ModuleMask"));
+        }
+        return masks;
+    }
+}
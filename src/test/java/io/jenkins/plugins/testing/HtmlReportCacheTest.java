@@ -0,0 +1,107 @@
+package io.jenkins.plugins.testing;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static org.hamcrest.Matchers.instanceOf;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.notNullValue;
+import static org.hamcrest.Matchers.nullValue;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+public class HtmlReportCacheTest {
+
+    private static final String FIRST = hash('a');
+    private static final String SECOND = hash('b');
+    private static final String THIRD = hash('c');
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+    private HtmlReportCache cache;
+    private final AtomicInteger generations = new AtomicInteger();
+
+    @Before
+    public void setUp() throws IOException {
+        cache = new HtmlReportCache(folder.newFolder("cache"), 2);
+    }
+
+    @Test
+    public void testGenerateThenFindReturnsReport() throws IOException {
+        File reportDir = cache.generate(FIRST, this::writeReport).join();
+
+        assertThat(cache.find(FIRST), is(reportDir));
+        assertThat(new String(Files.readAllBytes(new File(reportDir, HtmlReportCache.REPORT_FILE_NAME).toPath()), StandardCharsets.UTF_8), is("report 1"));
+        assertThat(cache.find(SECOND), is(nullValue()));
+    }
+
+    @Test
+    public void testGenerateThenNoTemporaryDirectoryIsLeft() {
+        File reportDir = cache.generate(FIRST, this::writeReport).join();
+
+        assertThat(reportDir.getParentFile().list(), is(new String[]{FIRST}));
+    }
+
+    @Test
+    public void testGenerateMoreThanMaxReportsThenLeastRecentlyUsedIsEvicted() {
+        File first = cache.generate(FIRST, this::writeReport).join();
+        File second = cache.generate(SECOND, this::writeReport).join();
+        long now = System.currentTimeMillis();
+        assertThat(first.setLastModified(now - 20000), is(true));
+        assertThat(second.setLastModified(now - 10000), is(true));
+
+        cache.generate(THIRD, this::writeReport).join();
+
+        assertThat(cache.find(FIRST), is(nullValue()));
+        assertThat(cache.find(SECOND), is(notNullValue()));
+        assertThat(cache.find(THIRD), is(notNullValue()));
+    }
+
+    @Test
+    public void testGenerateFailedThenFailureIsReturnedOnceAndGeneratedAgain() {
+        CompletableFuture<File> failed = cache.generate(FIRST, reportDir -> {
+            throw new IOException("dotCover failed");
+        });
+        CompletableFuture<File> reported = cache.generate(FIRST, this::writeReport);
+        CompletableFuture<File> retried = cache.generate(FIRST, this::writeReport);
+
+        assertThat(reported, is(failed));
+        assertThat(retried.join(), is(cache.find(FIRST)));
+        assertThat(generations.get(), is(1));
+    }
+
+    @Test
+    public void testGenerateInvalidHashThenFails() {
+        try {
+            cache.generate("../" + FIRST, this::writeReport).join();
+            fail("The report was generated outside the cache");
+        } catch (CompletionException e) {
+            assertThat(e.getCause(), is(instanceOf(IOException.class)));
+        }
+        assertThat(cache.find("../" + FIRST), is(nullValue()));
+        assertThat(generations.get(), is(0));
+    }
+
+    private CompletableFuture<Void> writeReport(File reportDir) throws IOException {
+        Files.createDirectories(reportDir.toPath());
+        Files.write(new File(reportDir, HtmlReportCache.REPORT_FILE_NAME).toPath(), ("report " + generations.incrementAndGet()).getBytes(StandardCharsets.UTF_8));
+        return CompletableFuture.completedFuture(null);
+    }
+
+    private static String hash(char digit) {
+        StringBuilder hash = new StringBuilder();
+        for (int i = 0; i < 64; i++) {
+            hash.append(digit);
+        }
+        return hash.toString();
+    }
+}
@@ -0,0 +1,58 @@
+package io.jenkins.plugins.testing;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import org.junit.Test;
+
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+
+public class IframeSandboxRewriterTest {
+
+    @Test
+    public void testReplaceWithIframeThenAllowsJavaScript() throws IOException {
+        String html = "<html><body>" + DotCoverStep.IFRAME_NO_JAVASCRIPT + "</iframe></body></html>";
+        StringWriter out = new StringWriter();
+
+        int replacements = IframeSandboxRewriter.replace(new StringReader(html), out, DotCoverStep.IFRAME_NO_JAVASCRIPT, DotCoverStep.IFRAME_ALLOW_JAVASCRIPT);
+
+        assertThat(replacements, is(1));
+        assertThat(out.toString(), is("<html><body>" + DotCoverStep.IFRAME_ALLOW_JAVASCRIPT + "</iframe></body></html>"));
+    }
+
+    @Test
+    public void testReplaceWithPartialMatchesThenKeepsThem() throws IOException {
+        String html = "<iframe <ifr<iframe id=\"sourceCode\"><iframe id=\"source";
+        StringWriter out = new StringWriter();
+
+        int replacements = IframeSandboxRewriter.replace(new StringReader(html), out, DotCoverStep.IFRAME_NO_JAVASCRIPT, DotCoverStep.IFRAME_ALLOW_JAVASCRIPT);
+
+        assertThat(replacements, is(1));
+        assertThat(out.toString(), is(html.replace(DotCoverStep.IFRAME_NO_JAVASCRIPT, DotCoverStep.IFRAME_ALLOW_JAVASCRIPT)));
+    }
+
+    @Test
+    public void testReplaceWithOverlappingPrefixThenReplacesEveryOccurrence() throws IOException {
+        StringWriter out = new StringWriter();
+
+        int replacements = IframeSandboxRewriter.replace(new StringReader("aabaabab"), out, "abab", "X");
+
+        assertThat(replacements, is(1));
+        assertThat(out.toString(), is("aabaX"));
+    }
+
+    @Test
+    public void testReplaceWithInputLargerThanBufferThenReplacesAcrossBufferBoundaries() throws IOException {
+        StringBuilder html = new StringBuilder();
+        for (int i = 0; i < 5000; i++) {
+            html.append(i).append(DotCoverStep.IFRAME_NO_JAVASCRIPT);
+        }
+        StringWriter out = new StringWriter();
+
+        int replacements = IframeSandboxRewriter.replace(new StringReader(html.toString()), out, DotCoverStep.IFRAME_NO_JAVASCRIPT, DotCoverStep.IFRAME_ALLOW_JAVASCRIPT);
+
+        assertThat(replacements, is(5000));
+        assertThat(out.toString(), is(html.toString().replace(DotCoverStep.IFRAME_NO_JAVASCRIPT, DotCoverStep.IFRAME_ALLOW_JAVASCRIPT)));
+    }
+}
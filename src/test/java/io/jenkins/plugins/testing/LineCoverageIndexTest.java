@@ -0,0 +1,130 @@
+package io.jenkins.plugins.testing;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+
+public class LineCoverageIndexTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testOpenThenListsFilesByName() throws IOException {
+        LineCoverageIndex.Builder builder = new LineCoverageIndex.Builder();
+        builder.addFile(1, "src/Zeta.cs");
+        builder.addFile(2, "src/Alpha.cs");
+        builder.addFile(3, "src/NoStatements.cs");
+        builder.addStatement(1, 3, 3, true);
+        builder.addStatement(2, 10, 12, false);
+
+        LineCoverageIndex index = write(builder);
+
+        assertThat(index.getFileCount(), is(2));
+        assertThat(names(index.getFiles()), contains("src/Alpha.cs", "src/Zeta.cs"));
+        assertThat(index.getFile(0).getLineCount(), is(3));
+        assertThat(index.getFile(0).getUncoveredLines(), is(3));
+        assertThat(index.getFile(1).getCoveredLines(), is(1));
+    }
+
+    @Test
+    public void testGetLineRangesThenMergesConsecutiveLines() throws IOException {
+        LineCoverageIndex.Builder builder = new LineCoverageIndex.Builder();
+        builder.addFile(1, "Foo.cs");
+        builder.addStatement(1, 1, 2, true);
+        builder.addStatement(1, 3, 3, true);
+        builder.addStatement(1, 4, 4, true);
+        builder.addStatement(1, 4, 4, false);
+        builder.addStatement(1, 6, 7, false);
+        builder.addStatement(1, 200, 200, true);
+
+        LineCoverageIndex index = write(builder);
+
+        assertThat(describe(index.getLineRanges(0)), contains("1-3 COVERED", "4-4 PARTIAL", "6-7 UNCOVERED", "200-200 COVERED"));
+        assertThat(index.getFile(0).getPartialLines(), is(1));
+    }
+
+    @Test
+    public void testParseDetailedXmlThenIndexesStatements() throws IOException {
+        LineCoverageIndex.Builder builder = new LineCoverageIndex.Builder();
+        String report = "<Root><FileIndices><File Index=\"1\" Name=\"C:\\src\\Foo.cs\" /></FileIndices>" +
+                "<Assembly Name=\"App\"><Namespace Name=\"App\"><Type Name=\"Foo\"><Member Name=\"Bar\">" +
+                "<Statement FileIndex=\"1\" Line=\"10\" Column=\"9\" EndLine=\"11\" EndColumn=\"30\" Covered=\"True\" />" +
+                "<Statement FileIndex=\"1\" Line=\"12\" Column=\"9\" EndLine=\"12\" EndColumn=\"30\" Covered=\"False\" />" +
+                "</Member></Type></Namespace></Assembly></Root>";
+
+        DetailedXmlParser.parse(new ByteArrayInputStream(report.getBytes(StandardCharsets.UTF_8)), "dotcover", builder);
+        LineCoverageIndex index = write(builder);
+
+        assertThat(names(index.getFiles()), contains("C:\\src\\Foo.cs"));
+        assertThat(describe(index.getLineRanges(0)), contains("10-11 COVERED", "12-12 UNCOVERED"));
+    }
+
+    @Test
+    public void testOpenThenDoesNotKeepFileOpen() throws IOException {
+        LineCoverageIndex.Builder builder = new LineCoverageIndex.Builder();
+        builder.addFile(1, "Foo.cs");
+        builder.addStatement(1, 1, 1, true);
+        File file = folder.newFile();
+        try (OutputStream out = Files.newOutputStream(file.toPath())) {
+            builder.write(out);
+        }
+
+        LineCoverageIndex index = LineCoverageIndex.open(file);
+        Files.delete(file.toPath()); // fails on Windows while the file is open or mapped
+
+        assertThat(describe(index.getLineRanges(0)), contains("1-1 COVERED"));
+    }
+
+    @Test(expected = IOException.class)
+    public void testOpenTruncatedIndexThenThrows() throws IOException {
+        LineCoverageIndex.Builder builder = new LineCoverageIndex.Builder();
+        builder.addFile(1, "Foo.cs");
+        builder.addStatement(1, 1, 1, true);
+        File file = folder.newFile();
+        try (OutputStream out = Files.newOutputStream(file.toPath())) {
+            builder.write(out);
+        }
+        byte[] content = Files.readAllBytes(file.toPath());
+        Files.write(file.toPath(), Arrays.copyOf(content, content.length - 1));
+
+        LineCoverageIndex.open(file);
+    }
+
+    private LineCoverageIndex write(LineCoverageIndex.Builder builder) throws IOException {
+        File file = folder.newFile();
+        try (OutputStream out = Files.newOutputStream(file.toPath())) {
+            builder.write(out);
+        }
+        return LineCoverageIndex.open(file);
+    }
+
+    private static List<String> names(List<LineCoverageIndex.FileCoverage> files) {
+        List<String> names = new ArrayList<>();
+        for (LineCoverageIndex.FileCoverage file : files) {
+            names.add(file.getName());
+        }
+        return names;
+    }
+
+    private static List<String> describe(List<LineCoverageIndex.LineRange> ranges) {
+        List<String> descriptions = new ArrayList<>();
+        for (LineCoverageIndex.LineRange range : ranges) {
+            descriptions.add(range.getFirst() + "-" + range.getLast() + " " + range.getState());
+        }
+        return descriptions;
+    }
+}
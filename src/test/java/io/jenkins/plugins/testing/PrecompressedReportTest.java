@@ -0,0 +1,189 @@
+package io.jenkins.plugins.testing;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.zip.GZIPInputStream;
+import javax.servlet.ServletOutputStream;
+import javax.servlet.WriteListener;
+import javax.servlet.http.HttpServletResponse;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.kohsuke.stapler.StaplerRequest;
+import org.kohsuke.stapler.StaplerResponse;
+
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.startsWith;
+import static org.junit.Assert.assertThat;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class PrecompressedReportTest {
+
+    private static final String SCRIPT = "var coverage = 42;";
+    private static final String PAGE = "<html><body>" + DotCoverStep.IFRAME_NO_JAVASCRIPT + "</iframe></body></html>";
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+    private File reportDir;
+    private File archiveDir;
+    private StaplerRequest request;
+    private StaplerResponse response;
+    private final ByteArrayOutputStream body = new ByteArrayOutputStream();
+
+    @Before
+    public void setUp() throws IOException {
+        reportDir = folder.newFolder("report");
+        Files.write(new File(reportDir, "index.html").toPath(), PAGE.getBytes(StandardCharsets.UTF_8));
+        Files.createDirectories(new File(reportDir, "index/data").toPath());
+        Files.write(new File(reportDir, "index/data/coverage.js").toPath(), SCRIPT.getBytes(StandardCharsets.UTF_8));
+        Files.write(new File(reportDir, "index/logo.png").toPath(), new byte[]{1, 2, 3});
+        Files.write(new File(reportDir, "snapshot.cov").toPath(), new byte[]{4});
+        Files.write(new File(reportDir, "detailed-report.xml").toPath(), new byte[]{5});
+        Files.createDirectories(new File(reportDir, "logs").toPath());
+        Files.write(new File(reportDir, "logs/Cover-1.log").toPath(), new byte[]{6});
+        archiveDir = new File(folder.getRoot(), "archive");
+        request = mock(StaplerRequest.class);
+        response = mock(StaplerResponse.class);
+        when(request.getDateHeader(anyString())).thenReturn(-1L);
+        when(response.getOutputStream()).thenReturn(new ServletOutputStream() {
+            @Override
+            public void write(int b) {
+                body.write(b);
+            }
+
+            @Override
+            public boolean isReady() {
+                return true;
+            }
+
+            @Override
+            public void setWriteListener(WriteListener writeListener) {
+            }
+        });
+    }
+
+    @Test
+    public void testArchiveThenCompressesTextAndSkipsOtherOutputs() throws IOException {
+        int files = archive();
+
+        assertThat(files, is(3));
+        assertThat(new File(archiveDir, "index.html.gz").isFile(), is(true));
+        assertThat(new File(archiveDir, "index/data/coverage.js.gz").isFile(), is(true));
+        assertThat(new File(archiveDir, "index/logo.png").isFile(), is(true));
+        assertThat(new File(archiveDir, "snapshot.cov").exists(), is(false));
+        assertThat(new File(archiveDir, "detailed-report.xml.gz").exists(), is(false));
+        assertThat(new File(archiveDir, "logs").exists(), is(false));
+    }
+
+    @Test(expected = IOException.class)
+    public void testArchiveWithoutPageThenFails() throws IOException {
+        new HtmlReportArchiver(archiveDir.getPath(), "missing.html").invoke(reportDir, null);
+    }
+
+    @Test
+    public void testServeAssetToGzipClientThenSendsCompressedFile() throws IOException {
+        archive();
+        when(request.getHeader("Accept-Encoding")).thenReturn("gzip, deflate");
+
+        new PrecompressedReport(archiveDir, "index.html").serve("/index/data/coverage.js", request, response);
+
+        verify(response).setHeader("Content-Encoding", "gzip");
+        verify(response).setHeader("Cache-Control", "private, max-age=31536000, immutable");
+        verify(response).setContentType("application/javascript");
+        assertThat(decompress(body.toByteArray()), is(SCRIPT));
+    }
+
+    @Test
+    public void testServeAssetToClientWithoutGzipThenSendsDecompressedFile() throws IOException {
+        archive();
+
+        new PrecompressedReport(archiveDir, "index.html").serve("/index/data/coverage.js", request, response);
+
+        verify(response, never()).setHeader(eq("Content-Encoding"), anyString());
+        assertThat(new String(body.toByteArray(), StandardCharsets.UTF_8), is(SCRIPT));
+    }
+
+    @Test
+    public void testServeDirectoryThenSendsIndexWithIframeSandbox() throws IOException {
+        archive();
+
+        new PrecompressedReport(archiveDir, "index.html").serve("/", request, response);
+
+        String page = new String(body.toByteArray(), StandardCharsets.UTF_8);
+        assertThat(page, containsString(DotCoverStep.IFRAME_ALLOW_JAVASCRIPT));
+        assertThat(page, not(containsString(DotCoverStep.IFRAME_NO_JAVASCRIPT)));
+        verify(response).setHeader("Cache-Control", "private, no-cache");
+    }
+
+    @Test
+    public void testServePageThenSandboxesItInUniqueOrigin() throws IOException {
+        archive();
+
+        new PrecompressedReport(archiveDir, "index.html").serve("/", request, response);
+
+        verify(response).setHeader("Content-Security-Policy", PrecompressedReport.CONTENT_SECURITY_POLICY);
+        assertThat(PrecompressedReport.CONTENT_SECURITY_POLICY, startsWith("sandbox allow-scripts;"));
+        assertThat(PrecompressedReport.CONTENT_SECURITY_POLICY, not(containsString("allow-same-origin")));
+    }
+
+    @Test
+    public void testServeWithMatchingETagThenNotModified() throws IOException {
+        archive();
+        File logo = new File(archiveDir, "index/logo.png");
+        String eTag = "\"" + Long.toHexString(logo.lastModified()) + "-" + Long.toHexString(logo.length()) + "\"";
+        when(request.getHeader("If-None-Match")).thenReturn(eTag);
+
+        new PrecompressedReport(archiveDir, "index.html").serve("/index/logo.png", request, response);
+
+        verify(response).setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+        assertThat(body.size(), is(0));
+    }
+
+    @Test
+    public void testServePathOutsideReportThenNotFound() throws IOException {
+        archive();
+
+        new PrecompressedReport(archiveDir, "index.html").serve("/../report/index/logo.png", request, response);
+
+        verify(response).sendError(HttpServletResponse.SC_NOT_FOUND);
+        assertThat(body.size(), is(0));
+    }
+
+    @Test
+    public void testAcceptsGzip() {
+        assertThat(PrecompressedReport.acceptsGzip("gzip, deflate, br"), is(true));
+        assertThat(PrecompressedReport.acceptsGzip("*"), is(true));
+        assertThat(PrecompressedReport.acceptsGzip("gzip;q=0"), is(false));
+        assertThat(PrecompressedReport.acceptsGzip("identity"), is(false));
+        assertThat(PrecompressedReport.acceptsGzip(null), is(false));
+    }
+
+    private int archive() throws IOException {
+        return new HtmlReportArchiver(archiveDir.getPath(), "index.html").invoke(reportDir, null);
+    }
+
+    private static String decompress(byte[] compressed) throws IOException {
+        try (InputStream in = new GZIPInputStream(new ByteArrayInputStream(compressed))) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[1024];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                out.write(buffer, 0, read);
+            }
+            return new String(out.toByteArray(), StandardCharsets.UTF_8);
+        }
+    }
+}
@@ -0,0 +1,66 @@
+package io.jenkins.plugins.testing;
+
+import java.util.concurrent.CompletableFuture;
+import org.junit.Test;
+
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+
+public class ProcessLimiterTest {
+
+    @Test
+    public void testAcquireBelowLimitThenGrantsImmediately() {
+        ProcessLimiter limiter = new ProcessLimiter();
+
+        CompletableFuture<Void> first = limiter.acquire(2);
+        CompletableFuture<Void> second = limiter.acquire(2);
+
+        assertThat(first.isDone(), is(true));
+        assertThat(second.isDone(), is(true));
+        assertThat(limiter.getRunning(), is(2));
+    }
+
+    @Test
+    public void testAcquireAtLimitThenWaitsForRelease() {
+        ProcessLimiter limiter = new ProcessLimiter();
+        limiter.acquire(1);
+
+        CompletableFuture<Void> waiting = limiter.acquire(1);
+
+        assertThat(waiting.isDone(), is(false));
+        assertThat(limiter.getWaiting(), is(1));
+
+        limiter.release(1);
+
+        assertThat(waiting.isDone(), is(true));
+        assertThat(limiter.getRunning(), is(1));
+        assertThat(limiter.getWaiting(), is(0));
+    }
+
+    @Test
+    public void testReleaseThenGrantsInOrder() {
+        ProcessLimiter limiter = new ProcessLimiter();
+        limiter.acquire(1);
+        CompletableFuture<Void> first = limiter.acquire(1);
+        CompletableFuture<Void> second = limiter.acquire(1);
+
+        limiter.release(1);
+
+        assertThat(first.isDone(), is(true));
+        assertThat(second.isDone(), is(false));
+    }
+
+    @Test
+    public void testReleaseWithRaisedLimitThenGrantsAllThatFit() {
+        ProcessLimiter limiter = new ProcessLimiter();
+        limiter.acquire(1);
+        CompletableFuture<Void> first = limiter.acquire(1);
+        CompletableFuture<Void> second = limiter.acquire(1);
+
+        limiter.release(0);
+
+        assertThat(first.isDone(), is(true));
+        assertThat(second.isDone(), is(true));
+        assertThat(limiter.getRunning(), is(2));
+    }
+}
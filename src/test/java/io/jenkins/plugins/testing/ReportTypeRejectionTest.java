@@ -0,0 +1,49 @@
+package io.jenkins.plugins.testing;
+
+import java.util.Arrays;
+import java.util.Collections;
+import org.junit.Test;
+
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+
+public class ReportTypeRejectionTest {
+
+    private static final String REPORT_TYPES = "HTML,NDependXML,DetailedXML";
+    private static final String COMMAND_LINE = "dotCover.exe Report /ReportType=" + REPORT_TYPES + " /Source=C:\\ws\\temp\\snapshot.cov /Output=a.html;b.xml;c.xml";
+
+    @Test
+    public void testUnknownReportTypeThenRejected() {
+        assertThat(DotCoverStepExecution.isReportTypeRejected(Arrays.asList(COMMAND_LINE,
+                "Failed to parse parameter 'ReportType': Unknown report type '" + REPORT_TYPES + "'."), REPORT_TYPES), is(true));
+    }
+
+    @Test
+    public void testInvalidReportTypeValueThenRejected() {
+        assertThat(DotCoverStepExecution.isReportTypeRejected(Collections.singletonList(
+                "Invalid value '" + REPORT_TYPES + "'. Possible values: HTML, JSON, XML, DetailedXML, NDependXML."), REPORT_TYPES), is(true));
+    }
+
+    @Test
+    public void testCorruptSnapshotOnCommandLineEchoThenNotRejected() {
+        assertThat(DotCoverStepExecution.isReportTypeRejected(Collections.singletonList(COMMAND_LINE + ": failed to parse the snapshot"), REPORT_TYPES),
+                is(false));
+    }
+
+    @Test
+    public void testCorruptSnapshotThenNotRejected() {
+        assertThat(DotCoverStepExecution.isReportTypeRejected(Arrays.asList(COMMAND_LINE,
+                "Failed to parse snapshot C:\\ws\\temp\\snapshot.cov: the file is invalid or corrupt."), REPORT_TYPES), is(false));
+    }
+
+    @Test
+    public void testFullDiskThenNotRejected() {
+        assertThat(DotCoverStepExecution.isReportTypeRejected(Arrays.asList(COMMAND_LINE,
+                "Generating the HTML report", "There is not enough space on the disk."), REPORT_TYPES), is(false));
+    }
+
+    @Test
+    public void testNoOutputThenNotRejected() {
+        assertThat(DotCoverStepExecution.isReportTypeRejected(Collections.<String>emptyList(), REPORT_TYPES), is(false));
+    }
+}
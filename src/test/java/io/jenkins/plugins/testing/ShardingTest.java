@@ -0,0 +1,78 @@
+package io.jenkins.plugins.testing;
+
+import hudson.FilePath;
+import java.io.File;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.junit.Test;
+
+import static org.hamcrest.Matchers.arrayContaining;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.containsInAnyOrder;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+
+public class ShardingTest {
+
+    @Test
+    public void testAssignWithDurationsThenBalancesLongestFirst() {
+        Map<String, Long> durations = new HashMap<>();
+        durations.put("a.dll", 10L);
+        durations.put("b.dll", 4L);
+        durations.put("c.dll", 3L);
+        durations.put("d.dll", 2L);
+
+        List<List<String>> shards = Sharding.assign(Arrays.asList("a.dll", "b.dll", "c.dll", "d.dll"), durations, 2);
+
+        assertThat(shards.get(0), contains("a.dll"));
+        assertThat(shards.get(1), contains("b.dll", "c.dll", "d.dll"));
+    }
+
+    @Test
+    public void testAssignWithoutDurationsThenBalancesOnCount() {
+        List<List<String>> shards = Sharding.assign(Arrays.asList("d.dll", "c.dll", "b.dll", "a.dll", "e.dll"), Collections.emptyMap(), 2);
+
+        assertThat(shards.get(0), containsInAnyOrder("a.dll", "c.dll", "e.dll"));
+        assertThat(shards.get(1), containsInAnyOrder("b.dll", "d.dll"));
+    }
+
+    @Test
+    public void testAssignWithUnknownDurationThenUsesAverage() {
+        Map<String, Long> durations = new HashMap<>();
+        durations.put("a.dll", 10L);
+        durations.put("b.dll", 2L);
+
+        List<List<String>> shards = Sharding.assign(Arrays.asList("a.dll", "b.dll", "new.dll"), durations, 2);
+
+        assertThat(shards.get(0), contains("a.dll"));
+        assertThat(shards.get(1), contains("new.dll", "b.dll"));
+    }
+
+    @Test
+    public void testSelectWithAllShardsThenSelectsEveryAssemblyOnce() {
+        FilePath[] assemblies = {
+                new FilePath(new File("/ws/a/bin/a.dll")),
+                new FilePath(new File("/ws/b/bin/b.dll")),
+                new FilePath(new File("/ws/c/bin/c.dll"))
+        };
+
+        FilePath[] first = new Sharding(2, 0, Collections.emptyMap()).select("/ws", assemblies);
+        FilePath[] second = new Sharding(2, 1, Collections.emptyMap()).select("/ws", assemblies);
+
+        assertThat(first, arrayContaining(assemblies[0], assemblies[2]));
+        assertThat(second, arrayContaining(assemblies[1]));
+    }
+
+    @Test
+    public void testRelativePathWithWindowsPathThenUsesForwardSlashes() {
+        assertThat(Sharding.relativePath("C:\\ws", "C:\\ws\\Foo.Test\\bin\\Foo.Test.dll"), is("Foo.Test/bin/Foo.Test.dll"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testConstructorWithIndexOutOfRangeThenThrows() {
+        new Sharding(2, 2, Collections.emptyMap());
+    }
+}
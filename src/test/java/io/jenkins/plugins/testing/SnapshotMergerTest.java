@@ -0,0 +1,168 @@
+package io.jenkins.plugins.testing;
+
+import hudson.FilePath;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+public class SnapshotMergerTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+    private final PrintStream console = new PrintStream(new ByteArrayOutputStream());
+
+    @Test
+    public void testPartitionWithFewerSnapshotsThanFanInThenMakesOneGroup() {
+        List<List<Integer>> groups = SnapshotMerger.partition(Arrays.asList(1, 2, 3), 4);
+
+        assertThat(groups.size(), is(1));
+        assertThat(groups.get(0), is(Arrays.asList(1, 2, 3)));
+    }
+
+    @Test
+    public void testPartitionWithMoreSnapshotsThanFanInThenMakesBalancedGroups() {
+        List<Integer> snapshots = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            snapshots.add(i);
+        }
+
+        List<List<Integer>> groups = SnapshotMerger.partition(snapshots, 4);
+
+        assertThat(groups.size(), is(3));
+        List<Integer> flattened = new ArrayList<>();
+        for (List<Integer> group : groups) {
+            assertThat(group.size(), lessThanOrEqualTo(4));
+            assertThat(group.size() >= 3, is(true));
+            flattened.addAll(group);
+        }
+        assertThat(flattened, is(snapshots));
+    }
+
+    @Test
+    public void testMergeWithoutSnapshotsThenMergesNothing() throws Exception {
+        FakeLauncher launcher = new FakeLauncher();
+
+        new SnapshotMerger(launcher, 2, 1, workDir()).merge(Collections.<FilePath>emptyList(), output(), console).get();
+
+        assertThat(launcher.outputs, is(empty()));
+    }
+
+    @Test
+    public void testMergeSingleSnapshotThenMergesItIntoTheOutput() throws Exception {
+        FakeLauncher launcher = new FakeLauncher();
+        FilePath snapshot = snapshot("a.cov");
+
+        new SnapshotMerger(launcher, 2, 1, workDir()).merge(Collections.singletonList(snapshot), output(), console).get();
+
+        assertThat(launcher.outputs, contains(output()));
+        assertThat(launcher.sources.get(0), contains(snapshot.getRemote()));
+        assertThat(intermediateSnapshots(), is(empty()));
+    }
+
+    @Test
+    public void testMergeOddCountAboveFanInThenMergesInATreeAndDeletesIntermediates() throws Exception {
+        FakeLauncher launcher = new FakeLauncher();
+        List<FilePath> snapshots = Arrays.asList(snapshot("a.cov"), snapshot("b.cov"), snapshot("c.cov"), snapshot("d.cov"), snapshot("e.cov"));
+
+        new SnapshotMerger(launcher, 2, 2, workDir()).merge(snapshots, output(), console).get();
+
+        assertThat(fileNames(launcher.outputs), contains("merge-0-1.intermediate.cov", "merge-0-2.intermediate.cov", "merge-1-1.intermediate.cov", "merged.cov"));
+        for (List<String> sources : launcher.sources) {
+            assertThat(sources.size(), lessThanOrEqualTo(2));
+        }
+        assertThat(fileNames(launcher.sources.get(3)), contains("a.cov", "merge-1-1.intermediate.cov"));
+        assertThat(intermediateSnapshots(), is(empty()));
+    }
+
+    @Test
+    public void testMergeFailureThenDeletesIntermediates() throws Exception {
+        FakeLauncher launcher = new FakeLauncher();
+        launcher.failing = output();
+        List<FilePath> snapshots = Arrays.asList(snapshot("a.cov"), snapshot("b.cov"), snapshot("c.cov"), snapshot("d.cov"));
+
+        try {
+            new SnapshotMerger(launcher, 2, 1, workDir()).merge(snapshots, output(), console).get();
+            fail("The merge did not fail.");
+        } catch (ExecutionException e) {
+            assertThat(e.getCause().getMessage(), is("Merge failed"));
+        }
+
+        assertThat(launcher.outputs.size(), is(3));
+        assertThat(intermediateSnapshots(), is(empty()));
+    }
+
+    private FilePath workDir() {
+        return new FilePath(folder.getRoot());
+    }
+
+    private String output() {
+        return new File(folder.getRoot(), "merged.cov").getPath();
+    }
+
+    private FilePath snapshot(String name) throws IOException {
+        return new FilePath(folder.newFile(name));
+    }
+
+    private static List<String> fileNames(List<String> paths) {
+        List<String> names = new ArrayList<>();
+        for (String path : paths) {
+            names.add(new File(path).getName());
+        }
+        return names;
+    }
+
+    private List<String> intermediateSnapshots() {
+        List<String> names = new ArrayList<>();
+        for (String name : folder.getRoot().list()) {
+            if (name.endsWith(SnapshotMerger.INTERMEDIATE_SNAPSHOT_SUFFIX)) {
+                names.add(name);
+            }
+        }
+        return names;
+    }
+
+    /**
+     * Records the merges, and writes an empty snapshot for every merge, instead of running dotCover.
+     */
+    private static final class FakeLauncher implements SnapshotMerger.Launcher {
+
+        private final List<List<String>> sources = Collections.synchronizedList(new ArrayList<List<String>>());
+        private final List<String> outputs = Collections.synchronizedList(new ArrayList<String>());
+        private String failing;
+
+        @Override
+        public String toAgentPath(FilePath file) {
+            return file.getRemote();
+        }
+
+        @Override
+        public CompletableFuture<Void> merge(List<String> snapshotPaths, String outputPath, PrintStream console) throws IOException {
+            sources.add(new ArrayList<>(snapshotPaths));
+            outputs.add(outputPath);
+            if (outputPath.equals(failing)) {
+                return Futures.failed(new IOException("Merge failed"));
+            }
+            if (!new File(outputPath).createNewFile()) {
+                throw new IOException(outputPath + " exists");
+            }
+            return CompletableFuture.completedFuture(null);
+        }
+    }
+}
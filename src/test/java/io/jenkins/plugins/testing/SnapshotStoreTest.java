@@ -0,0 +1,99 @@
+package io.jenkins.plugins.testing;
+
+import hudson.FilePath;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Random;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.notNullValue;
+import static org.hamcrest.Matchers.nullValue;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertThat;
+
+public class SnapshotStoreTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+    private File storeDir;
+
+    @Before
+    public void createStoreDir() throws IOException {
+        storeDir = folder.newFolder();
+    }
+
+    @Test
+    public void testStoreIdenticalSnapshotsThenStoresOnce() throws Exception {
+        SnapshotStore store = new SnapshotStore(storeDir, Long.MAX_VALUE);
+
+        String first = store.store(snapshot("first.cov", 1));
+        String second = store.store(snapshot("second.cov", 1));
+
+        assertThat(second, is(first));
+        assertThat(storeDir.listFiles().length, is(1));
+    }
+
+    @Test
+    public void testStoreDifferentSnapshotsThenStoresBoth() throws Exception {
+        SnapshotStore store = new SnapshotStore(storeDir, Long.MAX_VALUE);
+
+        String first = store.store(snapshot("first.cov", 1));
+        String second = store.store(snapshot("second.cov", 2));
+
+        assertThat(second, is(not(first)));
+        assertThat(store.find(first), is(notNullValue()));
+        assertThat(store.find(second), is(notNullValue()));
+    }
+
+    @Test
+    public void testRestoreThenWritesOriginalContent() throws Exception {
+        SnapshotStore store = new SnapshotStore(storeDir, Long.MAX_VALUE);
+        FilePath snapshot = snapshot("snapshot.cov", 3);
+        String hash = store.store(snapshot);
+        File restored = new File(folder.getRoot(), "restored/snapshot.cov");
+
+        boolean found = store.restore(hash, new FilePath(restored));
+
+        assertThat(found, is(true));
+        assertArrayEquals(Files.readAllBytes(new File(snapshot.getRemote()).toPath()), Files.readAllBytes(restored.toPath()));
+    }
+
+    @Test
+    public void testRestoreUnknownHashThenReturnsFalse() throws Exception {
+        SnapshotStore store = new SnapshotStore(storeDir, Long.MAX_VALUE);
+
+        boolean found = store.restore("../../secrets", new FilePath(new File(folder.getRoot(), "restored.cov")));
+
+        assertThat(found, is(false));
+    }
+
+    @Test
+    public void testStoreOverQuotaThenEvictsLeastRecentlyUsed() throws Exception {
+        String oldest = new SnapshotStore(storeDir, Long.MAX_VALUE).store(snapshot("oldest.cov", 4));
+        long entrySize = new SnapshotStore(storeDir, Long.MAX_VALUE).find(oldest).length();
+        String used = new SnapshotStore(storeDir, Long.MAX_VALUE).store(snapshot("used.cov", 5));
+        assertThat(new SnapshotStore(storeDir, Long.MAX_VALUE).find(oldest).setLastModified(1000L), is(true));
+        assertThat(new SnapshotStore(storeDir, Long.MAX_VALUE).find(used).setLastModified(2000L), is(true));
+
+        SnapshotStore store = new SnapshotStore(storeDir, entrySize * 2 + entrySize / 2);
+        String newest = store.store(snapshot("newest.cov", 6));
+
+        assertThat(store.find(oldest), is(nullValue()));
+        assertThat(store.find(used), is(notNullValue()));
+        assertThat(store.find(newest), is(notNullValue()));
+    }
+
+    private FilePath snapshot(String name, long seed) throws IOException {
+        byte[] content = new byte[16 * 1024];
+        new Random(seed).nextBytes(content);
+        File file = folder.newFile(name);
+        Files.write(file.toPath(), content);
+        return new FilePath(file);
+    }
+}